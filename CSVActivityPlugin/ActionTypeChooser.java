@@ -1,7 +1,8 @@
 package com.example.csvactivityplugin;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
 
 import com.nomagic.uml2.impl.PropertyNames;
@@ -10,8 +11,8 @@ import javax.swing.table.TableCellEditor;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -44,7 +45,7 @@ public class ActionTypeChooser extends JDialog {
     }
     
     private JTable actionTable;
-    private DefaultTableModel tableModel;
+    private ActionTableModel tableModel;
     private Map<String, ActionType> actionTypeMap;
     private boolean userConfirmed = false;
     
@@ -55,12 +56,22 @@ public class ActionTypeChooser extends JDialog {
      * @param activities List of activities to choose types for
      */
     public ActionTypeChooser(Frame parent, List<ActivityData> activities) {
+        this(parent, ActivityTable.of(activities));
+    }
+    
+    /**
+     * Creates a new ActionTypeChooser dialog.
+     * 
+     * @param parent The parent frame for this dialog
+     * @param activities Table of activities to choose types for
+     */
+    public ActionTypeChooser(Frame parent, ActivityTable activities) {
         super(parent, "Choose Action Types", true);
         this.actionTypeMap = new HashMap<>();
         
         // Initialize all actions to structured activity (default)
-        for (ActivityData activity : activities) {
-            actionTypeMap.put(activity.getName(), ActionType.STRUCTURED_ACTIVITY);
+        for (int r = 0; r < activities.size(); r++) {
+            actionTypeMap.put(activities.name(r), ActionType.STRUCTURED_ACTIVITY);
         }
         
         initializeUI(activities);
@@ -70,7 +81,7 @@ public class ActionTypeChooser extends JDialog {
     /**
      * Initializes the user interface components.
      */
-    private void initializeUI(List<ActivityData> activities) {
+    private void initializeUI(ActivityTable activities) {
         setLayout(new BorderLayout());
         
         // Create header panel
@@ -90,34 +101,9 @@ public class ActionTypeChooser extends JDialog {
     /**
      * Creates the main table for action type selection.
      */
-    private void createTable(List<ActivityData> activities) {
-        // Define column names
-        String[] columnNames = {"Action Name", "Input Pins", "Output Pins", "Action Type"};
-        
-        // Create table model
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                // Only the Action Type column is editable
-                return column == 3;
-            }
-        };
-        
-        // Populate table with activity data
-        for (ActivityData activity : activities) {
-            String displayName = activity.getName();
-            if (activity.isSubAction()) {
-                displayName = "    └─ " + displayName; // Indent sub-actions
-            }
-            
-            Object[] row = {
-                displayName,
-                String.join(", ", activity.getInputs()),
-                String.join(", ", activity.getOutputs()),
-                ActionType.STRUCTURED_ACTIVITY // Default selection
-            };
-            tableModel.addRow(row);
-        }
+    private void createTable(ActivityTable activities) {
+        // Table model reads the activity table directly; cells are built only when shown
+        tableModel = new ActionTableModel(activities);
         
         // Create table
         actionTable = new JTable(tableModel);
@@ -138,11 +124,9 @@ public class ActionTypeChooser extends JDialog {
         // Add table change listener to update our map
         tableModel.addTableModelListener(e -> {
             if (e.getColumn() == 3) { // Action Type column changed
-                int row = e.getFirstRow();
-                String cell = (String) tableModel.getValueAt(row, 0);
-                String rawName = cell.replaceAll("^\\s*└─\\s*", "");
-                ActionType actionType = (ActionType) tableModel.getValueAt(row, 3);
-                actionTypeMap.put(rawName, actionType);
+                for (int row = e.getFirstRow(); row <= e.getLastRow(); row++) {
+                    actionTypeMap.put(tableModel.activities.name(row), tableModel.types[row]);
+                }
             }
         });
         
@@ -214,8 +198,73 @@ public class ActionTypeChooser extends JDialog {
      * Sets all actions to the specified type.
      */
     private void setAllActionTypes(ActionType actionType) {
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            tableModel.setValueAt(actionType, i, 3);
+        tableModel.setAll(actionType);
+    }
+    
+    /**
+     * Table model backed by the ActivityTable; only the chosen action types
+     * are stored, one per row.
+     */
+    private static class ActionTableModel extends AbstractTableModel {
+        private static final String[] COLUMN_NAMES = {"Action Name", "Input Pins", "Output Pins", "Action Type"};
+        
+        final ActivityTable activities;
+        final ActionType[] types;
+        
+        ActionTableModel(ActivityTable activities) {
+            this.activities = activities;
+            this.types = new ActionType[activities.size()];
+            Arrays.fill(types, ActionType.STRUCTURED_ACTIVITY); // Default selection
+        }
+        
+        @Override
+        public int getRowCount() {
+            return activities.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+        
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            // Only the Action Type column is editable
+            return column == 3;
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            switch (column) {
+                case 0:
+                    // Indent sub-actions one step per outline level
+                    int depth = activities.depth(row);
+                    return depth > 1 ? "    ".repeat(depth - 1) + "└─ " + activities.name(row) : activities.name(row);
+                case 1:
+                    return String.join(", ", activities.inputs(row));
+                case 2:
+                    return String.join(", ", activities.outputs(row));
+                default:
+                    return types[row];
+            }
+        }
+        
+        @Override
+        public void setValueAt(Object value, int row, int column) {
+            if (column == 3 && value instanceof ActionType type) {
+                types[row] = type;
+                fireTableCellUpdated(row, column);
+            }
+        }
+        
+        void setAll(ActionType type) {
+            Arrays.fill(types, type);
+            if (types.length > 0) fireTableChanged(new TableModelEvent(this, 0, types.length - 1, 3));
         }
     }
     
@@ -278,4 +327,16 @@ public class ActionTypeChooser extends JDialog {
         ActionTypeChooser chooser = new ActionTypeChooser(parent, activities);
         return chooser.showDialog();
     }
-}
\ No newline at end of file
+    
+    /**
+     * Static convenience method to show the dialog and get results.
+     * 
+     * @param parent The parent frame
+     * @param activities Table of activities to choose types for
+     * @return Map of action names to their selected types, or null if cancelled
+     */
+    public static Map<String, ActionType> chooseActionTypes(Frame parent, ActivityTable activities) {
+        ActionTypeChooser chooser = new ActionTypeChooser(parent, activities);
+        return chooser.showDialog();
+    }
+}
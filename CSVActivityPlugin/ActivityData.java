@@ -36,6 +36,13 @@ public class ActivityData {
         this.outputs = new ArrayList<>();
     }
     
+    /**
+     * Constructor for read-only views of another store (see ActivityTable).
+     * The fields stay unset; the view overrides every getter.
+     */
+    ActivityData(boolean view) {
+    }
+    
     /**
      * Constructor with all fields
      */
@@ -128,4 +135,4 @@ public class ActivityData {
                ", outputs=" + outputs +
                '}';
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ import com.nomagic.magicdraw.openapi.uml.*;
 import com.nomagic.magicdraw.ui.dialogs.MDDialogParentProvider;
 import com.nomagic.magicdraw.uml.symbols.DiagramPresentationElement;
 import com.nomagic.magicdraw.uml.symbols.PresentationElement;
+import com.nomagic.magicdraw.uml.symbols.paths.PathElement;
 import com.nomagic.magicdraw.uml.symbols.shapes.ShapeElement;
 import com.nomagic.uml2.ext.magicdraw.activities.mdbasicactivities.*;
 import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.*;
@@ -17,257 +18,438 @@ import com.nomagic.uml2.ext.magicdraw.mdprofiles.*;
 import com.nomagic.uml2.ext.jmi.helpers.StereotypesHelper;
 import com.nomagic.uml2.impl.ElementsFactory;
 
+import javax.swing.JOptionPane;
 import java.awt.Frame;
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * CSV‑to‑Activity importer that creates a main Activity diagram
  * plus one diagram for every StructuredActivityNode that has sub‑actions.
+ * Sub‑actions nest to any outline depth (1.2.3.4): every row with children
+ * becomes a StructuredActivityNode holding them, with its own diagram.
+ *
+ * A fresh import is worked out as an ImportPlan first (ImportPlanner, plain
+ * Java) and then replayed against Cameo in one pass (ImportPlanApplier).
+ * An import runs in three steps, so the planning can leave the event
+ * dispatch thread: choose (the dialogs), plan (any thread, no Cameo calls)
+ * and apply (one session).
+ *
+ * When the chosen parent already holds an earlier import, that Activity can
+ * be updated in place: only the rows that were added, removed or changed
+ * since then touch the model (see ImportDiff). Imports are chains of
+ * control flows; when an earlier import has since gained branches, the
+ * update keeps them and can lay its diagrams out in layers instead of one
+ * column.
+ *
+ * When output pins share a name with inputs of later actions, a fresh import
+ * can connect them with object flows (see ObjectFlowInference), and lay its
+ * diagrams out in layers along them.
+ *
+ * Large fresh imports can defer their sub-diagrams: the diagrams are
+ * created empty and filled in the first time they are opened (see
+ * SubdiagramMaterializer).
+ *
+ * Fresh imports with long diagrams can fold them into side-by-side bands,
+ * so they grow about as wide as tall (see WrappedLayout).
  */
 public class ActivityDiagramCreator {
 
-    /* ------------- layout constants ------------ */
-    private static final int DIAGRAM_WIDTH = 1200;
-    private static final int START_Y       = 100;
-    private static final int LANE_WIDTH    = 480;
-    private static final int ROW_HEIGHT    = 225;
-    private static final int Y_STEP        = 60;
+    /* ------------- layout constants (see LayoutOptions) ------------ */
+    private static final int START_Y       = LayoutOptions.DEFAULT.startY;
+    private static final int Y_STEP        = LayoutOptions.DEFAULT.yStep;
 
-    /* =============================================================
-                             PUBLIC ENTRY
-       ============================================================= */
-    @SuppressWarnings("deprecation")
-	public void createActivityDiagram(Project project, List<ActivityData> rows)
-            throws Exception {
+    private static final String IMPORTED_NAME = "Imported Activities";
 
-        /* choose action‑type mappings */
-        Frame frame = MDDialogParentProvider.getProvider().getDialogParent();
-        Map<String,ActionTypeChooser.ActionType> actionTypes =
-                ActionTypeChooser.chooseActionTypes(frame, rows);
-        if (actionTypes == null) throw new Exception("Cancelled.");
+    // Fresh imports with at least this many sub-diagrams offer to defer them
+    private static final int DEFER_PROMPT_MIN = 10;
 
-        /* run inside a single MagicDraw session */
-        SessionManager sm = SessionManager.getInstance();
-        sm.createSession(project, "Import CSV as Activity Diagram");
+    // Fresh imports with a diagram of at least this many actions offer to wrap it into bands
+    private static final int WRAP_PROMPT_MIN = 40;
 
-        try {
-            Element parentPkg = DiagramParentChooser.chooseParent(project);
-            if (parentPkg == null) throw new Exception("No parent chosen.");
+    // Imports with an action of at least this many inputs or outputs offer to put pins on all sides
+    private static final int PIN_PROMPT_MIN = 8;
 
-            /* -------- main model root -------- */
-            Activity rootActivity = createActivityElement(project);
-            if (rootActivity.getOwner() != parentPkg)
-                ModelElementsManager.getInstance().moveElement(rootActivity, parentPkg);
+    // Lookups for the Activity being updated, set once per import
+    private ImportIndex index;
 
-            /* -------- partitions (lanes) for the main diagram -------- */
-            Map<String,ActivityPartition> partitions =
-                    createActivityPartitions(project, rootActivity, rows);
+    // Creates and finds the presentation elements of the current (or last) import
+    private PresentationIndex presentation = new PresentationIndex(new ImportStatistics());
 
-            /* -------- main activity diagram -------- */
-            DiagramPresentationElement mainDpe =
-                    createAndOpenDiagram(project, rootActivity);
+    // Places the nodes when diagrams are laid out again during an update, on the main
+    // diagram and the sub-diagrams alike
+    private LayoutStrategy layoutStrategy = LayoutStrategy.COLUMN;
 
-            int centerX = (DIAGRAM_WIDTH - LANE_WIDTH * partitions.size()) / 2;
+    // Sizes the actions and places their pins whenever diagrams are laid out
+    private PinPlacement pinPlacement = PinPlacement.TWO_SIDED;
 
-            /* one diagram ⇒ its own laneShapes map */
-            Map<ActivityPartition,ShapeElement> laneShapes = new HashMap<>();
+    /* ------------- choices of the current import, see choose() ------------ */
+    private ActivityTree tree;
+    private Map<String,ActionTypeChooser.ActionType> actionTypes;
+    private Element parentPkg;
+    private Activity previous;                      // the import to update, null for a fresh one
+    private boolean defer;
+    private ObjectFlowInference.Rule objectFlows;    // null for no object flows
+    private LayoutStrategy freshLayout = LayoutStrategy.COLUMN;
 
-            buildAndPlaceSwimlanes(mainDpe, partitions,
-                                   countActionsPerActor(rootActivity),
-                                   centerX, START_Y - 50,
-                                   laneShapes);
+    // Worked out by plan() for a fresh import
+    private ImportPlan plan;
 
-            /* -------- model nodes & edges -------- */
-            Map<String,StructuredActivityNode> mainActionMap =
-                    createActivityNodes(project, rootActivity, rows,
-                                        actionTypes, partitions);
+    /* =============================================================
+                             PUBLIC ENTRY
+       ============================================================= */
+    public void createActivityDiagram(Project project, List<ActivityData> rows)
+            throws Exception {
+        createActivityDiagram(project, ActivityTable.of(rows));
+    }
 
-            populateDiagramNodes(rootActivity, mainDpe, laneShapes);
+	public void createActivityDiagram(Project project, ActivityTable table)
+            throws Exception {
+        createActivityDiagram(project, ActivityTree.of(table), ImportProgress.NONE);
+    }
 
-            DiagramGridLayouter.layout(rootActivity, mainDpe,
-                                       partitions, START_Y, Y_STEP);
+    /**
+     * Creates (or updates) the import: choose, plan and apply one after the
+     * other; must run on the event dispatch thread.
+     *
+     * @param progress Told which stage the import is in
+     */
+    void createActivityDiagram(Project project, ActivityTree tree, ImportProgress progress)
+            throws Exception {
+        choose(project, tree);
+        plan(progress);
+        apply(project, progress);
+    }
 
-            populateDiagramPaths(rootActivity, mainDpe);
+    /**
+     * First step of an import: shows the choosers and keeps the answers for
+     * plan and apply. Must run on the event dispatch thread.
+     *
+     * @throws Exception If the user cancels a chooser
+     */
+    void choose(Project project, ActivityTree tree) throws Exception {
+
+        ActivityTable table = tree.table();
+        this.tree = tree;
+        presentation = new PresentationIndex(new ImportStatistics());
+        layoutStrategy = LayoutStrategy.COLUMN;
+        pinPlacement = PinPlacement.TWO_SIDED;
+        defer = false;
+        objectFlows = null;
+        freshLayout = LayoutStrategy.COLUMN;
+        plan = null;
 
-            /* -------- sub‑action diagrams -------- */
-            createSubactionDiagrams(project, rows,
-                                    mainActionMap, actionTypes);
+        /* choose action‑type mappings */
+        Frame frame = MDDialogParentProvider.getProvider().getDialogParent();
+        actionTypes = ActionTypeChooser.chooseActionTypes(frame, table);
+        if (actionTypes == null) throw new Exception("Cancelled.");
 
-            sm.closeSession(project);
-        } catch (Exception ex) {
-            sm.cancelSession(project);
-            throw ex;
+        parentPkg = DiagramParentChooser.chooseParent(project);
+        if (parentPkg == null) throw new Exception("No parent chosen.");
+
+        /* -------- earlier import under the same parent? -------- */
+        previous = findPreviousImport(parentPkg);
+        if (previous != null && !confirmUpdate(frame)) previous = null;
+        boolean update = previous != null;
+        if (update) layoutStrategy = chooseLayout(frame, hasBranches(previous));
+
+        int mostPins = 0;
+        for (int r = 0; r < table.size(); r++)
+            mostPins = Math.max(mostPins, Math.max(table.inputCount(r), table.outputCount(r)));
+        if (mostPins >= PIN_PROMPT_MIN) pinPlacement = choosePins(frame, mostPins);
+
+        /* -------- choices that only a fresh import has -------- */
+        if (!update) {
+            int subDiagrams = 0;
+            for (int r = 0; r < table.size(); r++)
+                if (tree.hasChildren(r)) subDiagrams++;
+            defer = subDiagrams >= DEFER_PROMPT_MIN && confirmDeferred(frame, subDiagrams);
+
+            int matches = new ObjectFlowInference(tree).countNearest();
+            objectFlows = matches > 0 ? chooseObjectFlows(frame, matches) : null;
+
+            int longest = tree.rootCount();
+            for (int r = 0; r < table.size(); r++)
+                longest = Math.max(longest, tree.childCount(r));
+            boolean wrap = longest >= WRAP_PROMPT_MIN;
+            if (wrap || objectFlows != null)
+                freshLayout = chooseFreshLayout(frame, wrap ? longest : 0, objectFlows != null);
         }
     }
 
-    /* =============================================================
-                         MAIN‑DIAGRAM HELPERS
-       ============================================================= */
-
-    private Activity createActivityElement(Project project)
-            throws ReadOnlyElementException {
-
-        Activity act = project.getElementsFactory().createActivityInstance();
-        act.setName("Imported Activities");
-        ModelElementsManager.getInstance().addElement(act, project.getPrimaryModel());
-        return act;
+    /**
+     * Second step of an import: works out the plan of a fresh import (an
+     * update has nothing to plan). Makes no Cameo calls, so it may run on a
+     * worker thread; interrupting that thread cancels it.
+     *
+     * @param progress Told how far planning has got
+     */
+    void plan(ImportProgress progress) {
+        if (previous != null) return;
+        plan = ImportPlanner.plan(IMPORTED_NAME, tree, actionTypes, defer, objectFlows, freshLayout,
+                                  pinPlacement, progress);
     }
 
-    /** top‑level partitions: only actors from non‑sub rows */
-    private Map<String,ActivityPartition> createActivityPartitions(Project project,
-                                                                   Activity activity,
-                                                                   List<ActivityData> rows)
-            throws ReadOnlyElementException {
-
-        ElementsFactory f   = project.getElementsFactory();
-        ModelElementsManager mgr = ModelElementsManager.getInstance();
-        Map<String,ActivityPartition> parts = new LinkedHashMap<>();
-
-        Set<String> actors = new LinkedHashSet<>();
-        for (ActivityData d : rows)
-            if (!d.isSubAction()) actors.add(actorName(d.getActor()));
+    /**
+     * Last step of an import: makes all model changes in one session. Must
+     * run on the event dispatch thread, after plan.
+     *
+     * @param progress Told which stage the import is in
+     */
+    @SuppressWarnings("deprecation")
+    void apply(Project project, ImportProgress progress) throws Exception {
+        boolean update = previous != null;
 
-        /* optional SysML «allocateActivityPartition» */
-        Profile sysml  = StereotypesHelper.getProfile(project, "SysML");
-        Stereotype stereo = (sysml == null)
-                          ? null
-                          : StereotypesHelper.getStereotype(project,
-                                                            "AllocateActivityPartition", sysml);
+        /* run inside a single MagicDraw session */
+        SessionManager sm = SessionManager.getInstance();
+        sm.createSession(project, "Import CSV as Activity Diagram");
 
-        for (String actor : actors) {
-            ActivityPartition p = f.createActivityPartitionInstance();
-            p.setName(actor);  p.setDimension(true);
-            mgr.addElement(p, activity);   activity.getPartition().add(p);
-            if (stereo != null) StereotypesHelper.addStereotype(p, stereo);
-            parts.put(actor, p);
+        try {
+            if (update) {
+                progress.update("Updating " + IMPORTED_NAME, 0, 0);
+                updateActivityDiagram(project, previous, tree, actionTypes);
+            } else {
+                ImportPlanApplier.apply(project, parentPkg, plan, progress, presentation);
+            }
+            sm.closeSession(project);
+        } catch (Exception ex) {
+            sm.cancelSession(project);
+            throw ex;
         }
-        return parts;
+        if (defer) SubdiagramMaterializer.watch(project);
     }
 
-    private static String actorName(String raw) {
-        return (raw == null || raw.trim().isEmpty()) ? "<Unassigned>" : raw.trim();
+    private boolean confirmDeferred(Frame frame, int subDiagrams) throws Exception {
+        int choice = JOptionPane.showConfirmDialog(frame,
+                "The import has " + subDiagrams + " sub-diagrams.\n" +
+                "Create each sub-diagram only when it is first opened?\n\n" +
+                "Model elements are created now either way. " +
+                "Choose No to create all sub-diagrams now.",
+                "Create Sub-Diagrams",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE);
+        if (choice == JOptionPane.YES_OPTION) return true;
+        if (choice == JOptionPane.NO_OPTION)  return false;
+        throw new Exception("Cancelled.");
     }
 
-    /* -------- per‑diagram counting helper -------- */
-    private Map<String,Integer> countActionsPerActor(Element ctx) {
-        Map<String,Integer> map = new HashMap<>();
-        for (ActivityNode n : getNodesOfContext(ctx)) {
-            if (!n.getInPartition().isEmpty()) {
-                String actor = n.getInPartition().iterator().next().getName();
-                map.merge(actor, 1, Integer::sum);
-            }
+    private LayoutStrategy chooseLayout(Frame frame, boolean branches) throws Exception {
+        Object[] options = branches ? new Object[] { "Keep layout", "Layers", "Single column" }
+                                    : new Object[] { "Keep layout", "Single column" };
+        int choice = JOptionPane.showOptionDialog(frame,
+                "Keep the current layout of the updated diagram, moving shapes only to make\n" +
+                "room for new or grown actions?\n\n" +
+                (branches ? "Control flows of the earlier import branch and join: Layers puts\n" +
+                            "parallel actions side by side. " : "") +
+                "The other choices lay the whole diagram out again.",
+                "Diagram Layout",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null, options, options[0]);
+        if (choice == 0) return LayoutStrategy.INCREMENTAL;
+        if (choice == 1) return branches ? LayoutStrategy.LAYERED : LayoutStrategy.COLUMN;
+        if (choice == 2) return LayoutStrategy.COLUMN;
+        throw new Exception("Cancelled.");
+    }
+
+    /**
+     * @param longest Actions of the longest diagram if it is worth wrapping, else 0
+     * @param objectFlows true if the import connects pins with object flows
+     */
+    private LayoutStrategy chooseFreshLayout(Frame frame, int longest, boolean objectFlows)
+            throws Exception {
+        List<String> options = new ArrayList<>();
+        List<LayoutStrategy> strategies = new ArrayList<>();
+        StringBuilder message = new StringBuilder();
+        if (objectFlows) {
+            options.add("Layers");
+            strategies.add(LayoutStrategy.LAYERED);
+            message.append("Layers follows the object flows: actions that take data from the same\n")
+                   .append("actions go side by side, below them.\n");
         }
-        return map;
+        if (longest > 0) {
+            options.add("Bands");
+            strategies.add(LayoutStrategy.WRAPPED);
+            message.append("The longest diagram has ").append(longest).append(" actions. ")
+                   .append("Bands folds long diagrams into\n")
+                   .append("side-by-side bands, so they are about as wide as tall.\n");
+        }
+        options.add("Single column");
+        strategies.add(LayoutStrategy.COLUMN);
+        message.append("\nSingle column keeps every diagram one action per row.");
+
+        int choice = JOptionPane.showOptionDialog(frame,
+                message.toString(),
+                "Diagram Layout",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null, options.toArray(), options.get(0));
+        if (choice >= 0 && choice < strategies.size()) return strategies.get(choice);
+        throw new Exception("Cancelled.");
     }
 
-    /* -------- model node creation (returns map main action name → SAN) */
-    private Map<String,StructuredActivityNode> createActivityNodes(Project project,
-                                         Activity activity,
-                                         List<ActivityData> rows,
-                                         Map<String,ActionTypeChooser.ActionType> actionTypes,
-                                         Map<String,ActivityPartition> partitions)
-            throws ReadOnlyElementException {
+    /* true if a node of the owner, or of a node it holds, has several incoming
+       or outgoing control flows */
+    private boolean hasBranches(Element owner) {
+        Set<ActivityNode> sources = new HashSet<>(), targets = new HashSet<>();
+        for (ControlFlow cf : getFlowsOfContext(owner))
+            if (!sources.add(cf.getSource()) || !targets.add(cf.getTarget())) return true;
+        for (ActivityNode n : getNodesOfContext(owner))
+            if (n instanceof StructuredActivityNode && n != owner && hasBranches(n)) return true;
+        return false;
+    }
 
-        ElementsFactory f   = project.getElementsFactory();
-        ModelElementsManager mgr = ModelElementsManager.getInstance();
+    private PinPlacement choosePins(Frame frame, int mostPins) throws Exception {
+        Object[] options = { "All sides", "Left and right" };
+        int choice = JOptionPane.showOptionDialog(frame,
+                "An action has " + mostPins + " inputs or outputs.\n" +
+                "Put pins on all four sides of such actions, so they stay close to their usual size?\n\n" +
+                "Left and right keeps inputs on the left, outputs on the right, and makes\n" +
+                "the action a row taller for every extra pin.",
+                "Pin Layout",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null, options, options[0]);
+        if (choice == 0) return PinPlacement.FOUR_SIDED;
+        if (choice == 1) return PinPlacement.TWO_SIDED;
+        throw new Exception("Cancelled.");
+    }
 
-        InitialNode start = f.createInitialNodeInstance();
-        start.setName("Start");
-        mgr.addElement(start, activity);
-        partitions.values().iterator().next().getNode().add(start);
-        ActivityNode prev = start;
+    /** @return The rule for inferring object flows, or null for none */
+    private ObjectFlowInference.Rule chooseObjectFlows(Frame frame, int matches) throws Exception {
+        Object[] options = { "Nearest consumer", "All consumers", "No object flows" };
+        int choice = JOptionPane.showOptionDialog(frame,
+                matches + " outputs share a name with inputs of later actions.\n" +
+                "Connect them with object flows?\n\n" +
+                "Nearest consumer: each output feeds the next action that takes it.\n" +
+                "All consumers: each output feeds every later action that takes it.",
+                "Object Flows",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null, options, options[0]);
+        if (choice == 0) return ObjectFlowInference.Rule.NEAREST_CONSUMER;
+        if (choice == 1) return ObjectFlowInference.Rule.ALL_CONSUMERS;
+        if (choice == 2) return null;
+        throw new Exception("Cancelled.");
+    }
 
-        Map<String,StructuredActivityNode> mainMap = new HashMap<>();
+    /** @return Shapes created and reshaped by the last import */
+    ImportStatistics statistics() {
+        return presentation.statistics();
+    }
 
-        for (ActivityData d : rows) {
-            ActionTypeChooser.ActionType t =
-                    actionTypes.getOrDefault(d.getName(),
-                                             ActionTypeChooser.ActionType.STRUCTURED_ACTIVITY);
-            String actor = actorName(d.getActor());
-            ActivityPartition lane = partitions.get(actor);
+    /* =============================================================
+                         MAIN‑DIAGRAM HELPERS
+       ============================================================= */
 
-            if (d.isSubAction()) {
-                StructuredActivityNode parent = mainMap.get(d.getParentName());
-                if (parent != null) createSubAction(project, parent, d, t);
-            } else {
-                StructuredActivityNode main =
-                        createMainAction(project, activity, d, t);
-                if (lane != null) lane.getNode().add(main);
-                mainMap.put(d.getName(), main);
-
-                ControlFlow cf = f.createControlFlowInstance();
-                cf.setSource(prev); cf.setTarget(main);
-                mgr.addElement(cf, activity);
-                prev = main;
-            }
-        }
+    /* optional SysML «allocateActivityPartition» */
+    static Stereotype partitionStereotype(Project project) {
+        Profile sysml  = StereotypesHelper.getProfile(project, "SysML");
+        return (sysml == null)
+             ? null
+             : StereotypesHelper.getStereotype(project,
+                                               "AllocateActivityPartition", sysml);
+    }
 
-        ActivityFinalNode end = f.createActivityFinalNodeInstance();
-        end.setName("End");
-        mgr.addElement(end, activity);
-        partitions.values().iterator().next().getNode().add(end);
+    private ActivityPartition createPartition(Project project, Activity activity,
+                                              String actor, Stereotype stereo)
+            throws ReadOnlyElementException {
 
-        ControlFlow tail = f.createControlFlowInstance();
-        tail.setSource(prev); tail.setTarget(end);
-        mgr.addElement(tail, activity);
+        ActivityPartition p = project.getElementsFactory().createActivityPartitionInstance();
+        p.setName(actor);  p.setDimension(true);
+        ModelElementsManager.getInstance().addElement(p, activity);
+        activity.getPartition().add(p);
+        if (stereo != null) StereotypesHelper.addStereotype(p, stereo);
+        index.partitionAdded(p);
+        return p;
+    }
 
-        return mainMap;
+    /**
+     * Type of the node created for a row. Rows with children must be able to
+     * hold them, so they are always StructuredActivityNodes.
+     */
+    private static ActionTypeChooser.ActionType actionType(
+            Map<String,ActionTypeChooser.ActionType> actionTypes,
+            ActivityTree tree, int row) {
+        if (tree.hasChildren(row)) return ActionTypeChooser.ActionType.STRUCTURED_ACTIVITY;
+        return actionTypes.getOrDefault(tree.table().name(row),
+                                        ActionTypeChooser.ActionType.STRUCTURED_ACTIVITY);
     }
 
     /* =============================================================
                         SUB‑DIAGRAM GENERATION
        ============================================================= */
 
-    private void createSubactionDiagrams(Project project,
-                                         List<ActivityData> rows,
-                                         Map<String,StructuredActivityNode> mainActionMap,
-                                         Map<String,ActionTypeChooser.ActionType> actionTypes)
+    private void createSubactionDiagram(Project project,
+                                        StructuredActivityNode parentNode,
+                                        List<ActivityData> subRows,
+                                        List<ActivityNode> subActionNodes,
+                                        Map<String,ActionTypeChooser.ActionType> actionTypes)
             throws ReadOnlyElementException {
 
-        /* bucket subactions by their parent action name */
-        Map<String,List<ActivityData>> byParent = new HashMap<>();
-        for (ActivityData d : rows)
-            if (d.isSubAction())
-                byParent.computeIfAbsent(d.getParentName(), k -> new ArrayList<>()).add(d);
+        Set<String> actors = new LinkedHashSet<>();
+        for (ActivityData row : subRows) actors.add(ImportPlanner.actorName(row.getActor()));
+
+        Diagram subDiag =
+                ModelElementsManager.getInstance()
+                    .createDiagram("SysML Activity Diagram", parentNode);
+        subDiag.setName(parentNode.getName());
+        populateSubactionDiagram(project, parentNode, project.getDiagram(subDiag),
+                                 actors, subActionNodes);
+    }
+
+    /**
+     * Fills in a sub-diagram that was deferred at import time, from the
+     * model: lanes for the actors of the node's actions, the shapes of its
+     * nodes placed the way the import placed its other diagrams, and its
+     * flows. Must run inside a session.
+     *
+     * @param activity The imported Activity that (indirectly) owns the node
+     * @param parentNode The node whose diagram it is; it must hold actions
+     * @param subDpe The node's empty diagram
+     * @param layoutStrategy How the import that deferred the diagram placed nodes
+     * @param pinPlacement How the import that deferred the diagram placed pins
+     */
+    void materializeSubactionDiagram(Project project, Activity activity,
+                                     StructuredActivityNode parentNode,
+                                     DiagramPresentationElement subDpe,
+                                     LayoutStrategy layoutStrategy,
+                                     PinPlacement pinPlacement)
+            throws ReadOnlyElementException {
 
-        for (var e : byParent.entrySet()) {
-            StructuredActivityNode parentSAN = mainActionMap.get(e.getKey());
-            if (parentSAN == null) continue;
+        this.layoutStrategy = layoutStrategy;
+        this.pinPlacement = pinPlacement;
+        index = new ImportIndex(activity);
+        presentation = new PresentationIndex(new ImportStatistics());
 
-            createSubactionDiagram(project, parentSAN,
-                                   e.getValue(), actionTypes);
-        }
+        List<ActivityNode> children = actionNodes(getNodesOfContext(parentNode));
+        Set<String> actors = new LinkedHashSet<>();
+        for (ActivityNode n : children)
+            actors.add(n.getInPartition().isEmpty()
+                       ? ImportPlanner.actorName(null)
+                       : n.getInPartition().iterator().next().getName());
+        populateSubactionDiagram(project, parentNode, subDpe, actors, children);
     }
 
-    private void createSubactionDiagram(Project project,
-                                        StructuredActivityNode parentNode,
-                                        List<ActivityData> subRows,
-                                        Map<String,ActionTypeChooser.ActionType> actionTypes)
+    /* lanes, start/end nodes, shapes, layout and paths of one sub-diagram */
+    private void populateSubactionDiagram(Project project,
+                                          StructuredActivityNode parentNode,
+                                          DiagramPresentationElement subDpe,
+                                          Collection<String> actors,
+                                          List<ActivityNode> subActionNodes)
             throws ReadOnlyElementException {
 
         ElementsFactory f = project.getElementsFactory();
         ModelElementsManager mgr = ModelElementsManager.getInstance();
 
-        Activity parentAct = findOwningActivity(parentNode);   // already in your code
         Map<String,ActivityPartition> subpartitions =
-                createPartitionsInMainOrder(project, parentAct, subRows);
-     
+                createPartitionsInMainOrder(project, index.activity(), actors);
 
-        Diagram subDiag =
-                ModelElementsManager.getInstance()
-                    .createDiagram("SysML Activity Diagram", parentNode);
-        subDiag.setName(parentNode.getName());
-        DiagramPresentationElement subDpe = project.getDiagram(subDiag);
-        
-        /* Setup swimlanes */
-        int centerX = (DIAGRAM_WIDTH - LANE_WIDTH * subpartitions.size()) / 2;
+        /* Setup swimlanes; the layout sizes them to the nodes */
         Map<ActivityPartition,ShapeElement> laneShapes = new HashMap<>();
-
-        buildAndPlaceSwimlanes(subDpe, subpartitions,
-                               countActionsPerActor(parentNode),
-                               centerX, START_Y - 50,
-                               laneShapes);
+        buildSwimlanes(subDpe, subpartitions, laneShapes);
 
         /* Build the list of nodes to layout */
         List<ActivityNode> nodesToLayout = new ArrayList<>();
@@ -291,20 +473,7 @@ public class ActivityDiagramCreator {
         }
         nodesToLayout.add(startNode);
         
-        /* 2. Collect all sub-action nodes (already created in createActivityNodes) */
-        List<ActivityNode> subActionNodes = new ArrayList<>();
-        for (ActivityData subData : subRows) {
-            // Find the existing sub-action node by name
-            for (Element child : parentNode.getOwnedElement()) {
-                if (child instanceof ActivityNode node && 
-                    !node.equals(parentNode) &&
-                    node.getName() != null && 
-                    node.getName().equals(subData.getName())) {
-                    subActionNodes.add(node);
-                    break;
-                }
-            }
-        }
+        /* 2. The sub-action nodes (already created in createActivityNodes) */
         nodesToLayout.addAll(subActionNodes);
         
         /* 3. Create Activity Final Node if it doesn't exist */
@@ -330,17 +499,24 @@ public class ActivityDiagramCreator {
         createControlFlowsIfNeeded(project, parentNode, startNode, subActionNodes, endNode);
 
 
-        PresentationElementsManager pem = PresentationElementsManager.getInstance();
+        /* nodes the user added to the action (decisions, merges, ...) are shown too,
+           in flow order between the actions they connect */
+        List<ActivityNode> shown = new ArrayList<>();
+        for (ActivityNode node : getNodesOfContext(parentNode))
+            if (!(node instanceof Pin) && node != parentNode) shown.add(node);
+        nodesToLayout = flowOrder(shown, nodesToLayout);
 
         for (ActivityNode node : nodesToLayout) {
-            if (subDpe.findPresentationElement(node, ShapeElement.class) == null) {
+            if (presentation.find(subDpe, node, ShapeElement.class) == null) {
                 // ALWAYS create the shape directly in the diagram, never in the lane
-                pem.createShapeElement(node, subDpe);
+                presentation.createShape(node, subDpe);
             }
         }
 
         /* Layout the nodes */
-        SubdiagramGridLayouter.layoutNodeList(nodesToLayout, subDpe, subpartitions, START_Y, Y_STEP);
+        SubdiagramGridLayouter.layoutNodeList(nodesToLayout, subDpe, subpartitions,
+                                              START_Y, Y_STEP, presentation, layoutStrategy,
+                                              pinPlacement, false, Collections.emptySet());
         
         /* Create control flow presentations */
         populateDiagramPaths(parentNode, subDpe);
@@ -355,29 +531,25 @@ public class ActivityDiagramCreator {
      *
      * @param project         your current Project
      * @param parentActivity  the Activity that owns the parent SAN
-     * @param subRows         CSV rows for this sub‑diagram
+     * @param actors          actor names of the sub‑diagram's rows
      * @return LinkedHashMap <actorName , new ActivityPartition>
      */
     private Map<String,ActivityPartition> createPartitionsInMainOrder(
             Project project,
             Activity parentActivity,
-            List<ActivityData> subRows) throws ReadOnlyElementException {
+            Collection<String> actors) throws ReadOnlyElementException {
 
         ElementsFactory      factory = project.getElementsFactory();
         ModelElementsManager mgr     = ModelElementsManager.getInstance();
 
         /* 1 — which actors do we need in this sub‑diagram? */
-        LinkedHashSet<String> actorsNeeded = new LinkedHashSet<>();
-        for (ActivityData row : subRows)
-            actorsNeeded.add(actorName(row.getActor()));   // actorName(...) already exists in this class
+        LinkedHashSet<String> actorsNeeded = new LinkedHashSet<>(actors);
 
         /* 2 — preserve the main‑diagram order first */
         List<String> finalOrder = new ArrayList<>();
-        for (ActivityPartition p : parentActivity.getPartition()) {
-            String name = p.getName();
-            if (actorsNeeded.contains(name)) {
-                finalOrder.add(name);
-                actorsNeeded.remove(name);    // so we don’t add twice
+        for (String name : index.actors()) {
+            if (actorsNeeded.remove(name)) {
+                finalOrder.add(name);    // so we don’t add twice
             }
         }
 
@@ -393,6 +565,7 @@ public class ActivityDiagramCreator {
 
             mgr.addElement(p, parentActivity);  // model ownership
             parentActivity.getPartition().add(p);
+            index.partitionAdded(p);
 
             out.put(actor, p);
         }
@@ -400,11 +573,6 @@ public class ActivityDiagramCreator {
     }
 
 
-    private Activity findOwningActivity(Element e) {
-        Element cur = e;
-        while (cur != null && !(cur instanceof Activity)) cur = cur.getOwner();
-        return (cur instanceof Activity act) ? act : null;
-    }
 
     private void createControlFlowsIfNeeded(Project project,
                                           StructuredActivityNode parentNode,
@@ -412,140 +580,817 @@ public class ActivityDiagramCreator {
                                           List<ActivityNode> subActionNodes,
                                           ActivityFinalNode endNode)
             throws ReadOnlyElementException {
-        
-        ElementsFactory f = project.getElementsFactory();
+
+        // Create flows: start -> first subaction -> ... -> last subaction -> end
+        List<ActivityNode> chain = new ArrayList<>(subActionNodes.size() + 2);
+        chain.add(startNode);
+        chain.addAll(subActionNodes);
+        if (endNode != null) chain.add(endNode);
+
+        // existing flows are matched by their ends, so nodes may share a name
+        connectChain(project, parentNode, chain);
+    }
+
+    /* =============================================================
+                           DELTA RE‑IMPORT
+       ============================================================= */
+
+    /** the Activity of an earlier import directly under the parent, or null */
+    private Activity findPreviousImport(Element parentPkg) {
+        for (Element e : parentPkg.getOwnedElement())
+            if (e instanceof Activity act && IMPORTED_NAME.equals(act.getName())
+                    && findOwnedDiagram(act) != null)
+                return act;
+        return null;
+    }
+
+    private boolean confirmUpdate(Frame frame) throws Exception {
+        int choice = JOptionPane.showConfirmDialog(frame,
+                "The selected parent already contains \"" + IMPORTED_NAME + "\".\n" +
+                "Update it in place with only the changed rows?\n\n" +
+                "Choose No to create a new Activity instead.",
+                "Update Existing Import",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE);
+        if (choice == JOptionPane.YES_OPTION) return true;
+        if (choice == JOptionPane.NO_OPTION)  return false;
+        throw new Exception("Cancelled.");
+    }
+
+    /**
+     * Brings an earlier import up to date with the rows. The top level and
+     * the children of every action are diffed separately, level by level;
+     * untouched nodes, pins, flows and shapes are left alone, and a diagram
+     * is only laid out again when something on it changed.
+     */
+    private void updateActivityDiagram(Project project,
+                                       Activity act,
+                                       ActivityTree tree,
+                                       Map<String,ActionTypeChooser.ActionType> actionTypes)
+            throws ReadOnlyElementException {
+
+        index = new ImportIndex(act);
+        ImportDiff<ActivityNode> diff = updateMainDiagram(project, act, tree.rootRows());
+        updateChildDiagrams(project, tree, diff, actionTypes);
+    }
+
+    /* descends into the matched nodes of one level */
+    private void updateChildDiagrams(Project project, ActivityTree tree,
+                                     ImportDiff<ActivityNode> diff,
+                                     Map<String,ActionTypeChooser.ActionType> actionTypes)
+            throws ReadOnlyElementException {
+
+        for (var e : diff.matches().entrySet())
+            if (e.getValue() instanceof StructuredActivityNode san)
+                updateSubactionDiagram(project, san, tree,
+                                       tree.table().rowOf(e.getKey()), actionTypes);
+    }
+
+    /* -------- top level (returns the diff, matched to the current nodes) */
+    private ImportDiff<ActivityNode> updateMainDiagram(Project project,
+                                                       Activity act,
+                                                       List<ActivityData> mainRows)
+            throws ReadOnlyElementException {
+
         ModelElementsManager mgr = ModelElementsManager.getInstance();
-        
-        // Check if flows already exist by building a set of existing connections
-        Set<String> existingFlows = new HashSet<>();
+        DiagramPresentationElement dpe = project.getDiagram(findOwnedDiagram(act));
+
+        /* lanes currently shown on the main diagram */
+        Map<String,ActivityPartition> partitions = new LinkedHashMap<>();
+        Map<ActivityPartition,ShapeElement> laneShapes = new HashMap<>();
+        for (ActivityPartition p : act.getPartition()) {
+            ShapeElement lane = presentation.find(dpe, p, ShapeElement.class);
+            if (lane != null && !partitions.containsKey(p.getName())) {
+                partitions.put(p.getName(), p);
+                laneShapes.put(p, lane);
+            }
+        }
+
+        /* main actions are always SANs, whatever type was chosen */
+        ImportDiff<ActivityNode> diff = ImportDiff.compute(mainRows,
+                d -> rowFingerprint(d, ActionTypeChooser.ActionType.STRUCTURED_ACTIVITY),
+                actionNodes(act.getNode()), NODE_READER);
+
+        /* -------- lanes: add new actors, drop unused ones -------- */
+        Set<String> actors = new LinkedHashSet<>();
+        for (ActivityData d : mainRows) actors.add(ImportPlanner.actorName(d.getActor()));
+        if (actors.isEmpty()) actors.add(ImportPlanner.actorName(null));
+
+        boolean lanesChanged = !actors.equals(partitions.keySet());
+        ShapeElement oldSwimlane = laneShapes.isEmpty() ? null
+                : (ShapeElement) laneShapes.values().iterator().next().getParent();
+        if (lanesChanged) {
+            Stereotype stereo = partitionStereotype(project);
+            Map<String,ActivityPartition> kept = new LinkedHashMap<>();
+            for (String actor : partitions.keySet())
+                if (actors.contains(actor)) kept.put(actor, partitions.get(actor));
+            for (String actor : actors)
+                if (!kept.containsKey(actor))
+                    kept.put(actor, createPartition(project, act, actor, stereo));
+            partitions = kept;
+        }
+        ActivityPartition firstLane = partitions.values().iterator().next();
+
+        if (diff.isEmpty() && !lanesChanged) return diff;
+
+        /* -------- model: removed, added and changed main actions -------- */
+        Set<ControlFlow> imported = importedFlows(act);
+        for (ActivityNode gone : diff.removed()) removeNode(gone);
+
+        Set<ActivityData> modified = new HashSet<>(diff.modified());
+        Set<ActivityNode> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<ActivityNode> chain = new ArrayList<>();
+        for (var e : diff.matches().entrySet()) {
+            ActivityData d = e.getKey();
+            ActivityPartition lane = partitions.get(ImportPlanner.actorName(d.getActor()));
+            ActivityNode node = e.getValue();
+
+            if (node == null) {
+                node = createMainAction(project, act, d, null);
+                lane.getNode().add(node);
+                e.setValue(node);
+            } else if (modified.contains(d)) {
+                if (!node.getInPartition().contains(lane)) {
+                    movePartition(node, lane);
+                    // recreated in its new lane below
+                    ShapeElement shape = presentation.find(dpe, node, ShapeElement.class);
+                    if (shape != null) presentation.delete(shape);
+                }
+                updatePins(project, node, d, dpe);
+                changed.add(node);
+            }
+            chain.add(node);
+        }
+
+        /* start / end stay in the first lane */
+        InitialNode start = null;
+        ActivityFinalNode end = null;
+        for (ActivityNode n : act.getNode()) {
+            if (n instanceof InitialNode i && start == null) start = i;
+            if (n instanceof ActivityFinalNode f && end == null) end = f;
+        }
+        if (start == null) {
+            start = project.getElementsFactory().createInitialNodeInstance();
+            start.setName("Start");
+            mgr.addElement(start, act);
+        }
+        if (end == null) {
+            end = project.getElementsFactory().createActivityFinalNodeInstance();
+            end.setName("End");
+            mgr.addElement(end, act);
+        }
+        if (!start.getInPartition().contains(firstLane)) movePartition(start, firstLane);
+        if (!end.getInPartition().contains(firstLane))   movePartition(end, firstLane);
+        chain.add(0, start);
+        chain.add(end);
+
+        restitchControlFlows(project, act, chain, imported);
+
+        /* -------- diagram -------- */
+        if (lanesChanged) {
+            // lanes are rebuilt as a whole; their node shapes go with them
+            if (oldSwimlane != null) presentation.delete(oldSwimlane);
+            for (ActivityPartition p : new ArrayList<>(act.getPartition()))
+                if (laneShapes.containsKey(p) && !partitions.containsValue(p)
+                        && p.getNode().isEmpty())
+                    removePartition(p);
+
+            laneShapes.clear();
+            buildSwimlanes(dpe, partitions, laneShapes);
+        }
+
+        // new lanes are placed by the layout; lanes kept from before stay where they are.
+        // Every node is laid out, with the flows through the ones the user added, in flow
+        // order, so new actions go where they belong in it
+        populateDiagramNodes(act, dpe, laneShapes);
+        DiagramGridLayouter.layoutNodes(flowOrder(act.getNode(), chain), dpe, partitions,
+                                        START_Y, Y_STEP, presentation,
+                                        layoutStrategy, pinPlacement, !lanesChanged, changed);
+        populateDiagramPaths(act, dpe);
+
+        return diff;
+    }
+
+    /**
+     * Orders nodes along their flows: each node comes after every node with
+     * a flow into it, except around loops. Ties, and loops, are decided by
+     * position in the chain, then by the order of the nodes, so nodes the
+     * user added (decisions, merges, forks) land between the actions they
+     * connect.
+     *
+     * @param nodes The nodes of a diagram's owner
+     * @param chain The imported nodes, Start to End
+     * @return The nodes and the chain, each node once
+     */
+    private static List<ActivityNode> flowOrder(Collection<ActivityNode> nodes,
+                                                List<ActivityNode> chain) {
+        List<ActivityNode> base = new ArrayList<>(chain);
+        Map<ActivityNode,Integer> rank = new IdentityHashMap<>();
+        for (int i = 0; i < chain.size(); i++) rank.put(chain.get(i), i);
+        for (ActivityNode n : nodes)
+            if (rank.putIfAbsent(n, base.size()) == null) base.add(n);
+
+        // flows into each node from nodes not yet ordered
+        int[] waiting = new int[base.size()];
+        for (ActivityNode n : base)
+            for (ActivityEdge e : n.getOutgoing()) {
+                Integer t = rank.get(e.getTarget());
+                if (t != null && e.getTarget() != n) waiting[t]++;
+            }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < base.size(); i++) if (waiting[i] == 0) ready.add(i);
+        boolean[] done = new boolean[base.size()];
+        List<ActivityNode> order = new ArrayList<>(base.size());
+        int earliest = 0;
+        while (order.size() < base.size()) {
+            Integer i = ready.poll();
+            if (i == null) {
+                // every node left waits on another: a loop, entered at its earliest node
+                while (done[earliest]) earliest++;
+                i = earliest;
+            } else if (done[i]) {
+                continue;
+            }
+            done[i] = true;
+            ActivityNode n = base.get(i);
+            order.add(n);
+            for (ActivityEdge e : n.getOutgoing()) {
+                Integer t = rank.get(e.getTarget());
+                if (t != null && !done[t] && --waiting[t] == 0) ready.add(t);
+            }
+        }
+        return order;
+    }
+
+    /* -------- lower levels: the children of one action, then theirs */
+    private void updateSubactionDiagram(Project project,
+                                        StructuredActivityNode parentNode,
+                                        ActivityTree tree, int row,
+                                        Map<String,ActionTypeChooser.ActionType> actionTypes)
+            throws ReadOnlyElementException {
+
+        List<ActivityData> subRows = tree.childRows(row);
+        List<ActivityNode> existing = actionNodes(getNodesOfContext(parentNode));
+        if (existing.isEmpty() && subRows.isEmpty()) return;
+
+        ActivityTable table = tree.table();
+        ImportDiff<ActivityNode> diff = ImportDiff.compute(subRows,
+                d -> rowFingerprint(d, actionType(actionTypes, tree, table.rowOf(d))),
+                existing, NODE_READER);
+        if (!diff.isEmpty()) applySubactionDiff(project, parentNode, tree, diff, actionTypes);
+
+        updateChildDiagrams(project, tree, diff, actionTypes);
+    }
+
+    /*
+     * applies the diff to the model and to the action's diagram, the way
+     * updateMainDiagram does: shapes are added for new nodes and deleted
+     * with removed ones, pins are synced, and only the paths whose ends
+     * moved are routed again, so changes the user made there survive
+     */
+    private void applySubactionDiff(Project project,
+                                    StructuredActivityNode parentNode,
+                                    ActivityTree tree,
+                                    ImportDiff<ActivityNode> diff,
+                                    Map<String,ActionTypeChooser.ActionType> actionTypes)
+            throws ReadOnlyElementException {
+
+        ModelElementsManager mgr = ModelElementsManager.getInstance();
+        ActivityTable table = tree.table();
+        List<ActivityData> subRows = new ArrayList<>(diff.matches().keySet());
+
+        /* the action's diagram, unless it is still waiting to be filled in */
+        Diagram diagram = findOwnedDiagram(parentNode);
+        DiagramPresentationElement dpe = (diagram == null || SubdiagramMaterializer.isDeferred(diagram))
+                                       ? null : project.getDiagram(diagram);
+        if (dpe != null) dpe.ensureLoaded();
+
+        /* lanes currently shown on the diagram */
+        Map<String,ActivityPartition> partitions = new LinkedHashMap<>();
+        Map<ActivityPartition,ShapeElement> laneShapes = new HashMap<>();
+        if (dpe != null) {
+            for (ActivityPartition p : index.activity().getPartition()) {
+                ShapeElement lane = presentation.find(dpe, p, ShapeElement.class);
+                if (lane != null && !partitions.containsKey(p.getName())) {
+                    partitions.put(p.getName(), p);
+                    laneShapes.put(p, lane);
+                }
+            }
+        }
+
+        /* -------- model: removed sub‑actions -------- */
+        Set<ControlFlow> imported = importedFlows(parentNode);
+        for (ActivityNode gone : diff.removed()) removeShownNode(gone, dpe);
+
+        if (subRows.isEmpty()) {
+            // no sub‑actions left: drop the empty control flow, the diagram and its lanes
+            for (Element child : new ArrayList<>(parentNode.getOwnedElement()))
+                if (child instanceof InitialNode || child instanceof ActivityFinalNode)
+                    removeNode((ActivityNode) child);
+            if (diagram != null) {
+                presentation.forget(diagram);
+                mgr.removeElement(diagram);
+            }
+            for (ActivityPartition p : partitions.values())
+                if (p.getNode().isEmpty()) removePartition(p);
+            return;
+        }
+
+        /* -------- lanes: add new actors before their nodes are created -------- */
+        Set<String> actors = new LinkedHashSet<>();
+        for (ActivityData d : subRows) actors.add(ImportPlanner.actorName(d.getActor()));
+        boolean lanesChanged = dpe != null && !actors.equals(partitions.keySet());
+        ShapeElement oldSwimlane = laneShapes.isEmpty() ? null
+                : (ShapeElement) laneShapes.values().iterator().next().getParent();
+        if (lanesChanged) {
+            Map<String,ActivityPartition> kept = new LinkedHashMap<>();
+            for (String actor : partitions.keySet())
+                if (actors.contains(actor)) kept.put(actor, partitions.get(actor));
+            Set<String> added = new LinkedHashSet<>(actors);
+            added.removeAll(kept.keySet());
+            kept.putAll(createPartitionsInMainOrder(project, index.activity(), added));
+            partitions = kept;
+        }
+
+        /* -------- model: added and changed sub‑actions -------- */
+        Set<ActivityData> modified = new HashSet<>(diff.modified());
+        Set<ActivityNode> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<ActivityNode> children = new ArrayList<>();
+        for (var e : diff.matches().entrySet()) {
+            ActivityData d = e.getKey();
+            ActionTypeChooser.ActionType t = actionType(actionTypes, tree, table.rowOf(d));
+            ActivityNode node = e.getValue();
+
+            if (node != null && modified.contains(d)
+                    && (node instanceof CallBehaviorAction)
+                       != (t == ActionTypeChooser.ActionType.CALL_BEHAVIOR)) {
+                // a different kind of node: replace it
+                removeShownNode(node, dpe);
+                node = null;
+            }
+            if (node == null) {
+                node = createSubAction(project, parentNode, d, t);
+            } else if (modified.contains(d)) {
+                ActivityPartition lane = index.partition(ImportPlanner.actorName(d.getActor()));
+                if (lane != null && !node.getInPartition().contains(lane)) {
+                    movePartition(node, lane);
+                    // recreated for its new lane below
+                    ShapeElement shape = dpe == null ? null
+                            : presentation.find(dpe, node, ShapeElement.class);
+                    if (shape != null) presentation.delete(shape);
+                }
+                updatePins(project, node, d, dpe);
+                changed.add(node);
+            }
+            e.setValue(node);
+            children.add(node);
+        }
+
+        /* start / end stay in the first lane */
+        InitialNode start = null;
+        ActivityFinalNode end = null;
         for (Element child : parentNode.getOwnedElement()) {
-            if (child instanceof ControlFlow cf) {
-                String flowKey = cf.getSource().getName() + "->" + cf.getTarget().getName();
-                existingFlows.add(flowKey);
+            if (child instanceof InitialNode i && start == null) start = i;
+            if (child instanceof ActivityFinalNode f && end == null) end = f;
+        }
+
+        if (diagram == null) {
+            // the action had no diagram: build it, with any start and end it lacks
+            if (start != null && end != null)
+                restitchControlFlows(project, parentNode, chainOf(start, children, end), imported);
+            createSubactionDiagram(project, parentNode, subRows, children, actionTypes);
+            return;
+        }
+
+        if (start == null) {
+            start = project.getElementsFactory().createInitialNodeInstance();
+            start.setName("Start");
+            mgr.addElement(start, parentNode);
+        }
+        if (end == null) {
+            end = project.getElementsFactory().createActivityFinalNodeInstance();
+            end.setName("End");
+            mgr.addElement(end, parentNode);
+        }
+        if (!partitions.isEmpty()) {
+            ActivityPartition firstLane = partitions.values().iterator().next();
+            if (!start.getInPartition().contains(firstLane)) movePartition(start, firstLane);
+            if (!end.getInPartition().contains(firstLane))   movePartition(end, firstLane);
+        }
+
+        List<ActivityNode> chain = chainOf(start, children, end);
+        restitchControlFlows(project, parentNode, chain, imported);
+
+        // a deferred diagram is filled in from the model when it is first opened
+        if (dpe == null) return;
+
+        /* -------- diagram -------- */
+        if (lanesChanged) {
+            // lanes are rebuilt as a whole; the node shapes are not in them
+            if (oldSwimlane != null) presentation.delete(oldSwimlane);
+            for (ActivityPartition p : laneShapes.keySet())
+                if (!partitions.containsValue(p) && p.getNode().isEmpty())
+                    removePartition(p);
+
+            laneShapes.clear();
+            buildSwimlanes(dpe, partitions, laneShapes);
+        }
+
+        /* nodes the user added to the action are laid out too, in flow order */
+        List<ActivityNode> shown = new ArrayList<>();
+        for (ActivityNode node : getNodesOfContext(parentNode))
+            if (!(node instanceof Pin) && node != parentNode) shown.add(node);
+        List<ActivityNode> nodesToLayout = flowOrder(shown, chain);
+
+        for (ActivityNode node : nodesToLayout)
+            if (presentation.find(dpe, node, ShapeElement.class) == null)
+                presentation.createShape(node, dpe);
+
+        // lanes kept from before stay where they are; the incremental strategy
+        // reshapes only the shapes that move
+        SubdiagramGridLayouter.layoutNodeList(nodesToLayout, dpe, partitions,
+                                              START_Y, Y_STEP, presentation, layoutStrategy,
+                                              pinPlacement, !lanesChanged, changed);
+        populateDiagramPaths(parentNode, dpe);
+    }
+
+    /* start, the actions, end */
+    private static List<ActivityNode> chainOf(ActivityNode start, List<ActivityNode> actions,
+                                              ActivityNode end) {
+        List<ActivityNode> chain = new ArrayList<>(actions.size() + 2);
+        chain.add(start);
+        chain.addAll(actions);
+        chain.add(end);
+        return chain;
+    }
+
+    /* -------- fingerprints -------- */
+
+    private static final ImportDiff.NodeReader<ActivityNode> NODE_READER =
+            new ImportDiff.NodeReader<>() {
+                @Override public String name(ActivityNode node) {
+                    return node.getName();
+                }
+                @Override public long fingerprint(ActivityNode node) {
+                    String actor = node.getInPartition().isEmpty()
+                                 ? ImportPlanner.actorName(null)
+                                 : node.getInPartition().iterator().next().getName();
+                    return ImportDiff.fingerprint(actor, node instanceof CallBehaviorAction,
+                                                  pinNames(inputPins(node)),
+                                                  pinNames(outputPins(node)));
+                }
+            };
+
+    private static long rowFingerprint(ActivityData d, ActionTypeChooser.ActionType t) {
+        return ImportDiff.fingerprint(ImportPlanner.actorName(d.getActor()),
+                                      t == ActionTypeChooser.ActionType.CALL_BEHAVIOR,
+                                      d.getInputs(), d.getOutputs());
+    }
+
+    /* the actions an import creates; pins, start and end nodes are skipped */
+    private static List<ActivityNode> actionNodes(Collection<ActivityNode> nodes) {
+        List<ActivityNode> out = new ArrayList<>();
+        for (ActivityNode n : nodes)
+            if (n instanceof StructuredActivityNode || n instanceof CallBehaviorAction)
+                out.add(n);
+        return out;
+    }
+
+    private static List<InputPin> inputPins(ActivityNode n) {
+        if (n instanceof StructuredActivityNode san) return san.getStructuredNodeInput();
+        if (n instanceof CallBehaviorAction cba)     return cba.getArgument();
+        return Collections.emptyList();
+    }
+
+    private static List<OutputPin> outputPins(ActivityNode n) {
+        if (n instanceof StructuredActivityNode san) return san.getStructuredNodeOutput();
+        if (n instanceof CallBehaviorAction cba)     return cba.getResult();
+        return Collections.emptyList();
+    }
+
+    private static List<String> pinNames(List<? extends Pin> pins) {
+        List<String> names = new ArrayList<>(pins.size());
+        for (Pin p : pins) names.add(p.getName());
+        return names;
+    }
+
+    /* -------- in‑place edits -------- */
+
+    /** removes a node together with every flow attached to it or its pins */
+    private void removeNode(ActivityNode node) throws ReadOnlyElementException {
+        removeEdges(node);
+        for (Element owned : node.getOwnedElement())
+            if (owned instanceof Pin p) removeEdges(p);
+        presentation.forget(node);
+        ModelElementsManager.getInstance().removeElement(node);
+    }
+
+    private void removeEdges(ActivityNode node) throws ReadOnlyElementException {
+        for (ActivityEdge e : new ArrayList<>(node.getIncoming())) removeEdge(e);
+        for (ActivityEdge e : new ArrayList<>(node.getOutgoing())) removeEdge(e);
+    }
+
+    /* removes a node, and first its shape on the diagram if it has one there */
+    private void removeShownNode(ActivityNode node, DiagramPresentationElement dpe)
+            throws ReadOnlyElementException {
+        ShapeElement shape = dpe == null ? null : presentation.find(dpe, node, ShapeElement.class);
+        if (shape != null) presentation.delete(shape);
+        removeNode(node);
+    }
+
+    /* removes a flow, telling the flow index of its owner first */
+    private void removeEdge(ActivityEdge e) throws ReadOnlyElementException {
+        if (e instanceof ControlFlow cf && cf.getOwner() != null)
+            index.flows(cf.getOwner()).removed(cf);
+        presentation.forget(e);
+        ModelElementsManager.getInstance().removeElement(e);
+    }
+
+    private void movePartition(ActivityNode node, ActivityPartition lane) {
+        for (ActivityPartition p : new ArrayList<>(node.getInPartition()))
+            p.getNode().remove(node);
+        lane.getNode().add(node);
+    }
+
+    private void removePartition(ActivityPartition p) throws ReadOnlyElementException {
+        presentation.forget(p);
+        ModelElementsManager.getInstance().removeElement(p);
+        index.partitionRemoved(p);
+    }
+
+    /**
+     * Matches the node's pins to the row by name: pins that are still listed
+     * are kept (with their shapes and flows), the rest are removed and the
+     * missing ones are created. New pins get a shape when the node has one.
+     */
+    private void updatePins(Project project, ActivityNode node, ActivityData d,
+                            DiagramPresentationElement dpe)
+            throws ReadOnlyElementException {
+
+        ElementsFactory f = project.getElementsFactory();
+        List<Pin> created = new ArrayList<>();
+        syncPins(node, inputPins(node),  d.getInputs(),  f::createInputPinInstance,  created);
+        syncPins(node, outputPins(node), d.getOutputs(), f::createOutputPinInstance, created);
+
+        ShapeElement nodeShape = (dpe == null) ? null
+                : presentation.find(dpe, node, ShapeElement.class);
+        if (nodeShape == null) return;
+
+        for (Pin p : created)
+            if (presentation.find(dpe, p, ShapeElement.class) == null)
+                presentation.createShape(p, nodeShape);
+    }
+
+    private <P extends Pin> void syncPins(ActivityNode node, List<P> pins,
+                                          List<String> names, Supplier<P> factory,
+                                          List<Pin> created)
+            throws ReadOnlyElementException {
+
+        ModelElementsManager mgr = ModelElementsManager.getInstance();
+
+        Map<String,Integer> wanted = new HashMap<>();
+        for (String name : names) wanted.merge(name, 1, Integer::sum);
+
+        for (P p : new ArrayList<>(pins)) {
+            Integer left = wanted.get(p.getName());
+            if (left == null || left == 0) {
+                removeEdges(p);
+                presentation.forget(p);
+                mgr.removeElement(p);
+            } else {
+                wanted.put(p.getName(), left - 1);
             }
         }
-        
-        ActivityNode prev = startNode;
-        
-        // Create flows: start -> first subaction -> ... -> last subaction -> end
-        for (ActivityNode subAction : subActionNodes) {
-            String flowKey = prev.getName() + "->" + subAction.getName();
-            if (!existingFlows.contains(flowKey)) {
-                ControlFlow cf = f.createControlFlowInstance();
-                cf.setSource(prev);
-                cf.setTarget(subAction);
-                mgr.addElement(cf, parentNode);
+
+        for (String name : names) {
+            Integer left = wanted.get(name);
+            if (left == null || left == 0) continue;
+            wanted.put(name, left - 1);
+
+            P p = factory.get(); p.setName(name);
+            mgr.addElement(p, node); pins.add(p);
+            created.add(p);
+        }
+    }
+
+    /**
+     * The control flows an earlier import made in the owner: the first flow
+     * between each start, action or end node and the next one in flow order.
+     * Taken before an update changes the model, so the flows the user added
+     * (skips, loops, flows to their own nodes) can be told apart from them.
+     */
+    private Set<ControlFlow> importedFlows(Element owner) {
+        Collection<ActivityNode> nodes = getNodesOfContext(owner);
+        List<ActivityNode> chain = new ArrayList<>();
+        for (ActivityNode n : nodes) if (n instanceof InitialNode) { chain.add(n); break; }
+        chain.addAll(actionNodes(nodes));
+        for (ActivityNode n : nodes) if (n instanceof ActivityFinalNode) { chain.add(n); break; }
+
+        Set<ActivityNode> inChain = Collections.newSetFromMap(new IdentityHashMap<>());
+        inChain.addAll(chain);
+        FlowIndex flows = index.flows(owner);
+        Set<ControlFlow> out = Collections.newSetFromMap(new IdentityHashMap<>());
+        ActivityNode previous = null;
+        for (ActivityNode n : flowOrder(nodes, chain)) {
+            if (!inChain.contains(n)) continue;
+            if (previous != null) {
+                ControlFlow cf = flows.find(previous, n);
+                if (cf != null) out.add(cf);
             }
-            prev = subAction;
+            previous = n;
         }
-        
-        // Final flow to end node
-        if (prev != null && endNode != null) {
-            String flowKey = prev.getName() + "->" + endNode.getName();
-            if (!existingFlows.contains(flowKey)) {
-                ControlFlow cf = f.createControlFlowInstance();
-                cf.setSource(prev);
-                cf.setTarget(endNode);
-                mgr.addElement(cf, parentNode);
+        return out;
+    }
+
+    /**
+     * Makes the chain nodes flow chain[0] → chain[1] → … : missing flows are
+     * created, the imported flows (see importedFlows) between chain nodes
+     * that are no longer consecutive are removed, and so are second flows
+     * between the same two nodes. Flows the user added stay. Flows are
+     * matched by their source and target elements, not by name.
+     */
+    private void restitchControlFlows(Project project, Element owner,
+                                      List<ActivityNode> chain,
+                                      Set<ControlFlow> imported)
+            throws ReadOnlyElementException {
+
+        ModelElementsManager mgr = ModelElementsManager.getInstance();
+        FlowIndex flows = index.flows(owner);
+
+        Map<ActivityNode,Integer> position = new IdentityHashMap<>();
+        for (int i = 0; i < chain.size(); i++) position.put(chain.get(i), i);
+
+        for (ControlFlow cf : getFlowsOfContext(owner)) {
+            Integer source = position.get(cf.getSource());
+            Integer target = position.get(cf.getTarget());
+            if (source == null || target == null) continue;   // not between chain nodes
+
+            // the first flow between consecutive nodes stays, any other goes
+            if (target == source + 1) {
+                if (flows.find(cf.getSource(), cf.getTarget()) == cf) continue;
+            } else if (!imported.contains(cf)) {
+                continue;
+            }
+            flows.removed(cf);
+            presentation.forget(cf);
+            mgr.removeElement(cf);
+        }
+
+        connectChain(project, owner, chain);
+    }
+
+    /*
+     * creates the missing flows chain[0] → chain[1] → … in the owner; two
+     * nodes the user joined through nodes of their own (a decision, a merge)
+     * are not connected again
+     */
+    private void connectChain(Project project, Element owner, List<ActivityNode> chain)
+            throws ReadOnlyElementException {
+
+        ElementsFactory f = project.getElementsFactory();
+        ModelElementsManager mgr = ModelElementsManager.getInstance();
+        FlowIndex flows = index.flows(owner);
+        Set<ActivityNode> inChain = Collections.newSetFromMap(new IdentityHashMap<>());
+        inChain.addAll(chain);
+
+        for (int i = 1; i < chain.size(); i++) {
+            ActivityNode source = chain.get(i - 1), target = chain.get(i);
+            if (flows.find(source, target) != null) continue;
+            if (joinedOutsideChain(source, target, inChain)) continue;
+
+            ControlFlow cf = f.createControlFlowInstance();
+            cf.setSource(source); cf.setTarget(target);
+            mgr.addElement(cf, owner);
+            flows.added(cf);
+        }
+    }
+
+    /* true if control flows lead from source to target through nodes outside the chain */
+    private static boolean joinedOutsideChain(ActivityNode source, ActivityNode target,
+                                              Set<ActivityNode> inChain) {
+        Set<ActivityNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<ActivityNode> todo = new ArrayDeque<>();
+        todo.add(source);
+        while (!todo.isEmpty()) {
+            for (ActivityEdge e : todo.poll().getOutgoing()) {
+                if (!(e instanceof ControlFlow)) continue;
+                ActivityNode next = e.getTarget();
+                if (next == target) return true;
+                if (!inChain.contains(next) && seen.add(next)) todo.add(next);
             }
         }
+        return false;
+    }
+
+    private Diagram findOwnedDiagram(Element owner) {
+        for (Element e : owner.getOwnedElement())
+            if (e instanceof Diagram d) return d;
+        return null;
     }
 
     /* =============================================================
                          DIAGRAM POPULATION
        ============================================================= */
 
-    /** one shape per node, placed inside its swim‑lane column */
+    /**
+     * one shape per node, placed inside its swim‑lane column; new shapes keep
+     * Cameo's default bounds until the grid layouter reshapes them (once)
+     */
     private void populateDiagramNodes(Element context,
                                       DiagramPresentationElement dpe,
                                       Map<ActivityPartition,ShapeElement> laneShapes)
             throws ReadOnlyElementException {
 
-        PresentationElementsManager pem = PresentationElementsManager.getInstance();
+        Map<ActivityNode,ShapeElement> laneOfNode = ImportIndex.laneShapesByNode(laneShapes);
 
         for (ActivityNode node : getNodesOfContext(context)) {
             // Skip the context node itself (don't show parent in its own diagram)
             if (node.equals(context)) continue;
 
-            ShapeElement parentShape = null;
-            for (var e : laneShapes.entrySet())
-                if (e.getKey().getNode().contains(node)) {
-                    parentShape = e.getValue(); break;
-                }
+            ShapeElement parentShape = laneOfNode.get(node);
 
-            if (dpe.findPresentationElement(node, ShapeElement.class) != null) continue;
+            if (presentation.find(dpe, node, ShapeElement.class) != null) continue;
 
-            pem.createShapeElement(node,
+            presentation.createShape(node,
                     (parentShape != null) ? parentShape : dpe);
         }
     }
 
+    /**
+     * draws the flows that are not on the diagram yet, routed around the
+     * shapes (see OrthogonalRouter); flows drawn by an earlier import are
+     * routed again when this import moved one of their ends
+     */
     private void populateDiagramPaths(Element context,
                                       DiagramPresentationElement dpe)
             throws ReadOnlyElementException {
 
-        PresentationElementsManager pem = PresentationElementsManager.getInstance();
-        for (ControlFlow cf : getFlowsOfContext(context)) {
-            PresentationElement src =
-                    dpe.findPresentationElement(cf.getSource(), PresentationElement.class);
-            PresentationElement tgt =
-                    dpe.findPresentationElement(cf.getTarget(), PresentationElement.class);
-            if (src != null && tgt != null)
-                pem.createPathElement(cf, src, tgt);
+        OrthogonalRouter router = null;
+        for (ActivityEdge edge : getEdgesOfContext(context)) {
+            PresentationElement drawn = presentation.find(dpe, edge, PresentationElement.class);
+
+            // object flows end at pins, which are shown on their nodes' shapes
+            PresentationElement src = presentation.find(dpe, edge.getSource(), PresentationElement.class);
+            PresentationElement tgt = presentation.find(dpe, edge.getTarget(), PresentationElement.class);
+            if (src == null || tgt == null) continue;
+            if (drawn != null && !(drawn instanceof PathElement
+                                   && (presentation.wasReshaped(src) || presentation.wasReshaped(tgt))))
+                continue;
+
+            if (router == null) router = new OrthogonalRouter(obstacles(context, dpe));
+            List<Point> route = edge instanceof ObjectFlow
+                    ? router.route(src.getBounds(), pinSide(src, OrthogonalRouter.Side.RIGHT),
+                                   tgt.getBounds(), pinSide(tgt, OrthogonalRouter.Side.LEFT))
+                    : router.route(src.getBounds(), OrthogonalRouter.Side.BOTTOM,
+                                   tgt.getBounds(), OrthogonalRouter.Side.TOP);
+            if (drawn == null) presentation.createPath(edge, src, tgt, route);
+            else if (route != null) presentation.route((PathElement) drawn, route);
+        }
+    }
+
+    /* the side of its node's shape a pin's shape is on; the given side if it is not on one */
+    private static OrthogonalRouter.Side pinSide(PresentationElement pin, OrthogonalRouter.Side otherwise) {
+        PresentationElement node = pin.getParent();
+        return node instanceof ShapeElement ? OrthogonalRouter.sideOf(pin.getBounds(), node.getBounds())
+                                            : otherwise;
+    }
+
+    /* bounds of the node and pin shapes on the diagram */
+    private Rectangle[] obstacles(Element context, DiagramPresentationElement dpe) {
+        List<Rectangle> obstacles = new ArrayList<>();
+        for (ActivityNode node : getNodesOfContext(context)) {
+            if (node.equals(context)) continue;
+            ShapeElement shape = presentation.find(dpe, node, ShapeElement.class);
+            if (shape == null) continue;
+            obstacles.add(shape.getBounds());
+            List<Pin> pins = new ArrayList<>(inputPins(node));
+            pins.addAll(outputPins(node));
+            for (Pin pin : pins) {
+                ShapeElement ps = presentation.find(dpe, pin, ShapeElement.class);
+                if (ps != null) obstacles.add(ps.getBounds());
+            }
         }
+        return obstacles.toArray(new Rectangle[0]);
     }
 
     /* =============================================================
                            SHAPE BUILDERS
        ============================================================= */
 
-    private DiagramPresentationElement createAndOpenDiagram(Project project,
-                                                            Activity activity)
-            throws ReadOnlyElementException {
-
-        Diagram dgm = ModelElementsManager.getInstance()
-                          .createDiagram("SysML Activity Diagram", activity);
-        dgm.setName("Imported Activities");
-        DiagramPresentationElement dpe = project.getDiagram(dgm);
-        dpe.open();
-        return dpe;
-    }
-
-    private void buildAndPlaceSwimlanes(DiagramPresentationElement dpe,
-                                        Map<String,ActivityPartition> parts,
-                                        Map<String,Integer> actionsPerActor,
-                                        int startX, int startY,
-                                        Map<ActivityPartition,ShapeElement> laneShapes)
+    /**
+     * Creates the swimlane with one lane per partition, left to right. The
+     * lanes keep Cameo's default bounds until the grid layouter sizes them
+     * to the nodes it places (once).
+     */
+    private void buildSwimlanes(DiagramPresentationElement dpe,
+                                Map<String,ActivityPartition> parts,
+                                Map<ActivityPartition,ShapeElement> laneShapes)
             throws ReadOnlyElementException {
 
-        PresentationElementsManager pem = PresentationElementsManager.getInstance();
-        List<ActivityPartition> vertical = new ArrayList<>(parts.values());
-
-        ShapeElement wrapper = (ShapeElement)
-                pem.createSwimlane(Collections.emptyList(), vertical, dpe);
-
-        int idx = 0, maxRows = 1;
-        for (String actor : parts.keySet()) {
-            ShapeElement colShape = (ShapeElement)
-                    dpe.findPresentationElement(parts.get(actor), ShapeElement.class);
-
-            int rows = actionsPerActor.getOrDefault(actor, 1);
-            maxRows = Math.max(maxRows, rows);
-
-            int colX = startX + idx * LANE_WIDTH;
-            int colH = rows * (3 * ROW_HEIGHT);
-
-            pem.reshapeShapeElement(colShape,
-                    new Rectangle(colX, startY, LANE_WIDTH, colH));
-
-            laneShapes.put(parts.get(actor), colShape);
-            idx++;
-        }
-
-        pem.reshapeShapeElement(wrapper,
-                new Rectangle(startX, startY,
-                              LANE_WIDTH * vertical.size(),
-                              maxRows * 3 * ROW_HEIGHT));
+        presentation.createSwimlane(new ArrayList<>(parts.values()), dpe);
+        for (ActivityPartition p : parts.values())
+            laneShapes.put(p, presentation.find(dpe, p, ShapeElement.class));
     }
 
     /* =============================================================
@@ -572,17 +1417,7 @@ public class ActivityDiagramCreator {
         ModelElementsManager mgr = ModelElementsManager.getInstance();
 
         // Find the partition for this subaction's actor
-        Activity owningActivity = findOwningActivity(parent);
-        ActivityPartition partition = null;
-        if (owningActivity != null) {
-            String actorName = actorName(d.getActor());
-            for (ActivityPartition part : owningActivity.getPartition()) {
-                if (part.getName().equals(actorName)) {
-                    partition = part;
-                    break;
-                }
-            }
-        }
+        ActivityPartition partition = index.partition(ImportPlanner.actorName(d.getActor()));
 
         if (t == ActionTypeChooser.ActionType.CALL_BEHAVIOR) {
             CallBehaviorAction c = f.createCallBehaviorActionInstance();
@@ -653,6 +1488,21 @@ public class ActivityDiagramCreator {
         return Collections.emptyList();
     }
 
+    /* control flows and object flows */
+    private Collection<ActivityEdge> getEdgesOfContext(Element ctx) {
+        List<ActivityEdge> out = new ArrayList<>();
+        if (ctx instanceof Activity act)
+            act.getEdge().stream()
+                   .filter(e -> e instanceof ControlFlow || e instanceof ObjectFlow)
+                   .forEach(out::add);
+        else if (ctx instanceof StructuredActivityNode san)
+            san.getOwnedElement().stream()
+                   .filter(e -> e instanceof ControlFlow || e instanceof ObjectFlow)
+                   .map(e -> (ActivityEdge)e)
+                   .forEach(out::add);
+        return out;
+    }
+
     private Collection<ControlFlow> getFlowsOfContext(Element ctx) {
         List<ControlFlow> out = new ArrayList<>();
         if (ctx instanceof Activity act)
@@ -667,4 +1517,4 @@ public class ActivityDiagramCreator {
                    .forEach(out::add);
         return out;
     }
-}
\ No newline at end of file
+}
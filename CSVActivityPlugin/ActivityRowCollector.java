@@ -0,0 +1,317 @@
+package com.example.csvactivityplugin;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns a stream of spreadsheet rows into an ActivityTable.
+ *
+ * The collector finds the header row (within the first 10 rows), remembers
+ * where the Name/Input/Output/Actor columns are, classifies every following
+ * row as a main action or a sub-action and links each sub-action to its
+ * parent. Sub-actions may be nested to any depth ("1.2.3.4"): the parent of
+ * 1.2.3 is the last row numbered 1.2, or, if there is none, the closest row
+ * above it that is less deeply nested. Apart from the table being built,
+ * only the current row is held in memory.
+ *
+ * Once the header is known, only the Name/Input/Output/Actor columns are
+ * requested from the reader; every other cell is skipped before it is
+ * decoded.
+ */
+final class ActivityRowCollector implements SheetRowHandler {
+
+    // Delimiters used to separate multiple inputs/outputs
+    private static final String[] DELIMITERS = {";", ","};
+
+    // Column names to search for (case-insensitive)
+    static final String COL_NAME = "Name";
+    static final String COL_INPUT = "Input";
+    static final String COL_OUTPUT = "Output";
+    static final String COL_ACTOR = "Actor";
+
+    // Number of rows searched for the header before giving up
+    private static final int HEADER_SEARCH_ROWS = 10;
+
+    // Rows between two progress reports
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private final ActivityTable.Builder table = new ActivityTable.Builder();
+
+    // Main/sub-action rules for row names
+    private final RowClassifier classifier = new RowClassifier();
+
+    // Told about the number of rows read so far
+    private final ImportProgress progress;
+
+    // Column indices, null until the header row has been seen
+    private Map<String, Integer> columnIndices;
+
+    // projectedColumns[i] is true if column i is read; null until the header row has been seen
+    private boolean[] projectedColumns;
+
+    // Cell values of the row currently being read, indexed by column
+    private String[] rowValues = new String[16];
+    private int rowWidth;
+    private int rowIndex;
+
+    // Row ids of the rows on the path to the current row, indexed by depth - 1 (-1 for gaps)
+    private int[] openRows = new int[8];
+    private int openDepth;
+
+    ActivityRowCollector() {
+        this(ImportProgress.NONE);
+    }
+
+    /**
+     * @param progress Receives the number of rows read every few rows. The
+     *                 collector also stops the reader (with a CancellationException)
+     *                 once the reading thread is interrupted.
+     */
+    ActivityRowCollector(ImportProgress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public void startRow(int rowIndex) {
+        if (rowIndex % PROGRESS_INTERVAL == 0) {
+            ImportProgress.checkCancelled();
+            progress.update("Reading rows", rowIndex, 0);
+        }
+        this.rowIndex = rowIndex;
+        Arrays.fill(rowValues, 0, rowWidth, null);
+        rowWidth = 0;
+    }
+
+    @Override
+    public boolean wantsColumn(int columnIndex) {
+        // Every cell is needed while looking for the header
+        if (projectedColumns == null) return true;
+        return columnIndex < projectedColumns.length && projectedColumns[columnIndex];
+    }
+
+    @Override
+    public void cell(int columnIndex, String value) {
+        if (columnIndex >= rowValues.length) {
+            rowValues = Arrays.copyOf(rowValues, Math.max(columnIndex + 1, rowValues.length * 2));
+        }
+        rowValues[columnIndex] = value;
+        rowWidth = Math.max(rowWidth, columnIndex + 1);
+    }
+
+    @Override
+    public void endRow() {
+        if (columnIndices == null) {
+            if (rowIndex < HEADER_SEARCH_ROWS) {
+                columnIndices = findColumnIndices();
+                if (columnIndices != null) {
+                    projectedColumns = projectColumns(columnIndices);
+                }
+            }
+            return;
+        }
+
+        try {
+            parseRow();
+        } catch (Exception e) {
+            System.err.println("Warning: Error parsing row " + (rowIndex + 1) + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true once the header row has been found
+     */
+    boolean hasHeader() {
+        return columnIndices != null;
+    }
+
+    /**
+     * Returns the activities collected so far.
+     *
+     * @return Table with one row per activity, in sheet order
+     * @throws IOException If no header row with a Name column was found
+     */
+    ActivityTable finish() throws IOException {
+        if (columnIndices == null) {
+            throw new IOException("Could not find required columns (Name, Input, Output) in the file");
+        }
+        return table.build();
+    }
+
+    /**
+     * Checks whether the current row is the header row.
+     *
+     * @return Map of column names to their indices, or null if this is not the header
+     */
+    private Map<String, Integer> findColumnIndices() {
+        Map<String, Integer> indices = new HashMap<>();
+
+        // Check each cell in the row
+        for (int colIndex = 0; colIndex < rowWidth; colIndex++) {
+            String value = value(colIndex).trim().toLowerCase();
+
+            // Look for our column names (case-insensitive)
+            if (value.contains("name")) {
+                indices.put(COL_NAME, colIndex);
+            } else if (value.contains("input")) {
+                indices.put(COL_INPUT, colIndex);
+            } else if (value.contains("output")) {
+                indices.put(COL_OUTPUT, colIndex);
+            } else if (value.contains("actor")) {
+                indices.put(COL_ACTOR, colIndex);
+            }
+        }
+
+        // If we found at least the Name column, we've found our header row
+        return indices.containsKey(COL_NAME) ? indices : null;
+    }
+
+    /**
+     * Marks the columns that are read from now on.
+     *
+     * @param indices Map of column names to their indices
+     * @return Flags indexed by column, true for every column that is read
+     */
+    private static boolean[] projectColumns(Map<String, Integer> indices) {
+        int width = 0;
+        for (int index : indices.values()) width = Math.max(width, index + 1);
+
+        boolean[] projected = new boolean[width];
+        for (int index : indices.values()) projected[index] = true;
+        return projected;
+    }
+
+    /**
+     * Appends the current row to the table.
+     * Only rows whose Name is an outline number or starts with "Action" are kept.
+     */
+    private void parseRow() {
+        Integer nameIndex = columnIndices.get(COL_NAME);
+        if (nameIndex == null) return;
+
+        Integer actorIndex = columnIndices.get(COL_ACTOR);
+        String actor = actorIndex != null ? value(actorIndex).trim() : "";
+
+        String name = value(nameIndex).trim();
+        if (name.isEmpty()) return;
+
+        int kind = classifier.classify(name);
+        if (kind == RowClassifier.NONE) return;   // row doesn’t match any rule
+
+        int[] outline = classifier.outline();
+        int outlineDepth = classifier.depth();
+        int depth = kind == RowClassifier.SUB ? outlineDepth : 1;
+        int row = table.startRow(name, actor, depth);
+        table.setOutline(outline, outlineDepth);
+
+        // Link sub‑actions to their parent
+        if (kind == RowClassifier.SUB) {
+            int parent = findParent(outline, depth);
+            if (parent >= 0) {
+                table.setParent(parent);
+            } else {
+                System.err.println("Warning: sub‑action encountered before any main action at row "
+                                   + (rowIndex + 1));
+            }
+        }
+        openRow(row, depth);
+
+        // Input pins
+        Integer inputIndex = columnIndices.get(COL_INPUT);
+        if (inputIndex != null) {
+            String inputsString = value(inputIndex);
+            if (!inputsString.isEmpty()) {
+                parseDelimitedString(inputsString, true);
+            }
+        }
+
+        // Output pins
+        Integer outputIndex = columnIndices.get(COL_OUTPUT);
+        if (outputIndex != null) {
+            String outputsString = value(outputIndex);
+            if (!outputsString.isEmpty()) {
+                parseDelimitedString(outputsString, false);
+            }
+        }
+
+        table.endRow();
+    }
+
+    /**
+     * Finds the parent of a sub-action: the last row numbered like the
+     * outline without its last group, else the closest less nested row above.
+     *
+     * @return Row id of the parent, or -1 if there is none
+     */
+    private int findParent(int[] outline, int depth) {
+        int byNumber = table.findOutline(outline, depth - 1);
+        if (byNumber >= 0 && table.depth(byNumber) < depth) return byNumber;
+
+        for (int d = Math.min(depth - 1, openDepth); d >= 1; d--) {
+            if (openRows[d - 1] >= 0) return openRows[d - 1];
+        }
+        return -1;
+    }
+
+    /* makes the row the deepest entry of the current path */
+    private void openRow(int row, int depth) {
+        if (depth > openRows.length) openRows = Arrays.copyOf(openRows, Math.max(depth, openRows.length * 2));
+        for (int d = openDepth; d < depth - 1; d++) openRows[d] = -1;
+        openRows[depth - 1] = row;
+        openDepth = depth;
+    }
+
+    /* value of a cell in the current row, "" when the cell is missing */
+    private String value(int columnIndex) {
+        String value = columnIndex < rowWidth ? rowValues[columnIndex] : null;
+        return value != null ? value : "";
+    }
+
+    /**
+     * Splits a delimited string into trimmed pin names and adds them to the
+     * current row. Tries both semicolon and comma as delimiters.
+     *
+     * @param delimitedString The string to parse
+     * @param inputs true to add input pins, false to add output pins
+     */
+    private void parseDelimitedString(String delimitedString, boolean inputs) {
+        // Determine which delimiter is used
+        char delimiter = ';';
+        for (String delim : DELIMITERS) {
+            if (delimitedString.contains(delim)) {
+                delimiter = delim.charAt(0);
+                break;
+            }
+        }
+
+        // Split by delimiter and trim each value, without an intermediate array
+        int length = delimitedString.length();
+        int start = 0;
+        boolean added = false;
+        while (start <= length) {
+            int end = delimitedString.indexOf(delimiter, start);
+            if (end < 0) end = length;
+
+            // same whitespace rule as String.trim()
+            int from = start, to = end;
+            while (from < to && delimitedString.charAt(from) <= ' ') from++;
+            while (to > from && delimitedString.charAt(to - 1) <= ' ') to--;
+            if (from < to) {
+                addPin(delimitedString.substring(from, to), inputs);
+                added = true;
+            }
+            start = end + 1;
+        }
+
+        // If no delimiter found, treat the whole string as one value
+        if (!added && !delimitedString.trim().isEmpty()) {
+            addPin(delimitedString.trim(), inputs);
+        }
+    }
+
+    private void addPin(String pin, boolean input) {
+        if (input) table.addInput(pin);
+        else table.addOutput(pin);
+    }
+}
@@ -0,0 +1,618 @@
+package com.example.csvactivityplugin;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Column-oriented store for the rows of an imported sheet.
+ *
+ * Rows are identified by int ids (0 .. size()-1, in sheet order). Actors and
+ * pin names repeat across many rows, so both are dictionary-encoded: every
+ * distinct actor and every distinct pin name is stored once in a SymbolTable
+ * and rows only hold int codes. The pins of row r are the codes
+ * inPins[inStart[r] .. inStart[r+1]) and outPins[outStart[r] .. outStart[r+1]).
+ *
+ * The outline number of each row's name is kept in an OutlineIndex, so rows
+ * can be found by number without re-reading the names (see findOutline).
+ *
+ * ActivityData is still available as a read-only view of a row (see
+ * {@link #row(int)} and {@link #rows()}) for code that works on lists.
+ */
+public final class ActivityTable {
+
+    /**
+     * Two-way mapping between strings and dense int codes.
+     */
+    public static final class SymbolTable {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] symbols = new String[16];
+        private int size;
+
+        /**
+         * @return The code of the string, adding it if it is new
+         */
+        int intern(String symbol) {
+            Integer code = codes.get(symbol);
+            if (code != null) return code;
+
+            if (size == symbols.length) symbols = Arrays.copyOf(symbols, size * 2);
+            symbols[size] = symbol;
+            codes.put(symbol, size);
+            return size++;
+        }
+
+        /**
+         * @return The code of the string, or -1 if it is not in the table
+         */
+        public int code(String symbol) {
+            Integer code = codes.get(symbol);
+            return code != null ? code : -1;
+        }
+
+        public String get(int code) {
+            return symbols[code];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    private final int size;
+    private final String[] names;
+    private final String[] documentation;   // null when no row has documentation
+    private final int[] actors;
+    private final int[] depths;               // 1 for main actions, 2 for "1.1", 3 for "1.1.1", ...
+    private final int[] parents;             // row id of the parent, -1 for none
+    private final int[] inStart;
+    private final int[] inPins;
+    private final int[] outStart;
+    private final int[] outPins;
+    private final SymbolTable actorSymbols;
+    private final SymbolTable pinSymbols;
+    private final OutlineIndex outlines;
+
+    // Views handed out by row(); created on first use
+    private ActivityData[] views;
+
+    private ActivityTable(int size, String[] names, String[] documentation, int[] actors,
+                          int[] depths, int[] parents, int[] inStart, int[] inPins,
+                          int[] outStart, int[] outPins, SymbolTable actorSymbols,
+                          SymbolTable pinSymbols, OutlineIndex outlines) {
+        this.size = size;
+        this.names = names;
+        this.documentation = documentation;
+        this.actors = actors;
+        this.depths = depths;
+        this.parents = parents;
+        this.inStart = inStart;
+        this.inPins = inPins;
+        this.outStart = outStart;
+        this.outPins = outPins;
+        this.actorSymbols = actorSymbols;
+        this.pinSymbols = pinSymbols;
+        this.outlines = outlines;
+    }
+
+    private ActivityTable(Builder b) {
+        this.size = b.size;
+        this.names = Arrays.copyOf(b.names, size);
+        this.documentation = b.documentation != null ? Arrays.copyOf(b.documentation, size) : null;
+        this.actors = Arrays.copyOf(b.actors, size);
+        this.depths = Arrays.copyOf(b.depths, size);
+        this.parents = Arrays.copyOf(b.parents, size);
+        this.inStart = Arrays.copyOf(b.inStart, size + 1);
+        this.inPins = Arrays.copyOf(b.inPins, b.inCount);
+        this.outStart = Arrays.copyOf(b.outStart, size + 1);
+        this.outPins = Arrays.copyOf(b.outPins, b.outCount);
+        this.actorSymbols = b.actorSymbols;
+        this.pinSymbols = b.pinSymbols;
+        this.outlines = b.outlines;
+    }
+
+    /**
+     * Builds a table from ActivityData objects, e.g. rows created by hand.
+     * ActivityData only knows main and sub-actions, so rows get depth 1 or 2;
+     * parent links are resolved by name to the closest main action above,
+     * and outline numbers are read from the names.
+     *
+     * @param rows Rows in sheet order
+     * @return The table
+     */
+    public static ActivityTable of(List<ActivityData> rows) {
+        Builder b = new Builder();
+        Map<String, Integer> mainRows = new HashMap<>();
+        OutlineNumber.Buffer outline = new OutlineNumber.Buffer();
+        for (ActivityData d : rows) {
+            int row = b.startRow(d.getName(), d.getActor(), d.isSubAction());
+            b.setOutline(outline.parts, OutlineNumber.parse(b.name(row), outline));
+            b.setDocumentation(d.getDocumentation());
+            if (d.isSubAction() && d.getParentName() != null) {
+                Integer parent = mainRows.get(d.getParentName());
+                if (parent != null) b.setParent(parent);
+            }
+            for (String in : d.getInputs()) b.addInput(in);
+            for (String out : d.getOutputs()) b.addOutput(out);
+            b.endRow();
+            if (!d.isSubAction()) mainRows.put(d.getName(), row);
+        }
+        return b.build();
+    }
+
+    /* =============================================================
+                               ROW ACCESS
+       ============================================================= */
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String name(int row) {
+        return names[row];
+    }
+
+    public String documentation(int row) {
+        String doc = documentation != null ? documentation[row] : null;
+        return doc != null ? doc : "";
+    }
+
+    /** @return Actor code of the row, see {@link #actors()} */
+    public int actorCode(int row) {
+        return actors[row];
+    }
+
+    public String actor(int row) {
+        return actorSymbols.get(actors[row]);
+    }
+
+    /** @return true for rows below the top level (depth greater than 1) */
+    public boolean isSubAction(int row) {
+        return depths[row] > 1;
+    }
+
+    /** @return Outline depth of the row: 1 for main actions, 2 for "1.1", ... */
+    public int depth(int row) {
+        return depths[row];
+    }
+
+    /** @return Row id of the action this row belongs under, or -1 for top-level rows */
+    public int parent(int row) {
+        return parents[row];
+    }
+
+    /**
+     * Finds the last row whose name starts with the given outline number.
+     *
+     * @param number Groups of the number, e.g. {1, 2, 3} for "1.2.3"
+     * @param depth Number of groups to use
+     * @return The row id, or -1 if no row has that number
+     */
+    int findOutline(int[] number, int depth) {
+        return outlines.find(number, depth);
+    }
+
+    /** @return Name of the parent row, or null if the row has none */
+    public String parentName(int row) {
+        int parent = parents[row];
+        return parent >= 0 ? names[parent] : null;
+    }
+
+    public int inputCount(int row) {
+        return inStart[row + 1] - inStart[row];
+    }
+
+    /** @return Pin code of the i-th input of the row, see {@link #pins()} */
+    public int inputCode(int row, int i) {
+        return inPins[inStart[row] + i];
+    }
+
+    public String input(int row, int i) {
+        return pinSymbols.get(inputCode(row, i));
+    }
+
+    public int outputCount(int row) {
+        return outStart[row + 1] - outStart[row];
+    }
+
+    /** @return Pin code of the i-th output of the row, see {@link #pins()} */
+    public int outputCode(int row, int i) {
+        return outPins[outStart[row] + i];
+    }
+
+    public String output(int row, int i) {
+        return pinSymbols.get(outputCode(row, i));
+    }
+
+    /** @return Input pin names of the row, as an unmodifiable list backed by the table */
+    public List<String> inputs(int row) {
+        return new PinList(inPins, inStart[row], inStart[row + 1]);
+    }
+
+    /** @return Output pin names of the row, as an unmodifiable list backed by the table */
+    public List<String> outputs(int row) {
+        return new PinList(outPins, outStart[row], outStart[row + 1]);
+    }
+
+    /** @return Dictionary of actor names; codes match {@link #actorCode} */
+    public SymbolTable actors() {
+        return actorSymbols;
+    }
+
+    /** @return Dictionary of pin names shared by inputs and outputs */
+    public SymbolTable pins() {
+        return pinSymbols;
+    }
+
+    /* =============================================================
+                          ActivityData VIEWS
+       ============================================================= */
+
+    /**
+     * @return A read-only ActivityData view of the row; the same object is
+     *         returned for the same row
+     */
+    public ActivityData row(int row) {
+        if (views == null) views = new ActivityData[size];
+        ActivityData view = views[row];
+        if (view == null) {
+            view = new RowView(row);
+            views[row] = view;
+        }
+        return view;
+    }
+
+    /**
+     * @return The row id of a view returned by {@link #row(int)}, or -1 if
+     *         the object is not a row of this table
+     */
+    public int rowOf(ActivityData data) {
+        return (data instanceof RowView view && view.table() == this) ? view.row : -1;
+    }
+
+    /**
+     * @return All rows as read-only ActivityData views, in sheet order
+     */
+    public List<ActivityData> rows() {
+        return new RowList();
+    }
+
+    private final class RowList extends AbstractList<ActivityData> implements RandomAccess {
+        @Override
+        public ActivityData get(int index) {
+            return row(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private final class PinList extends AbstractList<String> implements RandomAccess {
+        private final int[] codes;
+        private final int from;
+        private final int to;
+
+        PinList(int[] codes, int from, int to) {
+            this.codes = codes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException(index);
+            return pinSymbols.get(codes[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * ActivityData that reads its fields from the table. Setters throw,
+     * the table is immutable once built.
+     */
+    private final class RowView extends ActivityData {
+        private final int row;
+
+        RowView(int row) {
+            super(true);
+            this.row = row;
+        }
+
+        ActivityTable table() {
+            return ActivityTable.this;
+        }
+
+        @Override public String getName()          { return names[row]; }
+        @Override public String getDocumentation() { return ActivityTable.this.documentation(row); }
+        @Override public String getActor()         { return ActivityTable.this.actor(row); }
+        @Override public boolean isSubAction()     { return depths[row] > 1; }
+        @Override public String getParentName()    { return ActivityTable.this.parentName(row); }
+        @Override public List<String> getInputs()  { return ActivityTable.this.inputs(row); }
+        @Override public List<String> getOutputs() { return ActivityTable.this.outputs(row); }
+
+        @Override public void setName(String name)                  { readOnly(); }
+        @Override public void setDocumentation(String documentation) { readOnly(); }
+        @Override public void setActor(String actor)                { readOnly(); }
+        @Override public void setSubAction(boolean sub)             { readOnly(); }
+        @Override public void setParentName(String p)               { readOnly(); }
+        @Override public void setInputs(List<String> inputs)        { readOnly(); }
+        @Override public void setOutputs(List<String> outputs)      { readOnly(); }
+        @Override public void addInput(String input)                { readOnly(); }
+        @Override public void addOutput(String output)              { readOnly(); }
+
+        private void readOnly() {
+            throw new UnsupportedOperationException("Rows of an ActivityTable are read-only");
+        }
+
+        @Override
+        public String toString() {
+            return "ActivityData{" +
+                   "name='" + getName() + '\'' +
+                   ", documentation='" + getDocumentation() + '\'' +
+                   ", inputs=" + getInputs() +
+                   ", outputs=" + getOutputs() +
+                   '}';
+        }
+    }
+
+    /* =============================================================
+                             SERIALIZATION
+       ============================================================= */
+
+    /**
+     * Writes the table columns as they are (see {@link #readFrom}).
+     * Strings are written with writeUTF, so no single cell may exceed 64 KB.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        writeSymbols(out, actorSymbols);
+        writeSymbols(out, pinSymbols);
+        for (int r = 0; r < size; r++) {
+            out.writeUTF(names[r]);
+            out.writeUTF(documentation(r));
+            out.writeInt(actors[r]);
+            out.writeInt(depths[r]);
+            out.writeInt(parents[r]);
+        }
+        writeInts(out, inStart, size + 1);
+        writeInts(out, inPins, inPins.length);
+        writeInts(out, outStart, size + 1);
+        writeInts(out, outPins, outPins.length);
+        outlines.writeTo(out);
+    }
+
+    /**
+     * Reads a table written by {@link #writeTo}.
+     *
+     * @throws IOException If the data is truncated or inconsistent
+     */
+    static ActivityTable readFrom(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        SymbolTable actorSymbols = readSymbols(in);
+        SymbolTable pinSymbols = readSymbols(in);
+
+        String[] names = new String[size];
+        String[] documentation = null;
+        int[] actors = new int[size];
+        int[] depths = new int[size];
+        int[] parents = new int[size];
+        for (int r = 0; r < size; r++) {
+            names[r] = in.readUTF();
+            String doc = in.readUTF();
+            if (!doc.isEmpty()) {
+                if (documentation == null) documentation = new String[size];
+                documentation[r] = doc;
+            }
+            actors[r] = checkCode(in.readInt(), actorSymbols.size());
+            depths[r] = in.readInt();
+            parents[r] = in.readInt();
+            if (depths[r] < 1) throw new IOException("Bad depth " + depths[r]);
+            if (parents[r] >= r) throw new IOException("Bad parent row " + parents[r]);
+        }
+        int[] inStart = readInts(in);
+        int[] inPins = readInts(in);
+        int[] outStart = readInts(in);
+        int[] outPins = readInts(in);
+        checkOffsets(inStart, size, inPins.length);
+        checkOffsets(outStart, size, outPins.length);
+        for (int code : inPins) checkCode(code, pinSymbols.size());
+        for (int code : outPins) checkCode(code, pinSymbols.size());
+
+        OutlineIndex outlines = OutlineIndex.readFrom(in, size);
+
+        return new ActivityTable(size, names, documentation, actors, depths, parents,
+                                 inStart, inPins, outStart, outPins,
+                                 actorSymbols, pinSymbols, outlines);
+    }
+
+    private static void writeSymbols(DataOutputStream out, SymbolTable symbols) throws IOException {
+        out.writeInt(symbols.size());
+        for (int i = 0; i < symbols.size(); i++) out.writeUTF(symbols.get(i));
+    }
+
+    private static SymbolTable readSymbols(DataInputStream in) throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) symbols.intern(in.readUTF());
+        if (symbols.size() != count) throw new IOException("Duplicate symbol");
+        return symbols;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) out.writeInt(values[i]);
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readInt();
+        return values;
+    }
+
+    private static int checkCode(int code, int symbols) throws IOException {
+        if (code < 0 || code >= symbols) throw new IOException("Bad symbol code " + code);
+        return code;
+    }
+
+    private static void checkOffsets(int[] start, int size, int count) throws IOException {
+        if (start.length != size + 1 || start[0] != 0 || start[size] != count) {
+            throw new IOException("Bad pin offsets");
+        }
+        for (int r = 0; r < size; r++) {
+            if (start[r] > start[r + 1]) throw new IOException("Bad pin offsets");
+        }
+    }
+
+    /* =============================================================
+                                BUILDER
+       ============================================================= */
+
+    /**
+     * Appends rows one at a time: startRow, then any number of addInput /
+     * addOutput / setParent / setOutline calls, then endRow.
+     */
+    public static final class Builder {
+        private int size;
+        private String[] names = new String[64];
+        private String[] documentation;
+        private int[] actors = new int[64];
+        private int[] depths = new int[64];
+        private int[] parents = new int[64];
+        private int[] inStart = new int[65];
+        private int[] outStart = new int[65];
+        private int[] inPins = new int[64];
+        private int[] outPins = new int[64];
+        private int inCount;
+        private int outCount;
+        private final SymbolTable actorSymbols = new SymbolTable();
+        private final SymbolTable pinSymbols = new SymbolTable();
+        private final OutlineIndex outlines = new OutlineIndex();
+        private int[] outline = new int[8];
+        private int outlineDepth;
+        private boolean rowOpen;
+
+        /**
+         * Starts a new row.
+         *
+         * @return The id of the new row
+         */
+        public int startRow(String name, String actor, boolean subAction) {
+            return startRow(name, actor, subAction ? 2 : 1);
+        }
+
+        /**
+         * Starts a new row at the given outline depth.
+         *
+         * @param depth 1 for main actions, 2 for "1.1", 3 for "1.1.1", ...
+         * @return The id of the new row
+         */
+        public int startRow(String name, String actor, int depth) {
+            if (rowOpen) throw new IllegalStateException("Previous row was not ended");
+            if (depth < 1) throw new IllegalArgumentException("Depth must be at least 1: " + depth);
+            if (size == names.length) grow();
+
+            names[size] = name != null ? name : "";
+            actors[size] = actorSymbols.intern(actor != null ? actor : "");
+            depths[size] = depth;
+            parents[size] = -1;
+            rowOpen = true;
+            return size;
+        }
+
+        public void setDocumentation(String doc) {
+            if (doc == null || doc.isEmpty()) return;
+            if (documentation == null) documentation = new String[names.length];
+            documentation[size] = doc;
+        }
+
+        /** @param parentRow Row id returned by an earlier startRow */
+        public void setParent(int parentRow) {
+            parents[size] = parentRow;
+        }
+
+        /**
+         * Sets the outline number the row's name starts with; rows without
+         * one are left alone. The groups are copied.
+         *
+         * @param number Number groups, e.g. {1, 2, 3} for "1.2.3"
+         * @param depth Number of groups to use
+         */
+        void setOutline(int[] number, int depth) {
+            if (depth > outline.length) outline = Arrays.copyOf(outline, Math.max(depth, outline.length * 2));
+            System.arraycopy(number, 0, outline, 0, depth);
+            outlineDepth = depth;
+        }
+
+        public void addInput(String pin) {
+            if (inCount == inPins.length) inPins = Arrays.copyOf(inPins, inCount * 2);
+            inPins[inCount++] = pinSymbols.intern(pin);
+        }
+
+        public void addOutput(String pin) {
+            if (outCount == outPins.length) outPins = Arrays.copyOf(outPins, outCount * 2);
+            outPins[outCount++] = pinSymbols.intern(pin);
+        }
+
+        /** Finishes the row started by the last startRow. */
+        public void endRow() {
+            size++;
+            inStart[size] = inCount;
+            outStart[size] = outCount;
+            outlines.add(outline, outlineDepth);
+            outlineDepth = 0;
+            rowOpen = false;
+        }
+
+        /** @return Number of rows ended so far */
+        public int size() {
+            return size;
+        }
+
+        /** @return The name of a row that was already started */
+        public String name(int row) {
+            return names[row];
+        }
+
+        /** @return The depth of a row that was already started */
+        public int depth(int row) {
+            return depths[row];
+        }
+
+        /** @return The last ended row with the number, or -1 (see ActivityTable.findOutline) */
+        int findOutline(int[] number, int depth) {
+            return outlines.find(number, depth);
+        }
+
+        public ActivityTable build() {
+            if (rowOpen) throw new IllegalStateException("Last row was not ended");
+            return new ActivityTable(this);
+        }
+
+        private void grow() {
+            int capacity = names.length * 2;
+            names = Arrays.copyOf(names, capacity);
+            if (documentation != null) documentation = Arrays.copyOf(documentation, capacity);
+            actors = Arrays.copyOf(actors, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            inStart = Arrays.copyOf(inStart, capacity + 1);
+            outStart = Arrays.copyOf(outStart, capacity + 1);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.csvactivityplugin;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The rows of an ActivityTable arranged as an outline tree.
+ *
+ * Top-level rows are the roots; every other row hangs under the row in
+ * table.parent(row). Children are kept in sheet order in one flat array
+ * (the children of row r are childIds[childStart[r] .. childStart[r+1])),
+ * and rows can be found by outline number ("1.2.3") in constant time,
+ * through the outline numbers the table kept while the sheet was read.
+ * Sub-actions whose parent could not be determined are not part of the tree.
+ */
+public final class ActivityTree {
+
+    private final ActivityTable table;
+    private final int[] roots;
+    private final int[] childStart;
+    private final int[] childIds;
+
+    private ActivityTree(ActivityTable table) {
+        this.table = table;
+        int size = table.size();
+
+        /* counting pass, then fill: children stay in row order */
+        int rootCount = 0;
+        childStart = new int[size + 1];
+        for (int r = 0; r < size; r++) {
+            int parent = table.parent(r);
+            if (parent >= 0) childStart[parent + 1]++;
+            else if (!table.isSubAction(r)) rootCount++;
+        }
+        for (int r = 0; r < size; r++) childStart[r + 1] += childStart[r];
+
+        roots = new int[rootCount];
+        childIds = new int[childStart[size]];
+        int[] fill = new int[size];
+        int nextRoot = 0;
+        for (int r = 0; r < size; r++) {
+            int parent = table.parent(r);
+            if (parent >= 0) childIds[childStart[parent] + fill[parent]++] = r;
+            else if (!table.isSubAction(r)) roots[nextRoot++] = r;
+        }
+    }
+
+    /**
+     * @param table The parsed rows
+     * @return The tree over the table's rows
+     */
+    public static ActivityTree of(ActivityTable table) {
+        return new ActivityTree(table);
+    }
+
+    public ActivityTable table() {
+        return table;
+    }
+
+    /** @return Number of top-level rows */
+    public int rootCount() {
+        return roots.length;
+    }
+
+    /** @return Row id of the i-th top-level row */
+    public int root(int i) {
+        return roots[i];
+    }
+
+    public int childCount(int row) {
+        return childStart[row + 1] - childStart[row];
+    }
+
+    /** @return Row id of the i-th child of the row */
+    public int child(int row, int i) {
+        return childIds[childStart[row] + i];
+    }
+
+    public boolean hasChildren(int row) {
+        return childStart[row + 1] > childStart[row];
+    }
+
+    /** @return Row id of the parent, or -1 for top-level rows */
+    public int parent(int row) {
+        return table.parent(row);
+    }
+
+    /**
+     * Finds a row by its outline number. If several rows carry the same
+     * number, the last one is returned.
+     *
+     * @param outline Outline number such as "1.2.3"
+     * @return Row id, or -1 if no row has that number
+     */
+    public int find(String outline) {
+        int[] parts = OutlineNumber.parse(outline);
+        return parts != null ? table.findOutline(parts, parts.length) : -1;
+    }
+
+    /** @return The top-level rows as ActivityData views, in sheet order */
+    public List<ActivityData> rootRows() {
+        return new RowList(roots, 0, roots.length);
+    }
+
+    /** @return The children of the row as ActivityData views, in sheet order */
+    public List<ActivityData> childRows(int row) {
+        return new RowList(childIds, childStart[row], childStart[row + 1]);
+    }
+
+    private final class RowList extends AbstractList<ActivityData> implements RandomAccess {
+        private final int[] ids;
+        private final int from;
+        private final int to;
+
+        RowList(int[] ids, int from, int to) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public ActivityData get(int index) {
+            if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException(index);
+            return table.row(ids[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
\ No newline at end of file
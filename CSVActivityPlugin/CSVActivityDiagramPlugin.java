@@ -30,6 +30,9 @@ public class CSVActivityDiagramPlugin extends Plugin {
         // Use our CSVMenuConfigurator
         manager.addMainMenuConfigurator(new CSVMenuConfigurator());
         
+        // Fill in deferred sub-diagrams of earlier imports when they are opened
+        SubdiagramMaterializer.install();
+        
         System.out.println("CSV Activity Diagram Plugin initialization complete");
     }
     
@@ -3,14 +3,17 @@ package com.example.csvactivityplugin;
 import com.nomagic.magicdraw.actions.MDAction;
 import com.nomagic.magicdraw.core.Application;
 import com.nomagic.magicdraw.core.Project;
+import com.nomagic.magicdraw.ui.dialogs.MDDialogParentProvider;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.util.List;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 
 /**
- * The action that appears in the Tools menu and handles the Excel import process.
+ * The action that appears in the Tools menu and handles the Excel/CSV import process.
  * MDAction is Cameo's base class for menu actions.
  */
 @SuppressWarnings("serial")
@@ -29,7 +32,9 @@ public class CSVImportAction extends MDAction {
     
     /**
      * Called when the user clicks on our menu item.
-     * This is where the main import logic starts.
+     * This is where the main import logic starts; the import itself runs
+     * in an ImportTask and a PlanTask, so Cameo stays responsive while the
+     * file is read and the diagrams are laid out.
      * 
      * @param e The action event from the menu click
      */
@@ -49,56 +54,208 @@ public class CSVImportAction extends MDAction {
             return;
         }
         
-        // Show file chooser dialog for Excel selection
+        // Show file chooser dialog for Excel/CSV selection
         File excelFile = selectExcelFile();
         if (excelFile == null) {
             // User cancelled the file selection
             return;
         }
         
-        try {
-            // Parse the Excel file
-            ExcelParser parser = new ExcelParser();
-            List<ActivityData> activities = parser.parseExcel(excelFile);
+        // Read and check the file on a worker thread; the model is built
+        // back on the event dispatch thread once the rows are ready
+        Frame frame = MDDialogParentProvider.getProvider().getDialogParent();
+        ImportProgressDialog progress = new ImportProgressDialog(frame, "Importing " + excelFile.getName());
+        ImportTask task = new ImportTask(project, excelFile, progress);
+        progress.setCancelAction(() -> task.cancel(true));
+        progress.update("Reading " + excelFile.getName(), 0, 0);
+        task.execute();
+    }
+    
+    /**
+     * Reads the file for one import. Parsing and validation run in
+     * doInBackground on a worker thread and can be cancelled from the
+     * progress dialog; done() shows the choosers on the event dispatch
+     * thread and hands the import on to a PlanTask.
+     */
+    private final class ImportTask extends SwingWorker<ActivityTree, Void> {
+        
+        private final Project project;
+        private final File file;
+        private final ImportProgressDialog progress;
+        
+        ImportTask(Project project, File file, ImportProgressDialog progress) {
+            this.project = project;
+            this.file = file;
+            this.progress = progress;
+        }
+        
+        @Override
+        protected ActivityTree doInBackground() throws Exception {
+            // Parse the Excel or CSV file
+            ActivityTable activities = parseFile(file, progress);
             
-            // Validate the parsed data
-            if (activities.isEmpty()) {
-                JOptionPane.showMessageDialog(
-                    null, 
-                    "No activities found in the Excel file.", 
-                    "Empty Excel", 
-                    JOptionPane.WARNING_MESSAGE
-                );
+            // Arrange the rows as an outline tree
+            ImportProgress.checkCancelled();
+            progress.update("Checking " + activities.size() + " activities", 0, 0);
+            return ActivityTree.of(activities);
+        }
+        
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                // The worker stops at its next check; nothing was changed yet
+                progress.dispose();
                 return;
             }
             
-            // Create the activity diagram
-            // Use simple creator to avoid API compatibility issues
-            ActivityDiagramCreator creator = new ActivityDiagramCreator();
-            creator.createActivityDiagram(project, activities);
-            
-            // Show success message
-            JOptionPane.showMessageDialog(
-                null, 
-                "Successfully imported " + activities.size() + " activities!", 
-                "Import Successful", 
-                JOptionPane.INFORMATION_MESSAGE
-            );
+            try {
+                ActivityTree tree = get();
+                
+                // Validate the parsed data
+                if (tree.table().isEmpty()) {
+                    progress.dispose();
+                    JOptionPane.showMessageDialog(
+                        null, 
+                        "No activities found in the " + fileType(file) + " file.", 
+                        "Empty " + fileType(file), 
+                        JOptionPane.WARNING_MESSAGE
+                    );
+                    return;
+                }
+                
+                // The choosers are modal; the dialog comes back with the next report
+                progress.setVisible(false);
+                ActivityDiagramCreator creator = new ActivityDiagramCreator();
+                creator.choose(project, tree);
+                
+                // Plan the diagrams on a worker thread; Cancel now stops the planning
+                PlanTask task = new PlanTask(project, file, tree, creator, progress);
+                progress.setCancelAction(() -> task.cancel(true));
+                task.execute();
+                
+            } catch (Exception ex) {
+                showError(ex, file, progress);
+            }
+        }
+    }
+    
+    /**
+     * Plans the import the user has chosen. ActivityDiagramCreator.plan runs
+     * in doInBackground on a worker thread and can be cancelled from the
+     * progress dialog; the model is changed in done() on the event dispatch
+     * thread, inside a single session.
+     */
+    private final class PlanTask extends SwingWorker<Void, Void> {
+        
+        private final Project project;
+        private final File file;
+        private final ActivityTree tree;
+        private final ActivityDiagramCreator creator;
+        private final ImportProgressDialog progress;
+        
+        PlanTask(Project project, File file, ActivityTree tree, ActivityDiagramCreator creator,
+                 ImportProgressDialog progress) {
+            this.project = project;
+            this.file = file;
+            this.tree = tree;
+            this.creator = creator;
+            this.progress = progress;
+        }
+        
+        @Override
+        protected Void doInBackground() throws Exception {
+            creator.plan(progress);
+            return null;
+        }
+        
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                // The planner stops at its next check; nothing was changed yet
+                progress.dispose();
+                return;
+            }
             
-        } catch (Exception ex) {
-            // Show error dialog if something goes wrong
-            JOptionPane.showMessageDialog(
-                null, 
-                "Error importing Excel: " + ex.getMessage(), 
-                "Import Error", 
-                JOptionPane.ERROR_MESSAGE
-            );
-            ex.printStackTrace();
+            try {
+                get();
+                
+                // From here on the event dispatch thread is busy, so Cancel would not be seen
+                progress.setCancellable(false);
+                
+                // Create the activity diagram
+                creator.apply(project, progress);
+                progress.dispose();
+                // The counters go to Cameo's message window, not to stdout
+                Application.getInstance().getGUILog().log("CSV import: " + creator.statistics());
+                
+                // Show success message
+                JOptionPane.showMessageDialog(
+                    null, 
+                    "Successfully imported " + tree.table().size() + " activities!", 
+                    "Import Successful", 
+                    JOptionPane.INFORMATION_MESSAGE
+                );
+                
+            } catch (Exception ex) {
+                showError(ex, file, progress);
+            }
+        }
+    }
+    
+    /**
+     * Closes the progress dialog and shows why the import failed.
+     */
+    private static void showError(Exception ex, File file, ImportProgressDialog progress) {
+        progress.dispose();
+        Throwable cause = ex instanceof ExecutionException && ex.getCause() != null
+                        ? ex.getCause() : ex;
+        
+        // Show error dialog if something goes wrong
+        JOptionPane.showMessageDialog(
+            null, 
+            "Error importing " + fileType(file) + ": " + cause.getMessage(), 
+            "Import Error", 
+            JOptionPane.ERROR_MESSAGE
+        );
+        cause.printStackTrace();
+    }
+    
+    /**
+     * @return "CSV" or "Excel", for the messages shown to the user
+     */
+    private static String fileType(File file) {
+        return file.getName().toLowerCase().endsWith(".csv") ? "CSV" : "Excel";
+    }
+    
+    /**
+     * Parses the selected file, reusing the cached result if the file has
+     * not changed since it was last imported.
+     * 
+     * @param file The .xlsx, .xls or .csv file to parse
+     * @param progress Receives the number of rows read
+     * @return Table of the activities parsed from the file
+     * @throws IOException If there's an error reading the file
+     */
+    private ActivityTable parseFile(File file, ImportProgress progress) throws IOException {
+        return ParseCache.getInstance().get(file, f -> parseUncached(f, progress));
+    }
+    
+    /**
+     * Parses the file with the parser matching its extension.
+     */
+    private ActivityTable parseUncached(File file, ImportProgress progress) throws IOException {
+        if (file.getName().toLowerCase().endsWith(".csv")) {
+            CSVParser parser = new CSVParser();
+            parser.setProgress(progress);
+            return parser.parseCSVTable(file);
         }
+        ExcelParser parser = new ExcelParser();
+        parser.setProgress(progress);
+        return parser.parseExcelTable(file);
     }
     
     /**
-     * Shows a file chooser dialog for selecting an Excel file.
+     * Shows a file chooser dialog for selecting an Excel or CSV file.
      * 
      * @return The selected file, or null if cancelled
      */
@@ -108,8 +265,10 @@ public class CSVImportAction extends MDAction {
         // Set up file filter for Excel files only
         FileNameExtensionFilter xlsxFilter = new FileNameExtensionFilter("Excel Files (*.xlsx)", "xlsx");
         FileNameExtensionFilter xlsFilter = new FileNameExtensionFilter("Excel 97-2003 Files (*.xls)", "xls");
+        FileNameExtensionFilter csvFilter = new FileNameExtensionFilter("CSV Files (*.csv)", "csv");
         fileChooser.addChoosableFileFilter(xlsxFilter);
         fileChooser.addChoosableFileFilter(xlsFilter);
+        fileChooser.addChoosableFileFilter(csvFilter);
         fileChooser.setFileFilter(xlsxFilter); // Default to xlsx
         
         // Set dialog title
@@ -133,4 +292,4 @@ public class CSVImportAction extends MDAction {
     public void updateState() {
         setEnabled(Application.getInstance().getProject() != null);
     }
-}
\ No newline at end of file
+}
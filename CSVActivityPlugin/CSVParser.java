@@ -1,149 +1,254 @@
 package com.example.csvactivityplugin;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
  * Handles parsing of CSV files into ActivityData objects.
- * 
- * Expected CSV format:
- * Activity Name,Documentation,Outputs
- * Initialize System,This initializes the system,Output1;Output2;Output3
- * Process Data,Processes the input data,ProcessedData;ErrorLog
+ *
+ * The file is read with a single-pass RFC 4180 tokenizer: fields may be
+ * quoted, quotes inside quoted fields are escaped by doubling them, and
+ * quoted fields may contain commas and line breaks. A leading byte order
+ * mark is ignored. Records are fed to the same ActivityRowCollector the
+ * Excel readers use, so the header row (Name, Input, Output, Actor) and the
+ * action/sub-action rules are exactly the same as for Excel files.
+ *
+ * Example:
+ * Name,Input,Output,Actor
+ * 1 Initialize System,,"Config; Log",Operator
+ * 1.1 Load Config,Config,"Settings, Defaults",Operator
  */
 public class CSVParser {
-    
+
     // Delimiter used to separate columns in the CSV
-    private static final String CSV_DELIMITER = ",";
-    
-    // Delimiter used to separate multiple outputs within the outputs column
-    private static final String OUTPUT_DELIMITER = ";";
-    
+    private static final char CSV_DELIMITER = ',';
+
+    // Quote character used to enclose fields
+    private static final char QUOTE = '"';
+
+    // Byte order mark some tools write at the start of UTF-8 files
+    private static final char BOM = '\uFEFF';
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /* tokenizer states */
+    private static final int FIELD_START     = 0;   // before the first character of a field
+    private static final int UNQUOTED        = 1;   // inside an unquoted field
+    private static final int QUOTED          = 2;   // inside a quoted field
+    private static final int QUOTE_IN_QUOTED = 3;   // just read a quote inside a quoted field
+
+    // Read buffer, reused across files
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    // Holds a field that spans buffer refills or contains escaped quotes
+    private final StringBuilder field = new StringBuilder();
+
+    // Receives the number of rows read
+    private ImportProgress progress = ImportProgress.NONE;
+
     /**
      * Parses a CSV file and returns a list of ActivityData objects.
-     * 
-     * @param csvFile The CSV file to parse
+     *
+     * @param csvFile The CSV file to parse (UTF-8)
      * @return List of ActivityData objects parsed from the file
      * @throws IOException If there's an error reading the file
      */
     public List<ActivityData> parseCSV(File csvFile) throws IOException {
-        List<ActivityData> activities = new ArrayList<>();
-        
+        return parseCSVTable(csvFile).rows();
+    }
+
+    /**
+     * Parses a CSV file into a column-oriented ActivityTable.
+     *
+     * @param csvFile The CSV file to parse (UTF-8)
+     * @return Table with one row per activity
+     * @throws IOException If there's an error reading the file
+     */
+    public ActivityTable parseCSVTable(File csvFile) throws IOException {
+        ActivityRowCollector collector = new ActivityRowCollector(progress);
+
         // Use try-with-resources to ensure the file is properly closed
-        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
-            
-            // Read and skip the header line
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
-                throw new IOException("CSV file is empty");
-            }
-            
-            // Validate header (optional but good practice)
-            validateHeader(headerLine);
-            
-            // Read each data line
-            String line;
-            int lineNumber = 2; // Start at 2 since we skipped the header
-            
-            while ((line = reader.readLine()) != null) {
-                // Skip empty lines
-                if (line.trim().isEmpty()) {
-                    continue;
-                }
-                
-                try {
-                    // Parse the line into an ActivityData object
-                    ActivityData activity = parseLine(line);
-                    activities.add(activity);
-                } catch (Exception e) {
-                    // Provide helpful error message with line number
-                    throw new IOException(
-                        "Error parsing line " + lineNumber + ": " + e.getMessage()
-                    );
+        try (Reader reader = new InputStreamReader(new FileInputStream(csvFile), StandardCharsets.UTF_8)) {
+            Tokenizer tokenizer = new Tokenizer(collector);
+
+            boolean first = true;
+            int count;
+            while ((count = reader.read(buffer, 0, buffer.length)) != -1) {
+                int start = 0;
+                if (first && count > 0) {
+                    first = false;
+                    if (buffer[0] == BOM) start = 1;
                 }
-                
-                lineNumber++;
+                tokenizer.feed(start, count);
             }
+            tokenizer.finish();
         }
-        
-        return activities;
+
+        return collector.finish();
     }
-    
+
     /**
-     * Validates that the CSV header has the expected format.
-     * 
-     * @param headerLine The header line from the CSV
-     * @throws IOException If the header is invalid
+     * Sets where the number of rows read is reported, like ExcelParser.setProgress.
+     *
+     * @param progress Progress receiver, or null for none
      */
-    private void validateHeader(String headerLine) throws IOException {
-        String[] headers = headerLine.split(CSV_DELIMITER);
-        
-        if (headers.length < 3) {
-            throw new IOException(
-                "Invalid CSV header. Expected at least 3 columns: " +
-                "Activity Name, Documentation, Outputs"
-            );
-        }
-        
-        // Optionally, you could check exact header names here
-        // For now, we just check the column count
+    void setProgress(ImportProgress progress) {
+        this.progress = progress != null ? progress : ImportProgress.NONE;
     }
-    
+
     /**
-     * Parses a single line of CSV data into an ActivityData object.
-     * 
-     * @param line The CSV line to parse
-     * @return ActivityData object containing the parsed data
+     * State machine that splits the buffer into fields and records.
+     * Unquoted fields that lie inside one buffer fill are turned into strings
+     * straight from the buffer; only fields that span a refill or contain
+     * escaped quotes go through the shared StringBuilder. Fields in columns
+     * the handler does not want are never copied at all.
      */
-    private ActivityData parseLine(String line) {
-        // Split the line by comma
-        // Note: This simple split won't handle commas within quoted fields
-        // For production code, consider using a proper CSV library
-        String[] parts = line.split(CSV_DELIMITER, 3); // Limit to 3 parts
-        
-        ActivityData activity = new ActivityData();
-        
-        // Parse activity name (required)
-        if (parts.length >= 1) {
-            activity.setName(parts[0].trim());
+    private final class Tokenizer {
+
+        private final SheetRowHandler handler;
+
+        private int state = FIELD_START;
+        private int row;
+        private int column;
+        private boolean rowOpen;
+        private boolean keep;           // current field's column is wanted
+        private int segmentStart;       // start of the part of the field not yet copied
+        private boolean skipLineFeed;   // previous record ended with '\r'
+
+        Tokenizer(SheetRowHandler handler) {
+            this.handler = handler;
+        }
+
+        void feed(int from, int to) {
+            segmentStart = from;
+
+            for (int pos = from; pos < to; pos++) {
+                char c = buffer[pos];
+
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (c == '\n') continue;
+                }
+
+                switch (state) {
+                    case FIELD_START:
+                        if (isLineBreak(c) && column == 0 && !rowOpen) {
+                            // Skip empty lines
+                            skipLineFeed = c == '\r';
+                            break;
+                        }
+                        if (!rowOpen) {
+                            handler.startRow(row);
+                            rowOpen = true;
+                        }
+                        keep = handler.wantsColumn(column);
+                        if (c == QUOTE) {
+                            state = QUOTED;
+                            segmentStart = pos + 1;
+                        } else if (c == CSV_DELIMITER) {
+                            column++;
+                        } else if (isLineBreak(c)) {
+                            endRecord(c);
+                        } else {
+                            state = UNQUOTED;
+                            segmentStart = pos;
+                        }
+                        break;
+
+                    case UNQUOTED:
+                        if (c == CSV_DELIMITER) {
+                            endField(pos);
+                            column++;
+                        } else if (isLineBreak(c)) {
+                            endField(pos);
+                            endRecord(c);
+                        }
+                        break;
+
+                    case QUOTED:
+                        if (c == QUOTE) {
+                            copySegment(pos);
+                            segmentStart = pos + 1;
+                            state = QUOTE_IN_QUOTED;
+                        }
+                        break;
+
+                    case QUOTE_IN_QUOTED:
+                        if (c == QUOTE) {
+                            // Escaped quote: keep the second one as content
+                            segmentStart = pos;
+                            state = QUOTED;
+                        } else if (c == CSV_DELIMITER) {
+                            endField(pos);
+                            column++;
+                        } else if (isLineBreak(c)) {
+                            endField(pos);
+                            endRecord(c);
+                        } else {
+                            // Text after a closing quote is kept as-is
+                            segmentStart = pos;
+                            state = UNQUOTED;
+                        }
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+
+            // The buffer is about to be refilled, save the part of the field read so far
+            if (state == UNQUOTED || state == QUOTED) {
+                copySegment(to);
+            }
+            segmentStart = 0;
         }
-        
-        // Parse documentation (optional)
-        if (parts.length >= 2) {
-            activity.setDocumentation(parts[1].trim());
+
+        /* ends the last record if the file does not end with a line break */
+        void finish() {
+            if (state != FIELD_START) {
+                endField(0);
+            }
+            if (rowOpen) {
+                endRecord('\n');
+            }
         }
-        
-        // Parse outputs (optional)
-        if (parts.length >= 3 && !parts[2].trim().isEmpty()) {
-            String outputsString = parts[2].trim();
-            List<String> outputs = parseOutputs(outputsString);
-            activity.setOutputs(outputs);
+
+        private void copySegment(int end) {
+            if (keep && end > segmentStart) {
+                field.append(buffer, segmentStart, end - segmentStart);
+            }
+            segmentStart = end;
         }
-        
-        return activity;
-    }
-    
-    /**
-     * Parses the outputs string into a list of individual output names.
-     * Outputs are expected to be semicolon-separated.
-     * 
-     * @param outputsString The outputs string from the CSV (e.g., "Out1;Out2;Out3")
-     * @return List of output names
-     */
-    private List<String> parseOutputs(String outputsString) {
-        List<String> outputs = new ArrayList<>();
-        
-        // Split by semicolon and trim each output
-        String[] outputArray = outputsString.split(OUTPUT_DELIMITER);
-        
-        for (String output : outputArray) {
-            String trimmedOutput = output.trim();
-            if (!trimmedOutput.isEmpty()) {
-                outputs.add(trimmedOutput);
+
+        private void endField(int end) {
+            if (keep) {
+                String value;
+                if (field.length() == 0) {
+                    value = new String(buffer, segmentStart, end - segmentStart);
+                } else {
+                    copySegment(end);
+                    value = field.toString();
+                }
+                if (!value.isEmpty()) {
+                    handler.cell(column, value);
+                }
             }
+            field.setLength(0);
+            state = FIELD_START;
+        }
+
+        private void endRecord(char lineBreak) {
+            handler.endRow();
+            rowOpen = false;
+            row++;
+            column = 0;
+            state = FIELD_START;
+            skipLineFeed = lineBreak == '\r';
         }
-        
-        return outputs;
     }
-}
\ No newline at end of file
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r';
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.csvactivityplugin;
+
+/**
+ * The importer's original layout: nodes stacked in one column in the order
+ * they were added, from startY down with yStep between them, each centred
+ * horizontally in its lane (on the diagram when there are no lanes).
+ */
+final class ColumnLayout implements LayoutStrategy {
+
+    @Override
+    public void place(LayoutGraph graph, LayoutOptions options, LayoutResult result) {
+        int y = options.startY;
+        for (int n = 0; n < graph.nodeCount(); n++) {
+            int width = result.width(n);
+            int lane = result.lane(n);
+            int x = lane < 0
+                  ? (options.diagramWidth - width) / 2
+                  : result.laneX(lane) + (result.laneWidth(lane) - width) / 2;
+            result.setLocation(n, x, y);
+            y += result.height(n) + options.yStep;
+        }
+    }
+}
\ No newline at end of file
@@ -1,26 +1,43 @@
 package com.example.csvactivityplugin;
 
-import com.nomagic.magicdraw.openapi.uml.PresentationElementsManager;
 import com.nomagic.magicdraw.openapi.uml.ReadOnlyElementException;
 import com.nomagic.magicdraw.uml.symbols.DiagramPresentationElement;
 import com.nomagic.magicdraw.uml.symbols.PresentationElement;
 import com.nomagic.magicdraw.uml.symbols.shapes.ShapeElement;
 import com.nomagic.uml2.ext.magicdraw.activities.mdbasicactivities.ActivityFinalNode;
+import com.nomagic.uml2.ext.magicdraw.activities.mdbasicactivities.InitialNode;
+import com.nomagic.uml2.ext.magicdraw.activities.mdbasicactivities.ObjectFlow;
 import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.Activity;
+import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.ActivityEdge;
 import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.ActivityNode;
 import com.nomagic.uml2.ext.magicdraw.activities.mdintermediateactivities.ActivityPartition;
 import com.nomagic.uml2.ext.magicdraw.activities.mdstructuredactivities.StructuredActivityNode;
 import com.nomagic.uml2.ext.magicdraw.actions.mdbasicactions.*;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Lays out ActivityNode shapes in a single centred column, at regular vertical
- * intervals.  Also positions input pins on the left and output pins on the right.
+ * intervals, or in layers when the import chose the layered strategy (see
+ * LayeredLayout), along the object flows if the control flows only chain
+ * the nodes.  Also positions input pins on the left and output pins on
+ * the right, or on all four sides (see FourSidedPins).
  * Supports OpaqueAction, CallBehaviorAction, StructuredActivityNode, and the
  * small control nodes (Initial, Final, etc.).
+ *
+ * The geometry comes from the LayoutEngine; this class only turns the
+ * diagram's nodes into a LayoutGraph and the result back into shapes, so
+ * every shape is reshaped at most once. That includes the lanes: they are
+ * sized to the nodes once those are placed, and the swimlane holding them
+ * is shrunk (or grown) to fit. Shapes that end up where they were are not
+ * reshaped at all, which the incremental strategy relies on.
  */
 public final class DiagramGridLayouter {
     private DiagramGridLayouter() {}
@@ -32,169 +49,250 @@ public final class DiagramGridLayouter {
                               int startY,
                               int yStep)
             throws ReadOnlyElementException {
+        layout(activity, dpe, partitions, startY, yStep, new PresentationIndex(new ImportStatistics()),
+               LayoutStrategy.COLUMN, true);
+    }
 
-        PresentationElementsManager pem = PresentationElementsManager.getInstance();
-        int y = startY;
+    /**
+     * As above, with the given strategy, reshaping through the import's
+     * presentation index (which counts the reshapes).
+     *
+     * @param keepLaneSpans true to keep the lanes where they are on the
+     *                      diagram, false to place lanes that were just
+     *                      created side by side, centred
+     */
+    static void layout(Activity activity,
+                       DiagramPresentationElement dpe,
+                       Map<String,ActivityPartition> partitions,
+                       int startY,
+                       int yStep,
+                       PresentationIndex presentation,
+                       LayoutStrategy strategy,
+                       boolean keepLaneSpans)
+            throws ReadOnlyElementException {
+        layoutNodes(new ArrayList<>(activity.getNode()), dpe, partitions, startY, yStep,
+                    presentation, strategy, keepLaneSpans);
+    }
 
-        final int DIAGRAM_WIDTH = 1200;
-        final int LANE_WIDTH    = 480;
-        final int ACTION_WIDTH  = 180;
+    /**
+     * As below, with pins on the left and right and no changed nodes.
+     */
+    static void layoutNodes(List<ActivityNode> nodes,
+                            DiagramPresentationElement dpe,
+                            Map<String,ActivityPartition> partitions,
+                            int startY,
+                            int yStep,
+                            PresentationIndex presentation,
+                            LayoutStrategy strategy,
+                            boolean keepLaneSpans)
+            throws ReadOnlyElementException {
+        layoutNodes(nodes, dpe, partitions, startY, yStep, presentation, strategy,
+                    PinPlacement.TWO_SIDED, keepLaneSpans, Collections.emptySet());
+    }
+
+    /**
+     * Lays out the shapes of the nodes with the strategy; the column
+     * strategy stacks them top to bottom in list order. Nodes without a
+     * shape on the diagram are skipped. The flows between them are the
+     * graph's edges. Each node goes into the lane of its (first) partition,
+     * the final node into the lane of the node before it. Lanes keep their
+     * current span on the diagram if keepLaneSpans is set; either way they
+     * end up as tall as the nodes need.
+     *
+     * Shapes this import did not create are recorded where they are now,
+     * for the incremental strategy (see IncrementalLayout); the other
+     * strategies ignore that.
+     *
+     * @param pinPlacement Sizes the actions and places their pins
+     * @param changed Nodes whose rows changed since their shapes were laid
+     *                out: the incremental strategy resizes them
+     */
+    static void layoutNodes(List<ActivityNode> nodes,
+                            DiagramPresentationElement dpe,
+                            Map<String,ActivityPartition> partitions,
+                            int startY,
+                            int yStep,
+                            PresentationIndex presentation,
+                            LayoutStrategy strategy,
+                            PinPlacement pinPlacement,
+                            boolean keepLaneSpans,
+                            Set<ActivityNode> changed)
+            throws ReadOnlyElementException {
 
-        /* ----- single‑column fallback ---------------------------------- */
-        boolean noLanes = partitions.isEmpty();
-        int centreColumnX = (DIAGRAM_WIDTH - ACTION_WIDTH) / 2;
+        LayoutOptions options = LayoutOptions.DEFAULT.withStartY(startY).withYStep(yStep)
+                                                     .withPinPlacement(pinPlacement);
 
-        /* ----- pre‑compute lane left‑edges if we have actors ----------- */
+        /* ----- lanes, in the order of the map ------------------------ */
         List<String> actorsOrdered = new ArrayList<>(partitions.keySet());  // insertion order
-        Map<String,Integer> actorIndex = new java.util.HashMap<>();
+        Map<String,Integer> actorIndex = new HashMap<>();
         for (int i = 0; i < actorsOrdered.size(); i++) actorIndex.put(actorsOrdered.get(i), i);
 
-        // FIX: Use the same calculation as ActivityDiagramCreator
-        int swimlaneStartX = noLanes ? 0 : (DIAGRAM_WIDTH - LANE_WIDTH * actorsOrdered.size()) / 2;
-        
-        String lastActor = actorsOrdered.isEmpty() ? null : actorsOrdered.get(0);
+        LayoutGraph graph = new LayoutGraph(actorsOrdered.size());
+        ShapeElement[] laneShapes = new ShapeElement[actorsOrdered.size()];
+        for (int i = 0; i < actorsOrdered.size(); i++) {
+            ShapeElement lane = presentation.find(dpe, partitions.get(actorsOrdered.get(i)),
+                                           ShapeElement.class);
+            laneShapes[i] = lane;
+            if (lane != null && keepLaneSpans)
+                graph.setLaneSpan(i, lane.getBounds().x, lane.getBounds().width);
+        }
 
-        /* ----- walk through nodes one by one --------------------------- */
-        for (ActivityNode node : activity.getNode()) {
-            PresentationElement pe = dpe.findPresentationElement(node, PresentationElement.class);
+        /* ----- one graph node per shape ------------------------------ */
+        List<ShapeElement> shapes = new ArrayList<>();
+        List<List<InputPin>> inPins = new ArrayList<>();
+        List<List<OutputPin>> outPins = new ArrayList<>();
+        Map<ActivityNode,Integer> ids = new IdentityHashMap<>();
+        for (ActivityNode node : nodes) {
+            PresentationElement pe = presentation.find(dpe, node, PresentationElement.class);
             if (!(pe instanceof ShapeElement se)) continue;
 
-            /* size defaults */
-            int width  = ACTION_WIDTH;
-            int height = 80;
+            int lane;
+            if (node instanceof ActivityFinalNode) lane = LayoutGraph.PREVIOUS_LANE;
+            else if (node.getInPartition().isEmpty()) lane = 0;   // fall back
+            else lane = actorIndex.getOrDefault(node.getInPartition().iterator().next().getName(), 0);
+
+            List<InputPin> ins = inputPins(node);
+            List<OutputPin> outs = outputPins(node);
             boolean isAction = node instanceof OpaqueAction
                              || node instanceof CallBehaviorAction
                              || node instanceof StructuredActivityNode;
-            if (!isAction) width = height = 20;
-
-            /* choose X --------------------------------------------------- */
-            int nodeX;
-            if (noLanes) {
-                /* centre everything */
-                nodeX = isAction
-                      ? centreColumnX
-                      : centreColumnX + (ACTION_WIDTH - width)/2;
-            } else {
-                String actor;
-                
-                if (node instanceof ActivityFinalNode && lastActor != null) {
-                    actor = lastActor;
-                } else {
-                    /* lane mode */
-                    actor = node.getInPartition().isEmpty()
-                                 ? actorsOrdered.get(0)  // fall back
-                                 : node.getInPartition().iterator().next().getName();
-                    lastActor = actor;    
-                }
-                int idx = actorIndex.getOrDefault(actor, 0);
-                
-                // FIX: Try to get the actual swimlane bounds if possible
-                ActivityPartition partition = partitions.get(actor);
-                if (partition != null) {
-                    // Try to get the actual presentation element for this partition
-                    PresentationElement partitionPE = dpe.findPresentationElement(partition, PresentationElement.class);
-                    if (partitionPE instanceof ShapeElement partitionShape) {
-                        Rectangle partitionBounds = partitionShape.getBounds();
-                        // Center within the actual swimlane bounds
-                        nodeX = partitionBounds.x + (partitionBounds.width - width) / 2;
-                    } else {
-                        // Fallback to calculated position
-                        int laneLeft = swimlaneStartX + idx * LANE_WIDTH;
-                        nodeX = laneLeft + (LANE_WIDTH - width) / 2;
-                    }
-                } else {
-                    // Fallback to calculated position
-                    int laneLeft = swimlaneStartX + idx * LANE_WIDTH;
-                    nodeX = laneLeft + (LANE_WIDTH - width) / 2;
-                }
+            int id = isAction
+                   ? graph.addAction(options.actionWidth, options.actionHeight, lane,
+                                     ins.size(), outs.size())
+                   : graph.addControl(options.controlSize, lane);
+            if (!presentation.wasCreated(se)) {
+                Rectangle now = se.getBounds();
+                graph.setPrevious(id, now.x, now.y, now.width, now.height, changed.contains(node));
             }
 
-            /* reshape node */
-            Rectangle rect = new Rectangle(nodeX, y, width, height);
-            pem.reshapeShapeElement(se, rect);
-
-            /* ---- pin logic (unchanged, copied from your version) ------ */
-            List<InputPin>  inPins  = new ArrayList<>();
-            List<OutputPin> outPins = new ArrayList<>();
-            if (node instanceof OpaqueAction oa) {
-                oa.getInput().stream().filter(p -> p instanceof InputPin)
-                  .map(p -> (InputPin)p).forEach(inPins::add);
-                oa.getOutput().stream().filter(p -> p instanceof OutputPin)
-                  .map(p -> (OutputPin)p).forEach(outPins::add);
-            } else if (node instanceof CallBehaviorAction cba) {
-                cba.getArgument().stream().filter(p -> p instanceof InputPin)
-                  .map(p -> (InputPin)p).forEach(inPins::add);
-                cba.getResult().stream().filter(p -> p instanceof OutputPin)
-                  .map(p -> (OutputPin)p).forEach(outPins::add);
-            } else if (node instanceof StructuredActivityNode san) {
-                san.getStructuredNodeInput().stream().filter(p -> p instanceof InputPin)
-                  .map(p -> (InputPin)p).forEach(inPins::add);
-                san.getStructuredNodeOutput().stream().filter(p -> p instanceof OutputPin)
-                  .map(p -> (OutputPin)p).forEach(outPins::add);
+            ids.put(node, id);
+            shapes.add(se);
+            inPins.add(ins);
+            outPins.add(outs);
+        }
+        if (strategy != LayoutStrategy.LAYERED || !addDataEdges(graph, nodes, ids)) {
+            for (ActivityNode node : nodes) {
+                Integer source = ids.get(node);
+                if (source == null) continue;
+                for (ActivityEdge e : node.getOutgoing()) {
+                    Integer target = ids.get(e.getTarget());
+                    if (target != null) graph.addEdge(source, target);
+                }
             }
+        }
 
-            if (inPins.size() > 3 || outPins.size() > 3) {
-                height += (Math.max(inPins.size(), outPins.size()) - 3) * 25;
-                pem.reshapeShapeElement(se, new Rectangle(nodeX, y, width, height));
-            }
+        LayoutResult layout = LayoutEngine.layout(graph, options, strategy);
 
-            if (!inPins.isEmpty() || !outPins.isEmpty()) {
-                Rectangle actual = se.getBounds();
-                positionPins(inPins, outPins, dpe, pem,
-                             actual.x, actual.y, actual.width, actual.height);
-            }
-            if (node instanceof CallBehaviorAction || node instanceof StructuredActivityNode) {
-            pem.reshapeShapeElement(
-                      se,
-                      new Rectangle(rect.x, rect.y, ACTION_WIDTH, rect.height)
-                    );
+        /* ----- lanes and their swimlane first, then what is in them -- */
+        ShapeElement swimlane = null;
+        for (int l = 0; l < laneShapes.length; l++) {
+            if (laneShapes[l] == null) continue;
+            presentation.reshape(laneShapes[l], layout.laneBounds(l));
+            if (swimlane == null && laneShapes[l].getParent() instanceof ShapeElement parent)
+                swimlane = parent;
+        }
+        if (swimlane != null) presentation.reshape(swimlane, layout.swimlaneBounds());
+
+        /* ----- reshape every node and pin once ----------------------- */
+        for (int id = 0; id < shapes.size(); id++) {
+            presentation.reshape(shapes.get(id), layout.nodeBounds(id));
+            List<InputPin> ins = inPins.get(id);
+            for (int p = 0; p < ins.size(); p++)
+                reshapePin(dpe, ins.get(p), layout.inputPinBounds(id, p), presentation);
+            List<OutputPin> outs = outPins.get(id);
+            for (int p = 0; p < outs.size(); p++)
+                reshapePin(dpe, outs.get(p), layout.outputPinBounds(id, p), presentation);
+        }
+    }
+
+    /*
+     * the layered strategy places a diagram whose control flows only chain
+     * its nodes by their data flow instead, as a fresh import does (see
+     * ImportPlanner.addDataEdges): an edge per pair of nodes joined by object
+     * flows, from the initial node to the nodes that take no data and from
+     * those that give none to the final node. Adds nothing and returns false
+     * if the control flows branch or no object flow joins two of the nodes
+     */
+    private static boolean addDataEdges(LayoutGraph graph, List<ActivityNode> nodes,
+                                        Map<ActivityNode,Integer> ids) {
+        int count = ids.size();
+        int[] in = new int[count], out = new int[count];
+        List<int[]> joins = new ArrayList<>();
+        Set<Long> joined = new HashSet<>();
+        int start = -1, end = -1;
+        for (ActivityNode node : nodes) {
+            Integer source = ids.get(node);
+            if (source == null) continue;
+            if (node instanceof InitialNode && start < 0) start = source;
+            if (node instanceof ActivityFinalNode && end < 0) end = source;
+            for (ActivityEdge e : node.getOutgoing()) {
+                Integer target = ids.get(e.getTarget());
+                if (target == null) continue;
+                if (++out[source] > 1 || ++in[target] > 1) return false;   // a branch or a join
             }
+            for (OutputPin pin : outputPins(node))
+                for (ActivityEdge e : pin.getOutgoing()) {
+                    if (!(e instanceof ObjectFlow) || !(e.getTarget() instanceof InputPin ip)
+                            || !(ip.getOwner() instanceof ActivityNode consumer)) continue;
+                    Integer target = ids.get(consumer);
+                    if (target != null && target.intValue() != source
+                            && joined.add((long) source * count + target))
+                        joins.add(new int[] { source, target });
+                }
+        }
+        if (joins.isEmpty()) return false;
 
-            y += height + yStep;
+        boolean[] fed = new boolean[count], feeds = new boolean[count];
+        for (int[] j : joins) {
+            graph.addEdge(j[0], j[1]);
+            feeds[j[0]] = true;
+            fed[j[1]] = true;
         }
+        for (int i = 0; i < count; i++) {
+            if (i == start || i == end) continue;
+            if (start >= 0 && !fed[i]) graph.addEdge(start, i);
+            if (end >= 0 && !feeds[i]) graph.addEdge(i, end);
+        }
+        return true;
     }
-    
-    
-    
-    
 
     /* --------------------------------------------------------------- */
-    /* helper to place pins                                            */
+    /* pin helpers                                                     */
     /* --------------------------------------------------------------- */
-    private static void positionPins(List<InputPin>  inPins,
-                                     List<OutputPin> outPins,
-                                     DiagramPresentationElement dpe,
-                                     PresentationElementsManager pem,
-                                     int actionX, int actionY,
-                                     int actionW, int actionH)
+    private static void reshapePin(DiagramPresentationElement dpe, Pin pin,
+                                   Rectangle bounds, PresentationIndex presentation)
             throws ReadOnlyElementException {
+        ShapeElement ps = presentation.find(dpe, pin, ShapeElement.class);
+        if (ps != null) presentation.reshape(ps, bounds);
+    }
 
-        final int pinW = 20, pinH = 20, pinGap = 5;
-
-        /* left side – inputs */
-        int totInH = inPins.size() * pinH + Math.max(0, inPins.size() - 1) * pinGap;
-        int inStartY = actionY + (actionH - totInH) / 2;
-
-        for (int i = 0; i < inPins.size(); i++) {
-            ShapeElement ps = (ShapeElement)
-                    dpe.findPresentationElement(inPins.get(i), PresentationElement.class);
-            if (ps == null) continue;
-            int px = actionX - pinW / 2;
-            int py = inStartY + i * (pinH + pinGap);
-            pem.reshapeShapeElement(ps, new Rectangle(px, py, pinW, pinH));
+    private static List<InputPin> inputPins(ActivityNode node) {
+        List<InputPin> inPins = new ArrayList<>();
+        if (node instanceof OpaqueAction oa) {
+            oa.getInput().stream().filter(p -> p instanceof InputPin)
+              .map(p -> (InputPin)p).forEach(inPins::add);
+        } else if (node instanceof CallBehaviorAction cba) {
+            cba.getArgument().stream().filter(p -> p instanceof InputPin)
+              .map(p -> (InputPin)p).forEach(inPins::add);
+        } else if (node instanceof StructuredActivityNode san) {
+            san.getStructuredNodeInput().stream().filter(p -> p instanceof InputPin)
+              .map(p -> (InputPin)p).forEach(inPins::add);
         }
+        return inPins;
+    }
 
-        /* right side – outputs */
-        int totOutH = outPins.size() * pinH + Math.max(0, outPins.size() - 1) * pinGap;
-        int outStartY = actionY + (actionH - totOutH) / 2;
-
-        for (int i = 0; i < outPins.size(); i++) {
-            ShapeElement ps = (ShapeElement)
-                    dpe.findPresentationElement(outPins.get(i), PresentationElement.class);
-            if (ps == null) continue;
-            int px = actionX + actionW - pinW / 2;
-            int py = outStartY + i * (pinH + pinGap);
-            pem.reshapeShapeElement(ps, new Rectangle(px, py, pinW, pinH));
+    private static List<OutputPin> outputPins(ActivityNode node) {
+        List<OutputPin> outPins = new ArrayList<>();
+        if (node instanceof OpaqueAction oa) {
+            oa.getOutput().stream().filter(p -> p instanceof OutputPin)
+              .map(p -> (OutputPin)p).forEach(outPins::add);
+        } else if (node instanceof CallBehaviorAction cba) {
+            cba.getResult().stream().filter(p -> p instanceof OutputPin)
+              .map(p -> (OutputPin)p).forEach(outPins::add);
+        } else if (node instanceof StructuredActivityNode san) {
+            san.getStructuredNodeOutput().stream().filter(p -> p instanceof OutputPin)
+              .map(p -> (OutputPin)p).forEach(outPins::add);
         }
+        return outPins;
     }
-}
\ No newline at end of file
+}
@@ -5,40 +5,37 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * Handles parsing of Excel files into ActivityData objects.
  * Supports both .xlsx (newer) and .xls (older) formats.
  * 
+ * Both formats are streamed row by row through POI's event APIs (SAX for
+ * .xlsx, HSSF records for .xls) so memory use does not grow with the number
+ * of rows; the full workbook is only loaded when streaming is disabled or
+ * when a workbook cannot be streamed.
+ * 
  * This parser looks for specific column names and only processes rows
- * where the Name column starts with "Action".
+ * where the Name column is an outline number or starts with "Action".
  * 
  * Expected columns:
  * - Name: The activity name (must start with "Action" to be included)
  * - Input: Input pins (comma or semicolon separated)
  * - Output: Output pins (comma or semicolon separated)
+ * 
+ * Only these columns (plus Actor) are decoded; all other cells are skipped
+ * by the readers.
  */
 public class ExcelParser {
     
-    // Delimiters used to separate multiple inputs/outputs
-    private static final String[] DELIMITERS = {";", ","};
+    public String File_Name;
     
-    // Column names to search for (case-insensitive)
-    private static final String COL_NAME = "Name";
-    private static final String COL_INPUT = "Input";
-    private static final String COL_OUTPUT = "Output";
-    private static final String COL_ACTOR = "Actor";
+    // Stream workbooks instead of loading them whole
+    private boolean streaming = true;
     
-    // Prefix that identifies action rows
-    private static final String ACTION_PREFIX = "Action";
-    private static final Pattern WHOLE_INT_PATTERN = Pattern.compile("^\\d+\\b");
-    private static final Pattern DECIMAL_INT_PATTERN = Pattern.compile("^\\d+\\.\\d+");
-    public String File_Name;
+    // Receives the number of rows read
+    private ImportProgress progress = ImportProgress.NONE;
     
     
     /**
@@ -50,8 +47,90 @@ public class ExcelParser {
      * @throws IOException If there's an error reading the file
      */
     public List<ActivityData> parseExcel(File excelFile) throws IOException {
-        List<ActivityData> activities = new ArrayList<>();
+        return parseExcelTable(excelFile).rows();
+    }
+    
+    /**
+     * Parses an Excel file into a column-oriented ActivityTable.
+     * Same rules as parseExcel, without creating an object per row.
+     * 
+     * @param excelFile The Excel file to parse (.xls or .xlsx)
+     * @return Table with one row per activity
+     * @throws IOException If there's an error reading the file
+     */
+    public ActivityTable parseExcelTable(File excelFile) throws IOException {
+        String fileName = excelFile.getName().toLowerCase();
+        if (!fileName.endsWith(".xlsx") && !fileName.endsWith(".xls")) {
+            throw new IOException("Unsupported file format. Please use .xls or .xlsx files.");
+        }
+        
+        File_Name = excelFile.getName().replaceFirst("\\.[^.]+$",  "");
         
+        if (streaming) {
+            ActivityRowCollector collector = new ActivityRowCollector(progress);
+            if (streamWorkbook(excelFile, collector)) {
+                return collector.finish();
+            }
+        }
+        
+        ActivityRowCollector collector = new ActivityRowCollector(progress);
+        readWorkbook(excelFile, collector);
+        return collector.finish();
+    }
+    
+    /**
+     * Enables or disables streaming of workbooks.
+     * 
+     * @param streaming true to stream workbooks, false to always load the full workbook
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+    
+    /**
+     * Sets where the number of rows read is reported. Parsing stops with a
+     * CancellationException once the parsing thread is interrupted.
+     * 
+     * @param progress Progress receiver, or null for none
+     */
+    void setProgress(ImportProgress progress) {
+        this.progress = progress != null ? progress : ImportProgress.NONE;
+    }
+    
+    /**
+     * Streams the first sheet of the workbook into the collector, using the
+     * SAX reader for .xlsx and the HSSF record reader for .xls files.
+     * 
+     * @param excelFile The Excel file to read (.xls or .xlsx)
+     * @param collector Receives the rows of the first sheet
+     * @return true if the sheet was streamed, false if the full workbook has to be loaded instead
+     * @throws IOException If the file broke after rows were already collected
+     */
+    private boolean streamWorkbook(File excelFile, ActivityRowCollector collector) throws IOException {
+        try {
+            if (excelFile.getName().toLowerCase().endsWith(".xlsx")) {
+                new XlsxStreamingReader().read(excelFile, collector);
+            } else {
+                new XlsStreamingReader().read(excelFile, collector);
+            }
+            return true;
+        } catch (IOException e) {
+            if (collector.hasHeader()) throw e;
+            // Odd workbooks (strict OOXML, unusual part layout) still load as a full workbook
+            System.err.println("Warning: Could not stream " + excelFile.getName()
+                               + ", loading full workbook: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Loads the whole workbook and feeds the rows of its first sheet to the collector.
+     * 
+     * @param excelFile The Excel file to read (.xls or .xlsx)
+     * @param collector Receives the rows of the first sheet
+     * @throws IOException If there's an error reading the file
+     */
+    private void readWorkbook(File excelFile, SheetRowHandler collector) throws IOException {
         // Determine file type and create appropriate workbook
         Workbook workbook = null;
         FileInputStream fis = null;
@@ -62,58 +141,29 @@ public class ExcelParser {
             // Create workbook based on file extension
             if (excelFile.getName().toLowerCase().endsWith(".xlsx")) {
                 workbook = new XSSFWorkbook(fis);
-            } else if (excelFile.getName().toLowerCase().endsWith(".xls")) {
-                workbook = new HSSFWorkbook(fis);
             } else {
-                throw new IOException("Unsupported file format. Please use .xls or .xlsx files.");
+                workbook = new HSSFWorkbook(fis);
             }
             
-            File_Name = excelFile.getName().replaceFirst("\\.[^.]+$",  "");
-            
             // Get the first sheet (or you could let user select)
             Sheet sheet = workbook.getSheetAt(0);
             if (sheet == null) {
                 throw new IOException("Excel file has no sheets");
             }
             
-            // Find header row and column indices
-            Map<String, Integer> columnIndices = findColumnIndices(sheet);
-            if (columnIndices == null) {
-                throw new IOException("Could not find required columns (Name, Input, Output) in the Excel file");
-            }
-            
-            // Validate that we have the required columns
-            if (!columnIndices.containsKey(COL_NAME)) {
-                throw new IOException("Required column 'Name' not found in Excel file");
-            }
-            
-            int headerRowIndex = findHeaderRowIndex(sheet, columnIndices);
-            ActivityData currentMainAction = null;
-            // Process data rows (starting after header)
-            for (int rowIndex = headerRowIndex + 1; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
+            for (int rowIndex = 0; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
                 Row row = sheet.getRow(rowIndex);
                 if (row == null) continue;                // skip blank rows
-
-                try {
-                    ActivityData activity = parseRow(row, columnIndices);
-                    if (activity == null) continue;       // row didn’t match any rule
-
-                    // Link sub‑actions to their parent
-                    if (activity.isSubAction()) {
-                        if (currentMainAction != null) {
-                            activity.setParentName(currentMainAction.getName());
-                        } else {
-                            System.err.println("Warning: sub‑action encountered before any main action at row "
-                                               + (rowIndex + 1));
-                        }
-                    } else {                              // it is a main action
-                        currentMainAction = activity;
+                
+                collector.startRow(rowIndex);
+                for (int colIndex = 0; colIndex < row.getLastCellNum(); colIndex++) {
+                    if (!collector.wantsColumn(colIndex)) continue;
+                    String value = getCellValue(row.getCell(colIndex));
+                    if (!value.isEmpty()) {
+                        collector.cell(colIndex, value);
                     }
-
-                    activities.add(activity);
-                } catch (Exception e) {
-                    System.err.println("Warning: Error parsing row " + (rowIndex + 1) + ": " + e.getMessage());
                 }
+                collector.endRow();
             }
             
         } finally {
@@ -133,73 +183,6 @@ public class ExcelParser {
                 }
             }
         }
-        
-        return activities;
-    }
-    
-    /**
-     * Finds the column indices for Name, Input, and Output columns.
-     * Searches through the first 10 rows to find the header row.
-     * 
-     * @param sheet The Excel sheet to search
-     * @return Map of column names to their indices, or null if not found
-     */
-    private Map<String, Integer> findColumnIndices(Sheet sheet) {
-        // Search first 10 rows for headers
-        for (int rowIndex = 0; rowIndex < Math.min(10, sheet.getLastRowNum() + 1); rowIndex++) {
-            Row row = sheet.getRow(rowIndex);
-            if (row == null) continue;
-            
-            Map<String, Integer> indices = new HashMap<>();
-            
-            // Check each cell in the row
-            for (int colIndex = 0; colIndex < row.getLastCellNum(); colIndex++) {
-                Cell cell = row.getCell(colIndex);
-                String value = getCellValue(cell).toLowerCase();
-                
-                // Look for our column names (case-insensitive)
-                if (value.contains("name")) {
-                    indices.put(COL_NAME, colIndex);
-                } else if (value.contains("input")) {
-                    indices.put(COL_INPUT, colIndex);
-                } else if (value.contains("output")) {
-                    indices.put(COL_OUTPUT, colIndex);
-                } else if (value.contains("actor")) {
-                	indices.put(COL_ACTOR, colIndex);
-                }
-            }
-            
-            // If we found at least the Name column, we've found our header row
-            if (indices.containsKey(COL_NAME)) {
-                return indices;
-            }
-        }
-        
-        return null;
-    }
-    
-    /**
-     * Finds the row index of the header row.
-     * 
-     * @param sheet The Excel sheet
-     * @param columnIndices Map containing column indices
-     * @return The row index of the header
-     */
-    private int findHeaderRowIndex(Sheet sheet, Map<String, Integer> columnIndices) {
-        // Find which row contains our headers
-        for (int rowIndex = 0; rowIndex < Math.min(10, sheet.getLastRowNum() + 1); rowIndex++) {
-            Row row = sheet.getRow(rowIndex);
-            if (row == null) continue;
-            
-            Cell nameCell = row.getCell(columnIndices.get(COL_NAME));
-            String value = getCellValue(nameCell).toLowerCase();
-            
-            if (value.contains("name")) {
-                return rowIndex;
-            }
-        }
-        
-        return 0; // Default to first row
     }
     
     // return the name of the excel file
@@ -207,60 +190,6 @@ public class ExcelParser {
     	return File_Name;
     }
     
-    /**
-     * Parses a single row of Excel data into an ActivityData object.
-     * Only processes rows where the Name starts with "Action".
-     * 
-     * @param row The Excel row to parse
-     * @param columnIndices Map of column names to their indices
-     * @return ActivityData object containing the parsed data, or null if not an Action row
-     */
-    private ActivityData parseRow(Row row, Map<String, Integer> columnIndices) {
-        Integer nameIndex = columnIndices.get(COL_NAME);
-        if (nameIndex == null) return null;
-        
-        Integer actorIndex = columnIndices.get(COL_ACTOR);
-        String actor = actorIndex != null ? getCellValue(row.getCell(actorIndex)).trim() : "";
-
-        String name = getCellValue(row.getCell(nameIndex)).trim();
-        if (name.isEmpty()) return null;
-        
-
-     // 2.  Decide "sub first, main second"
-        boolean isSub  = DECIMAL_INT_PATTERN.matcher(name).find();      // check *first*
-        boolean isMain = !isSub &&                                     // only if not sub
-                         (name.toLowerCase().startsWith(ACTION_PREFIX.toLowerCase())
-                          || WHOLE_INT_PATTERN.matcher(name).find());
-
-        if (!isMain && !isSub) return null;   // row doesn’t match any rule
-
-        // ---------- build ActivityData ----------
-        ActivityData activity = new ActivityData();
-        activity.setName(name);
-        activity.setSubAction(isSub);         // new helper flag
-        activity.setActor(actor);
-
-        // Input pins
-        Integer inputIndex = columnIndices.get(COL_INPUT);
-        if (inputIndex != null) {
-            String inputsString = getCellValue(row.getCell(inputIndex));
-            if (!inputsString.isEmpty()) {
-                activity.setInputs(parseDelimitedString(inputsString));
-            }
-        }
-
-        // Output pins
-        Integer outputIndex = columnIndices.get(COL_OUTPUT);
-        if (outputIndex != null) {
-            String outputsString = getCellValue(row.getCell(outputIndex));
-            if (!outputsString.isEmpty()) {
-                activity.setOutputs(parseDelimitedString(outputsString));
-            }
-        }
-
-        return activity;
-    }
-    
     /**
      * Gets the string value from a cell, handling different cell types.
      * 
@@ -281,12 +210,7 @@ public class ExcelParser {
                     return cell.getDateCellValue().toString();
                 } else {
                     // Remove decimal point for whole numbers
-                    double value = cell.getNumericCellValue();
-                    if (value == Math.floor(value)) {
-                        return String.format("%.0f", value);
-                    } else {
-                        return String.valueOf(value);
-                    }
+                    return formatNumber(cell.getNumericCellValue());
                 }
             case BOOLEAN:
                 return String.valueOf(cell.getBooleanCellValue());
@@ -309,39 +233,17 @@ public class ExcelParser {
     }
     
     /**
-     * Parses a delimited string into a list of trimmed values.
-     * Tries both semicolon and comma as delimiters.
+     * Formats a plain (non-date) numeric cell value.
+     * Whole numbers are written without a decimal point.
      * 
-     * @param delimitedString The string to parse
-     * @return List of parsed values
+     * @param value The numeric cell value
+     * @return String value of the number
      */
-    private List<String> parseDelimitedString(String delimitedString) {
-        List<String> values = new ArrayList<>();
-        
-        // Determine which delimiter is used
-        String delimiter = ";";
-        for (String delim : DELIMITERS) {
-            if (delimitedString.contains(delim)) {
-                delimiter = delim;
-                break;
-            }
+    static String formatNumber(double value) {
+        if (value == Math.floor(value)) {
+            return String.format("%.0f", value);
+        } else {
+            return String.valueOf(value);
         }
-        
-        // Split by delimiter and trim each value
-        String[] valueArray = delimitedString.split(delimiter);
-        
-        for (String value : valueArray) {
-            String trimmedValue = value.trim();
-            if (!trimmedValue.isEmpty()) {
-                values.add(trimmedValue);
-            }
-        }
-        
-        // If no delimiter found, treat the whole string as one value
-        if (values.isEmpty() && !delimitedString.trim().isEmpty()) {
-            values.add(delimitedString.trim());
-        }
-        
-        return values;
     }
-}
\ No newline at end of file
+}
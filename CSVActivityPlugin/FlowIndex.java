@@ -0,0 +1,61 @@
+package com.example.csvactivityplugin;
+
+import com.nomagic.uml2.ext.magicdraw.activities.mdbasicactivities.ControlFlow;
+import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.Activity;
+import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.ActivityEdge;
+import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.ActivityNode;
+import com.nomagic.uml2.ext.magicdraw.activities.mdstructuredactivities.StructuredActivityNode;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The control flows of one owner (an Activity or a StructuredActivityNode),
+ * found by their source and target elements.
+ *
+ * Flows are keyed by node identity, never by name: two actions with the
+ * same name are two different ends. Looking a pair up allocates nothing;
+ * the index must be told about flows created or removed while it is used.
+ * ImportIndex keeps one per owner for the whole import.
+ */
+final class FlowIndex {
+
+    // source -> flows leaving it, in the owner's order
+    private final Map<ActivityNode,List<ControlFlow>> outgoing = new IdentityHashMap<>();
+
+    /**
+     * @param owner Activity or StructuredActivityNode whose flows to index
+     */
+    FlowIndex(Element owner) {
+        if (owner instanceof Activity act) {
+            for (ActivityEdge e : act.getEdge())
+                if (e instanceof ControlFlow cf) added(cf);
+        } else if (owner instanceof StructuredActivityNode san) {
+            for (Element e : san.getOwnedElement())
+                if (e instanceof ControlFlow cf) added(cf);
+        }
+    }
+
+    /** @return The first flow from source to target, or null */
+    ControlFlow find(ActivityNode source, ActivityNode target) {
+        List<ControlFlow> out = outgoing.get(source);
+        if (out == null) return null;
+        for (ControlFlow cf : out)
+            if (cf.getTarget() == target) return cf;
+        return null;
+    }
+
+    /** Records a flow that was added to the owner. */
+    void added(ControlFlow cf) {
+        outgoing.computeIfAbsent(cf.getSource(), s -> new ArrayList<>(1)).add(cf);
+    }
+
+    /** Records a flow that was removed from the owner. */
+    void removed(ControlFlow cf) {
+        List<ControlFlow> out = outgoing.get(cf.getSource());
+        if (out != null) out.remove(cf);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.csvactivityplugin;
+
+/**
+ * Pins on all four sides of a node: inputs down the left side and then
+ * along the top, outputs down the right side and then along the bottom.
+ *
+ * A node whose pins fit on its left and right sides looks as with
+ * TwoSidedPins. More pins spill onto the top (bottom), in two groups that
+ * leave the middle free for the control flows entering and leaving there.
+ * Only when that is full does the node grow, a pin at a time, taller and
+ * wider in turn. It grows wider only while it keeps xStep clear of either
+ * side of its lane, and no taller than that width, so it never spills out
+ * of its lane and is at most square.
+ *
+ * Pins are pinSize + pinGap apart as long as they fit that way. On a node
+ * at its largest they close up, down to touching; beyond that (35 inputs
+ * or outputs in a 480 px lane) they share the slots and overlap. Placing
+ * them costs one step per pin.
+ */
+final class FourSidedPins implements PinPlacement {
+
+    @Override
+    public void size(LayoutGraph graph, int node, LayoutOptions options, LayoutResult result) {
+        int width = graph.width(node), height = graph.height(node);
+        int pins = Math.max(graph.inputs(node), graph.outputs(node));
+        int pitch = options.pinSize + options.pinGap;
+
+        /* a pin's room more at a time, height first, until the pins fit or
+           the node is as wide as its lane allows and as tall as wide */
+        int lane = result.lane(node);
+        int laneWidth = lane < 0 ? options.laneWidth : result.laneWidth(lane);
+        int maxWidth = Math.max(width, laneWidth - 2 * options.xStep);
+        int maxHeight = Math.max(height, maxWidth);
+        boolean taller = true;
+        while (!fits(pins, width, height, options.pinGap, options)) {
+            boolean canTaller = height + pitch <= maxHeight;
+            boolean canWider = width + pitch <= maxWidth;
+            if (!canTaller && !canWider) break;
+            if (taller ? canTaller : !canWider) height += pitch;
+            else width += pitch;
+            taller = !taller;
+        }
+        result.setSize(node, width, height);
+    }
+
+    @Override
+    public void place(LayoutGraph graph, int node, LayoutOptions options, LayoutResult result) {
+        int half = options.pinSize / 2;
+        int x = result.x(node), y = result.y(node);
+        int width = result.width(node), height = result.height(node);
+
+        int ins = graph.inputs(node);
+        int gap = gap(ins, width, height, options);
+        int side = onSide(ins, width, height, gap, options);
+        for (int p = 0; p < side; p++)
+            result.setInputPin(node, p, x - half, spread(p, side, y, height, gap, options));
+        for (int p = side; p < ins; p++)
+            result.setInputPin(node, p, alongEnd(p - side, ins - side, x, width, gap, options),
+                               y - half);
+
+        int outs = graph.outputs(node);
+        gap = gap(outs, width, height, options);
+        side = onSide(outs, width, height, gap, options);
+        for (int p = 0; p < side; p++)
+            result.setOutputPin(node, p, x + width - half, spread(p, side, y, height, gap, options));
+        for (int p = side; p < outs; p++)
+            result.setOutputPin(node, p, alongEnd(p - side, outs - side, x, width, gap, options),
+                               y + height - half);
+    }
+
+    /* the widest gap, at most pinGap, at which the pins fit on the node; 0 if none does */
+    private static int gap(int pins, int width, int height, LayoutOptions options) {
+        for (int gap = options.pinGap; gap > 0; gap--)
+            if (fits(pins, width, height, gap, options)) return gap;
+        return 0;
+    }
+
+    private static boolean fits(int pins, int width, int height, int gap, LayoutOptions options) {
+        return sideSlots(height, gap, options) + endSlots(width, gap, options) >= pins;
+    }
+
+    /*
+     * how many of the pins go on the left (right) side: as many as fit, or
+     * their share when all are full
+     */
+    private static int onSide(int pins, int width, int height, int gap, LayoutOptions options) {
+        int side = sideSlots(height, gap, options), ends = endSlots(width, gap, options);
+        if (pins <= side + ends) return Math.min(pins, side);
+        return (int) Math.round((double) pins * side / Math.max(1, side + ends));
+    }
+
+    /* pins that fit down a side of the given height */
+    private static int sideSlots(int height, int gap, LayoutOptions options) {
+        return (height + gap) / (options.pinSize + gap);
+    }
+
+    /* pins that fit along the top (bottom): two halves, clear of the corners and the middle */
+    private static int endSlots(int width, int gap, LayoutOptions options) {
+        return 2 * Math.max(0, (halfLength(width, options) + gap) / (options.pinSize + gap));
+    }
+
+    /* length of one half of the top, from past the side pins to short of the middle */
+    private static int halfLength(int width, LayoutOptions options) {
+        return width / 2 - options.pinSize / 2 - 2 * options.pinGap;
+    }
+
+    /* x of the p-th of count pins along the top (bottom): the first half left of the middle */
+    private static int alongEnd(int p, int count, int x, int width, int gap, LayoutOptions options) {
+        int first = (count + 1) / 2;
+        int length = halfLength(width, options);
+        if (p < first)
+            return spread(p, first, x + options.pinSize / 2 + options.pinGap, length, gap, options);
+        return spread(p - first, count - first, x + width / 2 + options.pinGap, length, gap, options);
+    }
+
+    /*
+     * start of the p-th of count pins centred on [from, from + length), gap
+     * apart; pins that do not fit that way share the length evenly
+     */
+    private static int spread(int p, int count, int from, int length, int gap, LayoutOptions options) {
+        int pitch = options.pinSize + gap;
+        int total = options.pinSize + (count - 1) * pitch;
+        if (total > length && count > 1)
+            return from + (int) ((long) p * Math.max(0, length - options.pinSize) / (count - 1));
+        return from + (length - total) / 2 + p * pitch;
+    }
+}
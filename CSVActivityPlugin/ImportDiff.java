@@ -0,0 +1,137 @@
+package com.example.csvactivityplugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Row-level diff between the rows of a new import and the nodes created by
+ * a previous import of the same sheet.
+ *
+ * Rows and nodes are matched by name; the n-th row with a given name matches
+ * the n-th node with that name, so duplicate names still pair up in order.
+ * A matched pair is unchanged when the row fingerprint equals the node
+ * fingerprint, i.e. actor, node kind and pin names are all the same.
+ * Pins are matched by name, so their order does not count as a change.
+ *
+ * @param <N> The node type of the previous import
+ */
+final class ImportDiff<N> {
+
+    /** Reads what the diff needs to know about an existing node. */
+    interface NodeReader<N> {
+        String name(N node);
+        long fingerprint(N node);
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME  = 0x100000001b3L;
+
+    // every row, in sheet order, mapped to its previous node (null if added)
+    private final Map<ActivityData, N> matches = new LinkedHashMap<>();
+    private final List<ActivityData> added = new ArrayList<>();
+    private final List<ActivityData> modified = new ArrayList<>();
+    private final List<N> removed = new ArrayList<>();
+    private boolean reordered;
+
+    private ImportDiff() {}
+
+    /**
+     * Compares the rows with the existing nodes.
+     *
+     * @param rows Rows of the new import, in sheet order
+     * @param rowFingerprint Fingerprint of a row (see {@link #fingerprint})
+     * @param existing Nodes of the previous import, in model order
+     * @param reader Reads name and fingerprint of an existing node
+     * @return The diff
+     */
+    static <N> ImportDiff<N> compute(List<ActivityData> rows,
+                                     ToLongFunction<ActivityData> rowFingerprint,
+                                     Collection<N> existing,
+                                     NodeReader<N> reader) {
+        ImportDiff<N> diff = new ImportDiff<>();
+
+        /* existing nodes by name, duplicates kept in model order */
+        Map<String, List<N>> byName = new HashMap<>();
+        Map<N, Integer> position = new HashMap<>();
+        for (N node : existing) {
+            byName.computeIfAbsent(reader.name(node), k -> new ArrayList<>(1)).add(node);
+            position.put(node, position.size());
+        }
+
+        Map<String, Integer> seen = new HashMap<>();
+        int lastPosition = -1;
+        for (ActivityData row : rows) {
+            int occurrence = seen.merge(row.getName(), 1, Integer::sum) - 1;
+            List<N> candidates = byName.get(row.getName());
+            N node = (candidates != null && occurrence < candidates.size())
+                   ? candidates.get(occurrence) : null;
+
+            diff.matches.put(row, node);
+            if (node == null) {
+                diff.added.add(row);
+                continue;
+            }
+            if (reader.fingerprint(node) != rowFingerprint.applyAsLong(row)) {
+                diff.modified.add(row);
+            }
+            int p = position.remove(node);
+            if (p < lastPosition) diff.reordered = true;
+            lastPosition = p;
+        }
+
+        /* whatever was not matched is gone from the sheet */
+        diff.removed.addAll(position.keySet());
+        return diff;
+    }
+
+    /**
+     * Fingerprint of the parts of a row that end up in the model.
+     *
+     * @param actor Actor (partition) name
+     * @param callBehavior true for a Call Behavior Action, false for a Structured Activity Node
+     * @param inputs Input pin names
+     * @param outputs Output pin names
+     * @return 64-bit FNV-1a based hash
+     */
+    static long fingerprint(String actor, boolean callBehavior,
+                            Collection<String> inputs, Collection<String> outputs) {
+        long h = mix(FNV_OFFSET, actor);
+        h = (h ^ (callBehavior ? 1 : 2)) * FNV_PRIME;
+        h = (h ^ pinSum(inputs)) * FNV_PRIME;
+        h = (h ^ 3) * FNV_PRIME;
+        return (h ^ pinSum(outputs)) * FNV_PRIME;
+    }
+
+    /* order-independent: the sum of the per-name hashes */
+    private static long pinSum(Collection<String> names) {
+        long sum = names.size();
+        for (String name : names) sum += mix(FNV_OFFSET, name);
+        return sum;
+    }
+
+    private static long mix(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * FNV_PRIME;
+        }
+        return (h ^ 0xFFFF) * FNV_PRIME;   // separator so "ab","c" differs from "a","bc"
+    }
+
+    /** @return every row in sheet order mapped to its previous node, or null for added rows */
+    Map<ActivityData, N> matches()   { return matches; }
+    List<ActivityData> added()        { return added; }
+    List<ActivityData> modified()     { return modified; }
+    List<N> removed()                 { return removed; }
+
+    /** @return true if matched nodes are no longer in the same relative order */
+    boolean reordered()               { return reordered; }
+
+    /** @return true if nothing needs to change */
+    boolean isEmpty() {
+        return added.isEmpty() && modified.isEmpty() && removed.isEmpty() && !reordered;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.example.csvactivityplugin;
+
+import com.nomagic.magicdraw.uml.symbols.shapes.ShapeElement;
+import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.Activity;
+import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.ActivityNode;
+import com.nomagic.uml2.ext.magicdraw.activities.mdintermediateactivities.ActivityPartition;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lookups an import makes for every node, answered from hash maps instead
+ * of walking the model.
+ *
+ * One index is built per import for the imported Activity. Partitions are
+ * found by actor name (the first partition with that name, in the
+ * Activity's order, like a scan of getPartition() would find); the index
+ * must be told about partitions created or removed during the import.
+ * Lane shapes are found by node with a per-diagram map, see laneShapesByNode.
+ * Control flows are found by their ends with one FlowIndex per owner.
+ */
+final class ImportIndex {
+
+    private final Activity activity;
+
+    // first partition of every actor, in the Activity's partition order; null when stale
+    private Map<String,ActivityPartition> partitionsByActor;
+
+    // control flows of the Activity and of its StructuredActivityNodes
+    private final Map<Element,FlowIndex> flowsByOwner = new IdentityHashMap<>();
+
+    ImportIndex(Activity activity) {
+        this.activity = activity;
+    }
+
+    /** @return The imported Activity, which owns every node of the import */
+    Activity activity() {
+        return activity;
+    }
+
+    /**
+     * @param actor Actor (partition) name
+     * @return The first partition with that name, or null
+     */
+    ActivityPartition partition(String actor) {
+        return partitionsByActor().get(actor);
+    }
+
+    /** @return Actor names in the order their first partition appears in the Activity */
+    Set<String> actors() {
+        return partitionsByActor().keySet();
+    }
+
+    /**
+     * @param owner The Activity or one of its StructuredActivityNodes
+     * @return Its control flows by source and target, indexed on first use
+     */
+    FlowIndex flows(Element owner) {
+        return flowsByOwner.computeIfAbsent(owner, FlowIndex::new);
+    }
+
+    /** Records a partition that was appended to the Activity. */
+    void partitionAdded(ActivityPartition p) {
+        if (partitionsByActor != null) partitionsByActor.putIfAbsent(p.getName(), p);
+    }
+
+    /** Records a partition that was removed from the Activity. */
+    void partitionRemoved(ActivityPartition p) {
+        // another partition with the same name may take its place
+        if (partitionsByActor != null && partitionsByActor.get(p.getName()) == p)
+            partitionsByActor = null;
+    }
+
+    private Map<String,ActivityPartition> partitionsByActor() {
+        if (partitionsByActor == null) {
+            partitionsByActor = new LinkedHashMap<>();
+            for (ActivityPartition p : activity.getPartition())
+                partitionsByActor.putIfAbsent(p.getName(), p);
+        }
+        return partitionsByActor;
+    }
+
+    /**
+     * Inverts the lane shapes of one diagram: every node of a lane's
+     * partition is mapped to the lane's shape. Each partition's node list
+     * is read once, instead of once per node.
+     *
+     * @param laneShapes Lane shape of every partition shown on the diagram
+     * @return Lane shape by node (identity keys)
+     */
+    static Map<ActivityNode,ShapeElement> laneShapesByNode(Map<ActivityPartition,ShapeElement> laneShapes) {
+        Map<ActivityNode,ShapeElement> byNode = new IdentityHashMap<>();
+        for (var e : laneShapes.entrySet())
+            for (ActivityNode node : e.getKey().getNode())
+                byNode.putIfAbsent(node, e.getValue());
+        return byNode;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,338 @@
+package com.example.csvactivityplugin;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything a fresh import creates, worked out before Cameo is touched.
+ *
+ * The plan lists the partitions, nodes (with their pins), control flows,
+ * object flows between pins and diagrams of the import, including the
+ * final bounds of every lane, node and pin shape. It is built by
+ * ImportPlanner from the parsed rows in plain Java and replayed by
+ * ImportPlanApplier inside the session, so the session is only held for
+ * the API calls themselves.
+ *
+ * Elements refer to each other by id: the index of the partition, node or
+ * flow in this plan, pins by their position on the node. Nodes are listed
+ * so that every owner comes before the nodes it owns. Plans are immutable.
+ */
+final class ImportPlan {
+
+    enum NodeKind { INITIAL, FINAL, STRUCTURED_ACTIVITY, CALL_BEHAVIOR }
+
+    /** Shape bounds in diagram coordinates. */
+    static final class Bounds {
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+
+        Bounds(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        Rectangle toRectangle() {
+            return new Rectangle(x, y, width, height);
+        }
+    }
+
+    /** Points of a path in diagram coordinates, from its source end to its target end. */
+    static final class Route {
+        private final int[] xy;   // x0, y0, x1, y1, …
+
+        Route(List<Point> points) {
+            xy = new int[points.size() * 2];
+            for (int i = 0; i < points.size(); i++) {
+                xy[2 * i] = points.get(i).x;
+                xy[2 * i + 1] = points.get(i).y;
+            }
+        }
+
+        int pointCount()    { return xy.length / 2; }
+        int x(int i)        { return xy[2 * i]; }
+        int y(int i)        { return xy[2 * i + 1]; }
+
+        List<Point> toPoints() {
+            List<Point> points = new ArrayList<>(pointCount());
+            for (int i = 0; i < pointCount(); i++) points.add(new Point(x(i), y(i)));
+            return points;
+        }
+    }
+
+    /** An ActivityPartition of the imported Activity. */
+    static final class Partition {
+        private final String actor;
+        private final boolean stereotyped;
+
+        Partition(String actor, boolean stereotyped) {
+            this.actor = actor;
+            this.stereotyped = stereotyped;
+        }
+
+        String actor()          { return actor; }
+
+        /** @return true if the partition gets SysML «allocateActivityPartition» when available */
+        boolean isStereotyped() { return stereotyped; }
+    }
+
+    /** An action, or the start or end node of one level. */
+    static final class Node {
+        private final NodeKind kind;
+        private final String name;
+        private final int row;
+        private final int owner;
+        private final int partition;
+        private final List<String> inputs;
+        private final List<String> outputs;
+
+        Node(NodeKind kind, String name, int row, int owner, int partition,
+             List<String> inputs, List<String> outputs) {
+            this.kind = kind;
+            this.name = name;
+            this.row = row;
+            this.owner = owner;
+            this.partition = partition;
+            this.inputs = List.copyOf(inputs);
+            this.outputs = List.copyOf(outputs);
+        }
+
+        NodeKind kind()         { return kind; }
+        String name()           { return name; }
+
+        /** @return Table row the node was created for, -1 for start and end nodes */
+        int row()               { return row; }
+
+        /** @return Id of the owning node, -1 if the Activity owns it */
+        int owner()             { return owner; }
+
+        /** @return Id of the partition the node is in, -1 for none */
+        int partition()         { return partition; }
+
+        List<String> inputs()   { return inputs; }
+        List<String> outputs()  { return outputs; }
+
+        boolean isAction() {
+            return kind == NodeKind.STRUCTURED_ACTIVITY || kind == NodeKind.CALL_BEHAVIOR;
+        }
+    }
+
+    /** A ControlFlow between two nodes of the same level. */
+    static final class Flow {
+        private final int owner;
+        private final int source;
+        private final int target;
+
+        Flow(int owner, int source, int target) {
+            this.owner = owner;
+            this.source = source;
+            this.target = target;
+        }
+
+        /** @return Id of the owning node, -1 if the Activity owns it */
+        int owner()  { return owner; }
+        int source() { return source; }
+        int target() { return target; }
+    }
+
+    /** An ObjectFlow from an output pin to an input pin of a later node of the same level. */
+    static final class ObjectFlow {
+        private final int owner;
+        private final int source;
+        private final int output;
+        private final int target;
+        private final int input;
+
+        ObjectFlow(int owner, int source, int output, int target, int input) {
+            this.owner = owner;
+            this.source = source;
+            this.output = output;
+            this.target = target;
+            this.input = input;
+        }
+
+        /** @return Id of the owning node, -1 if the Activity owns it */
+        int owner()  { return owner; }
+        int source() { return source; }
+
+        /** @return Position of the source pin among the source node's outputs */
+        int output() { return output; }
+        int target() { return target; }
+
+        /** @return Position of the target pin among the target node's inputs */
+        int input()  { return input; }
+    }
+
+    /**
+     * One diagram: its swimlanes, the shapes of its nodes and pins, and the
+     * paths of its control and object flows. Shape i shows node shapeNode(i).
+     * Paths have a Route around the shapes (see OrthogonalRouter), or none
+     * where the router found no clear one.
+     *
+     * A deferred diagram has no lanes, shapes or paths: only the empty
+     * diagram is created and marked, and SubdiagramMaterializer fills it in
+     * from the model the first time it is opened.
+     */
+    static final class DiagramLayout {
+        private final int owner;
+        private final String name;
+        private final boolean opened;
+        private final boolean deferred;
+        private final int[] lanes;
+        private final Bounds[] laneBounds;
+        private final Bounds swimlaneBounds;
+        private final int[] shapeNodes;
+        private final int[] shapeLanes;
+        private final Bounds[] shapeBounds;
+        private final Bounds[][] inputPinBounds;
+        private final Bounds[][] outputPinBounds;
+        private final int[] flows;
+        private final Route[] flowRoutes;
+        private final int[] objectFlows;
+        private final Route[] objectFlowRoutes;
+
+        DiagramLayout(int owner, String name, boolean opened,
+                      int[] lanes, Bounds[] laneBounds, Bounds swimlaneBounds,
+                      int[] shapeNodes, int[] shapeLanes, Bounds[] shapeBounds,
+                      Bounds[][] inputPinBounds, Bounds[][] outputPinBounds,
+                      int[] flows, Route[] flowRoutes, int[] objectFlows, Route[] objectFlowRoutes) {
+            this(owner, name, opened, false, lanes, laneBounds, swimlaneBounds,
+                 shapeNodes, shapeLanes, shapeBounds, inputPinBounds, outputPinBounds,
+                 flows, flowRoutes, objectFlows, objectFlowRoutes);
+        }
+
+        private DiagramLayout(int owner, String name, boolean opened, boolean deferred,
+                              int[] lanes, Bounds[] laneBounds, Bounds swimlaneBounds,
+                              int[] shapeNodes, int[] shapeLanes, Bounds[] shapeBounds,
+                              Bounds[][] inputPinBounds, Bounds[][] outputPinBounds,
+                              int[] flows, Route[] flowRoutes,
+                              int[] objectFlows, Route[] objectFlowRoutes) {
+            this.owner = owner;
+            this.name = name;
+            this.opened = opened;
+            this.deferred = deferred;
+            this.lanes = lanes;
+            this.laneBounds = laneBounds;
+            this.swimlaneBounds = swimlaneBounds;
+            this.shapeNodes = shapeNodes;
+            this.shapeLanes = shapeLanes;
+            this.shapeBounds = shapeBounds;
+            this.inputPinBounds = inputPinBounds;
+            this.outputPinBounds = outputPinBounds;
+            this.flows = flows;
+            this.flowRoutes = flowRoutes;
+            this.objectFlows = objectFlows;
+            this.objectFlowRoutes = objectFlowRoutes;
+        }
+
+        /** @return Id of the node owning the diagram, -1 if the Activity owns it */
+        int owner()                 { return owner; }
+        String name()               { return name; }
+
+        /**
+         * @param owner Id of the node owning the diagram
+         * @return An empty diagram whose content is created when it is first opened
+         */
+        static DiagramLayout deferred(int owner, String name) {
+            return new DiagramLayout(owner, name, false, true, new int[0], new Bounds[0], null,
+                                     new int[0], new int[0], new Bounds[0],
+                                     new Bounds[0][], new Bounds[0][],
+                                     new int[0], new Route[0], new int[0], new Route[0]);
+        }
+
+        /** @return true if the diagram is opened once it is created */
+        boolean isOpened()          { return opened; }
+
+        /** @return true if only the empty diagram is created now */
+        boolean isDeferred()        { return deferred; }
+
+        int laneCount()             { return lanes.length; }
+
+        /** @return Partition id of the i-th lane, left to right */
+        int lane(int i)             { return lanes[i]; }
+        Bounds laneBounds(int i)    { return laneBounds[i]; }
+
+        /** @return Bounds of the swimlane holding all lanes */
+        Bounds swimlaneBounds()     { return swimlaneBounds; }
+
+        int shapeCount()            { return shapeNodes.length; }
+        int shapeNode(int i)        { return shapeNodes[i]; }
+
+        /**
+         * @return Index of the lane shape that holds the i-th shape, -1 if it
+         *         is placed on the diagram itself. A shape is only put into a
+         *         lane whose partition holds its node.
+         */
+        int shapeLane(int i)        { return shapeLanes[i]; }
+        Bounds shapeBounds(int i)   { return shapeBounds[i]; }
+
+        /** @return Bounds of the p-th input pin of the i-th shape's node */
+        Bounds inputPinBounds(int i, int p)  { return inputPinBounds[i][p]; }
+
+        /** @return Bounds of the p-th output pin of the i-th shape's node */
+        Bounds outputPinBounds(int i, int p) { return outputPinBounds[i][p]; }
+
+        int flowCount()             { return flows.length; }
+        int flow(int i)             { return flows[i]; }
+
+        /** @return Route of the i-th flow's path, null to leave it to Cameo */
+        Route flowRoute(int i)      { return flowRoutes[i]; }
+
+        int objectFlowCount()       { return objectFlows.length; }
+        int objectFlow(int i)       { return objectFlows[i]; }
+
+        /** @return Route of the i-th object flow's path, null to leave it to Cameo */
+        Route objectFlowRoute(int i) { return objectFlowRoutes[i]; }
+    }
+
+    private final String activityName;
+    private final List<Partition> partitions;
+    private final List<Node> nodes;
+    private final List<Flow> flows;
+    private final List<ObjectFlow> objectFlows;
+    private final List<DiagramLayout> diagrams;
+    private final LayoutStrategy layoutStrategy;
+    private final PinPlacement pinPlacement;
+
+    ImportPlan(String activityName, List<Partition> partitions, List<Node> nodes,
+               List<Flow> flows, List<ObjectFlow> objectFlows, List<DiagramLayout> diagrams,
+               LayoutStrategy layoutStrategy, PinPlacement pinPlacement) {
+        this.activityName = activityName;
+        this.layoutStrategy = layoutStrategy;
+        this.pinPlacement = pinPlacement;
+        this.partitions = List.copyOf(partitions);
+        this.nodes = List.copyOf(nodes);
+        this.flows = List.copyOf(flows);
+        this.objectFlows = List.copyOf(objectFlows);
+        this.diagrams = List.copyOf(diagrams);
+    }
+
+    String activityName()            { return activityName; }
+
+    int partitionCount()             { return partitions.size(); }
+    Partition partition(int id)      { return partitions.get(id); }
+
+    int nodeCount()                  { return nodes.size(); }
+    Node node(int id)                { return nodes.get(id); }
+
+    int flowCount()                  { return flows.size(); }
+    Flow flow(int id)                { return flows.get(id); }
+
+    int objectFlowCount()            { return objectFlows.size(); }
+    ObjectFlow objectFlow(int id)    { return objectFlows.get(id); }
+
+    /** @return Number of diagrams; diagram 0 is the main diagram */
+    int diagramCount()               { return diagrams.size(); }
+    DiagramLayout diagram(int i)     { return diagrams.get(i); }
+
+    /** @return How the nodes were placed; deferred diagrams are filled in the same way */
+    LayoutStrategy layoutStrategy()  { return layoutStrategy; }
+
+    /** @return How the pins were placed; deferred diagrams are filled in the same way */
+    PinPlacement pinPlacement()      { return pinPlacement; }
+}
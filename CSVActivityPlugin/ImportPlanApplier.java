@@ -0,0 +1,254 @@
+package com.example.csvactivityplugin;
+
+import com.nomagic.magicdraw.core.Project;
+import com.nomagic.magicdraw.openapi.uml.ModelElementsManager;
+import com.nomagic.magicdraw.openapi.uml.ReadOnlyElementException;
+import com.nomagic.magicdraw.uml.symbols.DiagramPresentationElement;
+import com.nomagic.magicdraw.uml.symbols.PresentationElement;
+import com.nomagic.magicdraw.uml.symbols.shapes.ShapeElement;
+import com.nomagic.uml2.ext.magicdraw.activities.mdbasicactivities.*;
+import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.*;
+import com.nomagic.uml2.ext.magicdraw.activities.mdintermediateactivities.ActivityPartition;
+import com.nomagic.uml2.ext.magicdraw.activities.mdstructuredactivities.StructuredActivityNode;
+import com.nomagic.uml2.ext.magicdraw.actions.mdbasicactions.*;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Diagram;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
+import com.nomagic.uml2.ext.magicdraw.mdprofiles.Stereotype;
+import com.nomagic.uml2.ext.jmi.helpers.StereotypesHelper;
+import com.nomagic.uml2.impl.ElementsFactory;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replays an ImportPlan against the Cameo API: first the model (Activity,
+ * partitions, nodes with pins, control and object flows), then every
+ * diagram with its lanes, shapes and paths. No decisions are made here;
+ * every element, owner and bound comes from the plan. Every shape is
+ * created once and reshaped once, straight to its planned bounds, and
+ * every path gets its planned route. Must run inside a session.
+ */
+final class ImportPlanApplier {
+
+    private final Project project;
+    private final ImportPlan plan;
+    private final ImportProgress progress;
+    private final PresentationIndex presentation;
+
+    private final ElementsFactory f;
+    private final ModelElementsManager mgr = ModelElementsManager.getInstance();
+
+    private Activity activity;
+    private final ActivityPartition[] partitions;
+    private final ActivityNode[] nodes;
+    private final List<List<InputPin>> inputPins;
+    private final List<List<OutputPin>> outputPins;
+    private final ControlFlow[] flows;
+    private final ObjectFlow[] objectFlows;
+
+    private ImportPlanApplier(Project project, ImportPlan plan, ImportProgress progress,
+                              PresentationIndex presentation) {
+        this.project = project;
+        this.plan = plan;
+        this.progress = progress;
+        this.presentation = presentation;
+        this.f = project.getElementsFactory();
+        this.partitions = new ActivityPartition[plan.partitionCount()];
+        this.nodes = new ActivityNode[plan.nodeCount()];
+        this.inputPins = new ArrayList<>(Collections.nCopies(plan.nodeCount(), null));
+        this.outputPins = new ArrayList<>(Collections.nCopies(plan.nodeCount(), null));
+        this.flows = new ControlFlow[plan.flowCount()];
+        this.objectFlows = new ObjectFlow[plan.objectFlowCount()];
+    }
+
+    /**
+     * Creates everything in the plan.
+     *
+     * @param project The project to import into
+     * @param parent Package or Activity that owns the new Activity
+     * @param plan The plan
+     * @param progress Told how far the import is
+     * @param presentation Creates and reshapes the shapes, counting the calls
+     * @return The new Activity
+     */
+    static Activity apply(Project project, Element parent, ImportPlan plan,
+                          ImportProgress progress, PresentationIndex presentation)
+            throws ReadOnlyElementException {
+        ImportPlanApplier applier = new ImportPlanApplier(project, plan, progress, presentation);
+        applier.createModel(parent);
+        applier.createDiagrams();
+        return applier.activity;
+    }
+
+    /* =============================================================
+                                 MODEL
+       ============================================================= */
+
+    private void createModel(Element parent) throws ReadOnlyElementException {
+        progress.update("Creating model elements", 0, plan.nodeCount());
+
+        activity = f.createActivityInstance();
+        activity.setName(plan.activityName());
+        mgr.addElement(activity, parent);
+
+        Stereotype stereo = ActivityDiagramCreator.partitionStereotype(project);
+        for (int id = 0; id < partitions.length; id++) {
+            ImportPlan.Partition planned = plan.partition(id);
+            ActivityPartition p = f.createActivityPartitionInstance();
+            p.setName(planned.actor());  p.setDimension(true);
+            mgr.addElement(p, activity);
+            activity.getPartition().add(p);
+            if (planned.isStereotyped() && stereo != null) StereotypesHelper.addStereotype(p, stereo);
+            partitions[id] = p;
+        }
+
+        for (int id = 0; id < nodes.length; id++) {
+            nodes[id] = createNode(plan.node(id), id);
+        }
+
+        for (int id = 0; id < flows.length; id++) {
+            ImportPlan.Flow planned = plan.flow(id);
+            ControlFlow cf = f.createControlFlowInstance();
+            cf.setSource(nodes[planned.source()]); cf.setTarget(nodes[planned.target()]);
+            mgr.addElement(cf, owner(planned.owner()));
+            flows[id] = cf;
+        }
+
+        for (int id = 0; id < objectFlows.length; id++) {
+            ImportPlan.ObjectFlow planned = plan.objectFlow(id);
+            ObjectFlow of = f.createObjectFlowInstance();
+            of.setSource(outputPins.get(planned.source()).get(planned.output()));
+            of.setTarget(inputPins.get(planned.target()).get(planned.input()));
+            mgr.addElement(of, owner(planned.owner()));
+            objectFlows[id] = of;
+        }
+    }
+
+    private ActivityNode createNode(ImportPlan.Node planned, int id) throws ReadOnlyElementException {
+        ActivityNode node;
+        List<InputPin> ins = new ArrayList<>(planned.inputs().size());
+        List<OutputPin> outs = new ArrayList<>(planned.outputs().size());
+
+        switch (planned.kind()) {
+            case INITIAL -> node = f.createInitialNodeInstance();
+            case FINAL   -> node = f.createActivityFinalNodeInstance();
+            case CALL_BEHAVIOR -> {
+                CallBehaviorAction c = f.createCallBehaviorActionInstance();
+                ins = c.getArgument();  outs = c.getResult();
+                node = c;
+            }
+            default -> {
+                StructuredActivityNode s = f.createStructuredActivityNodeInstance();
+                ins = s.getStructuredNodeInput();  outs = s.getStructuredNodeOutput();
+                node = s;
+            }
+        }
+        node.setName(planned.name());
+        mgr.addElement(node, owner(planned.owner()));
+
+        for (String in : planned.inputs()) {
+            InputPin p = f.createInputPinInstance(); p.setName(in);
+            mgr.addElement(p, node); ins.add(p);
+        }
+        for (String out : planned.outputs()) {
+            OutputPin p = f.createOutputPinInstance(); p.setName(out);
+            mgr.addElement(p, node); outs.add(p);
+        }
+        inputPins.set(id, ins);
+        outputPins.set(id, outs);
+
+        if (planned.partition() >= 0) partitions[planned.partition()].getNode().add(node);
+        return node;
+    }
+
+    private Element owner(int nodeId) {
+        return nodeId < 0 ? activity : nodes[nodeId];
+    }
+
+    /* =============================================================
+                                DIAGRAMS
+       ============================================================= */
+
+    private void createDiagrams() throws ReadOnlyElementException {
+        for (int i = 0; i < plan.diagramCount(); i++) {
+            progress.update("Creating diagrams", i, plan.diagramCount());
+            createDiagram(plan.diagram(i));
+        }
+    }
+
+    private void createDiagram(ImportPlan.DiagramLayout layout) throws ReadOnlyElementException {
+        Diagram dgm = mgr.createDiagram("SysML Activity Diagram",
+                                        layout.owner() < 0 ? activity
+                                                           : (StructuredActivityNode) nodes[layout.owner()]);
+        dgm.setName(layout.name());
+        if (layout.isDeferred()) {
+            // filled in when first opened, the way the import laid out its other diagrams
+            SubdiagramMaterializer.mark(project, dgm, plan.layoutStrategy(), plan.pinPlacement());
+            return;
+        }
+
+        DiagramPresentationElement dpe = project.getDiagram(dgm);
+        if (layout.isOpened()) dpe.open();
+
+        /* -------- swimlanes -------- */
+        List<ActivityPartition> vertical = new ArrayList<>(layout.laneCount());
+        for (int l = 0; l < layout.laneCount(); l++) vertical.add(partitions[layout.lane(l)]);
+        ShapeElement wrapper = presentation.createSwimlane(vertical, dpe);
+
+        ShapeElement[] laneShapes = new ShapeElement[layout.laneCount()];
+        for (int l = 0; l < laneShapes.length; l++) {
+            laneShapes[l] = presentation.find(dpe, vertical.get(l), ShapeElement.class);
+            presentation.reshape(laneShapes[l], layout.laneBounds(l).toRectangle());
+        }
+        presentation.reshape(wrapper, layout.swimlaneBounds().toRectangle());
+
+        /* -------- node and pin shapes -------- */
+        PresentationElement[] shapeOfNode = new PresentationElement[nodes.length];
+        for (int i = 0; i < layout.shapeCount(); i++) {
+            int id = layout.shapeNode(i);
+            int lane = layout.shapeLane(i);
+            ShapeElement shape = presentation.createShape(nodes[id], lane >= 0 ? laneShapes[lane] : dpe);
+            presentation.reshape(shape, layout.shapeBounds(i).toRectangle());
+            shapeOfNode[id] = shape;
+
+            List<InputPin> ins = inputPins.get(id);
+            for (int p = 0; p < ins.size(); p++)
+                placePin(dpe, shape, ins.get(p), layout.inputPinBounds(i, p));
+            List<OutputPin> outs = outputPins.get(id);
+            for (int p = 0; p < outs.size(); p++)
+                placePin(dpe, shape, outs.get(p), layout.outputPinBounds(i, p));
+        }
+
+        /* -------- control flow paths -------- */
+        for (int i = 0; i < layout.flowCount(); i++) {
+            ImportPlan.Flow planned = plan.flow(layout.flow(i));
+            PresentationElement src = shapeOfNode[planned.source()];
+            PresentationElement tgt = shapeOfNode[planned.target()];
+            if (src != null && tgt != null)
+                presentation.createPath(flows[layout.flow(i)], src, tgt, points(layout.flowRoute(i)));
+        }
+
+        /* -------- object flow paths, between the pin shapes -------- */
+        for (int i = 0; i < layout.objectFlowCount(); i++) {
+            ObjectFlow of = objectFlows[layout.objectFlow(i)];
+            PresentationElement src = presentation.find(dpe, of.getSource(), ShapeElement.class);
+            PresentationElement tgt = presentation.find(dpe, of.getTarget(), ShapeElement.class);
+            if (src != null && tgt != null)
+                presentation.createPath(of, src, tgt, points(layout.objectFlowRoute(i)));
+        }
+    }
+
+    /* pin shapes normally come with the node's shape; create any that did not */
+    private void placePin(DiagramPresentationElement dpe, ShapeElement nodeShape,
+                          Pin pin, ImportPlan.Bounds bounds) throws ReadOnlyElementException {
+        ShapeElement shape = presentation.find(dpe, pin, ShapeElement.class);
+        if (shape == null) shape = presentation.createShape(pin, nodeShape);
+        presentation.reshape(shape, bounds.toRectangle());
+    }
+
+    private static List<Point> points(ImportPlan.Route route) {
+        return route == null ? null : route.toPoints();
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.csvactivityplugin;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Works out the ImportPlan for a fresh import of an outline tree.
+ *
+ * The plan has the same shape as what ActivityDiagramCreator has always
+ * built: one lane per actor of the top-level rows, a Structured Activity
+ * Node per top-level row chained between Start and End, the children of
+ * every row inside its node, and one diagram for the Activity plus one for
+ * every row with children. The geometry comes from the LayoutEngine with
+ * the strategy the import chose (the column strategy, the same layout the
+ * grid layouters apply when an import is updated, unless long diagrams
+ * are wrapped into bands or laid out in layers), and every path is routed
+ * around the shapes of its diagram (see OrthogonalRouter). Nothing here
+ * uses the Cameo API.
+ *
+ * Planning runs in two passes. The first walks the tree and lists every
+ * partition, node and flow, noting for each diagram which nodes it shows.
+ * The diagrams only read what the first pass produced and do not depend on
+ * each other, so the second pass lays them all out in parallel on the
+ * common ForkJoin pool.
+ *
+ * Planning is meant to run on a worker thread: it reports each diagram it
+ * has laid out and stops when the calling thread is interrupted (see
+ * ImportProgress.checkCancelled).
+ *
+ * With an object-flow rule, outputs are connected to the inputs of the same
+ * name on later nodes of their level (see ObjectFlowInference), and every
+ * diagram shows the object flows between its nodes. The layered strategy
+ * then places each diagram by those object flows, which branch and join
+ * where the control flows only chain.
+ *
+ * When sub-diagrams are deferred, the rows with children still get their
+ * nodes, start/end nodes and flows, but their diagrams are planned empty
+ * and get no lane partitions (see ImportPlan.DiagramLayout.deferred).
+ */
+final class ImportPlanner {
+
+    private final ActivityTree tree;
+    private final Map<String,ActionTypeChooser.ActionType> actionTypes;
+    private final boolean deferSubDiagrams;
+    private final ObjectFlowInference.Rule objectFlowRule;
+    private final ObjectFlowInference objectFlowInference;
+    private final LayoutStrategy layoutStrategy;
+    private final LayoutOptions layoutOptions;
+
+    private final List<ImportPlan.Partition> partitions = new ArrayList<>();
+    private final List<ImportPlan.Node> nodes = new ArrayList<>();
+    private final List<ImportPlan.Flow> flows = new ArrayList<>();
+    private final List<ImportPlan.ObjectFlow> objectFlows = new ArrayList<>();
+    private final List<DiagramJob> diagrams = new ArrayList<>();
+
+    // node id of every row, -1 for rows outside the tree
+    private final int[] nodeOfRow;
+
+    // the main diagram's lanes by actor; sub-actions are put in these
+    private final Map<String,Integer> mainPartitions = new LinkedHashMap<>();
+
+    // actor names in the order their first partition was created
+    private final Set<String> partitionOrder = new LinkedHashSet<>();
+
+    /* a diagram to lay out once the model is planned */
+    private static final class DiagramJob {
+        final int owner;
+        final String name;
+        final boolean opened;
+        final int[] lanes;
+        final List<Integer> chain;
+        final int[] chainFlows;
+        final int[] objectFlows;
+        final boolean deferred;
+
+        DiagramJob(int owner, String name, boolean opened, int[] lanes, List<Integer> chain,
+                   int[] chainFlows, int[] objectFlows, boolean deferred) {
+            this.deferred = deferred;
+            this.owner = owner;
+            this.name = name;
+            this.opened = opened;
+            this.lanes = lanes;
+            this.chain = chain;
+            this.chainFlows = chainFlows;
+            this.objectFlows = objectFlows;
+        }
+    }
+
+    private ImportPlanner(ActivityTree tree,
+                          Map<String,ActionTypeChooser.ActionType> actionTypes,
+                          boolean deferSubDiagrams,
+                          ObjectFlowInference.Rule objectFlowRule,
+                          LayoutStrategy layoutStrategy,
+                          PinPlacement pinPlacement) {
+        this.tree = tree;
+        this.actionTypes = actionTypes;
+        this.deferSubDiagrams = deferSubDiagrams;
+        this.objectFlowRule = objectFlowRule;
+        this.objectFlowInference = objectFlowRule != null ? new ObjectFlowInference(tree) : null;
+        this.layoutStrategy = layoutStrategy;
+        this.layoutOptions = LayoutOptions.DEFAULT.withPinPlacement(pinPlacement);
+        this.nodeOfRow = new int[tree.table().size()];
+        Arrays.fill(nodeOfRow, -1);
+    }
+
+    /**
+     * Plans a fresh import.
+     *
+     * @param activityName Name of the Activity and its main diagram
+     * @param tree The parsed rows
+     * @param actionTypes Chosen node type by row name; rows with children
+     *                    are always Structured Activity Nodes
+     * @param deferSubDiagrams true to plan the sub-diagrams empty, to be
+     *                         filled in when they are first opened
+     * @param objectFlowRule Which inputs an output feeds, null for no object flows
+     * @param layoutStrategy Places the nodes of every diagram
+     * @param pinPlacement Sizes the actions and places their pins
+     * @param progress Told how many diagrams have been laid out
+     * @return The plan
+     * @throws CancellationException If the calling thread is interrupted
+     */
+    static ImportPlan plan(String activityName, ActivityTree tree,
+                           Map<String,ActionTypeChooser.ActionType> actionTypes,
+                           boolean deferSubDiagrams,
+                           ObjectFlowInference.Rule objectFlowRule,
+                           LayoutStrategy layoutStrategy,
+                           PinPlacement pinPlacement,
+                           ImportProgress progress) {
+        ImportPlanner planner = new ImportPlanner(tree, actionTypes, deferSubDiagrams, objectFlowRule,
+                                                  layoutStrategy, pinPlacement);
+        progress.update("Planning " + tree.table().size() + " activities", 0, 0);
+        planner.planMainLevel(activityName);
+        for (int i = 0; i < tree.rootCount(); i++) {
+            ImportProgress.checkCancelled();
+            planner.planSubLevels(tree.root(i));
+        }
+        return new ImportPlan(activityName, planner.partitions, planner.nodes, planner.flows,
+                              planner.objectFlows, planner.layoutDiagrams(progress),
+                              layoutStrategy, planner.layoutOptions.pinPlacement);
+    }
+
+    /** "<Unassigned>" for rows without an actor */
+    static String actorName(String raw) {
+        return (raw == null || raw.trim().isEmpty()) ? "<Unassigned>" : raw.trim();
+    }
+
+    /* =============================================================
+                                 MODEL
+       ============================================================= */
+
+    /* lanes, the top-level chain with every descendant node, and the main diagram */
+    private void planMainLevel(String activityName) {
+        ActivityTable table = tree.table();
+
+        for (int i = 0; i < tree.rootCount(); i++) {
+            String actor = actorName(table.actor(tree.root(i)));
+            if (!mainPartitions.containsKey(actor))
+                mainPartitions.put(actor, addPartition(actor, true));
+        }
+        if (mainPartitions.isEmpty())
+            mainPartitions.put(actorName(null), addPartition(actorName(null), true));
+        int firstLane = mainPartitions.values().iterator().next();
+
+        List<Integer> chain = new ArrayList<>(tree.rootCount() + 2);
+        chain.add(addNode(ImportPlan.NodeKind.INITIAL, "Start", -1, -1, firstLane));
+        for (int i = 0; i < tree.rootCount(); i++) {
+            int r = tree.root(i);
+            int node = addNode(ImportPlan.NodeKind.STRUCTURED_ACTIVITY, table.name(r), r, -1,
+                               mainPartitions.get(actorName(table.actor(r))));
+            chain.add(node);
+            planChildNodes(r, node);
+        }
+        chain.add(addNode(ImportPlan.NodeKind.FINAL, "End", -1, -1, firstLane));
+
+        int[] chainFlows = addFlows(-1, chain);
+        int[] lanes = mainPartitions.values().stream().mapToInt(Integer::intValue).toArray();
+        diagrams.add(new DiagramJob(-1, activityName, true, lanes, chain, chainFlows,
+                                    addObjectFlows(-1, -1), false));
+    }
+
+    /* the children of a row inside its node, then their children, … */
+    private void planChildNodes(int row, int owner) {
+        ActivityTable table = tree.table();
+        for (int i = 0; i < tree.childCount(row); i++) {
+            int c = tree.child(row, i);
+            Integer lane = mainPartitions.get(actorName(table.actor(c)));
+            int node = addNode(kindOf(c), table.name(c), c, owner, lane != null ? lane : -1);
+            if (tree.hasChildren(c)) planChildNodes(c, node);
+        }
+    }
+
+    /* the diagram of a row with children, then those of its descendants */
+    private void planSubLevels(int row) {
+        if (!tree.hasChildren(row)) return;
+
+        ActivityTable table = tree.table();
+        int owner = nodeOfRow[row];
+
+        if (deferSubDiagrams) {
+            List<Integer> chain = new ArrayList<>(tree.childCount(row) + 2);
+            chain.add(addNode(ImportPlan.NodeKind.INITIAL, "Start", -1, owner, -1));
+            int endNode = addNode(ImportPlan.NodeKind.FINAL, "End", -1, owner, -1);
+            for (int i = 0; i < tree.childCount(row); i++) chain.add(nodeOfRow[tree.child(row, i)]);
+            chain.add(endNode);
+
+            int[] chainFlows = addFlows(owner, chain);
+            diagrams.add(new DiagramJob(owner, table.name(row), false, null, chain, chainFlows,
+                                        addObjectFlows(row, owner), true));
+            for (int i = 0; i < tree.childCount(row); i++) planSubLevels(tree.child(row, i));
+            return;
+        }
+
+        /* lanes: actors already used elsewhere in the Activity keep their order */
+        Set<String> needed = new LinkedHashSet<>();
+        for (int i = 0; i < tree.childCount(row); i++)
+            needed.add(actorName(table.actor(tree.child(row, i))));
+        List<String> order = new ArrayList<>(needed.size());
+        for (String actor : partitionOrder)
+            if (needed.remove(actor)) order.add(actor);
+        order.addAll(needed);
+
+        int[] lanes = new int[order.size()];
+        for (int i = 0; i < lanes.length; i++) lanes[i] = addPartition(order.get(i), false);
+
+        List<Integer> chain = new ArrayList<>(tree.childCount(row) + 2);
+        chain.add(addNode(ImportPlan.NodeKind.INITIAL, "Start", -1, owner, lanes[0]));
+        int endNode = addNode(ImportPlan.NodeKind.FINAL, "End", -1, owner, lanes[0]);
+        for (int i = 0; i < tree.childCount(row); i++) chain.add(nodeOfRow[tree.child(row, i)]);
+        chain.add(endNode);
+
+        int[] chainFlows = addFlows(owner, chain);
+        diagrams.add(new DiagramJob(owner, table.name(row), false, lanes, chain, chainFlows,
+                                    addObjectFlows(row, owner), false));
+
+        for (int i = 0; i < tree.childCount(row); i++) planSubLevels(tree.child(row, i));
+    }
+
+    /**
+     * Node type of a row. Rows with children must be able to hold them,
+     * so they are always Structured Activity Nodes.
+     */
+    private ImportPlan.NodeKind kindOf(int row) {
+        if (!tree.hasChildren(row)
+                && actionTypes.get(tree.table().name(row)) == ActionTypeChooser.ActionType.CALL_BEHAVIOR)
+            return ImportPlan.NodeKind.CALL_BEHAVIOR;
+        return ImportPlan.NodeKind.STRUCTURED_ACTIVITY;
+    }
+
+    private int addPartition(String actor, boolean stereotyped) {
+        partitions.add(new ImportPlan.Partition(actor, stereotyped));
+        partitionOrder.add(actor);
+        return partitions.size() - 1;
+    }
+
+    private int addNode(ImportPlan.NodeKind kind, String name, int row, int owner, int partition) {
+        List<String> inputs = row >= 0 ? tree.table().inputs(row) : Collections.emptyList();
+        List<String> outputs = row >= 0 ? tree.table().outputs(row) : Collections.emptyList();
+        nodes.add(new ImportPlan.Node(kind, name, row, owner, partition, inputs, outputs));
+        int id = nodes.size() - 1;
+        if (row >= 0) nodeOfRow[row] = id;
+        return id;
+    }
+
+    /* chain[0] → chain[1] → …, returns the flow ids */
+    private int[] addFlows(int owner, List<Integer> chain) {
+        int[] ids = new int[chain.size() - 1];
+        for (int i = 1; i < chain.size(); i++) {
+            flows.add(new ImportPlan.Flow(owner, chain.get(i - 1), chain.get(i)));
+            ids[i - 1] = flows.size() - 1;
+        }
+        return ids;
+    }
+
+    /* the object flows among the children of a row (-1: the top level), returns their ids */
+    private int[] addObjectFlows(int row, int owner) {
+        if (objectFlowInference == null) return new int[0];
+        int first = objectFlows.size();
+        objectFlowInference.infer(row, objectFlowRule, (sourceRow, output, targetRow, input) ->
+                objectFlows.add(new ImportPlan.ObjectFlow(owner, nodeOfRow[sourceRow], output,
+                                                          nodeOfRow[targetRow], input)));
+        return IntStream.range(first, objectFlows.size()).toArray();
+    }
+
+    /* =============================================================
+                                GEOMETRY
+       ============================================================= */
+
+    /*
+     * every diagram, in parallel; the model lists are only read from here on.
+     * The pool threads are not the caller's, so they watch the caller for
+     * cancellation
+     */
+    private List<ImportPlan.DiagramLayout> layoutDiagrams(ImportProgress progress) {
+        ImportPlan.DiagramLayout[] layouts = new ImportPlan.DiagramLayout[diagrams.size()];
+        Thread caller = Thread.currentThread();
+        AtomicInteger done = new AtomicInteger();
+        IntStream.range(0, layouts.length).parallel().forEach(i -> {
+            if (caller.isInterrupted()) throw new CancellationException("Import cancelled");
+            layouts[i] = layoutDiagram(diagrams.get(i));
+            progress.update("Laying out diagrams", done.incrementAndGet(), layouts.length);
+        });
+        return Arrays.asList(layouts);
+    }
+
+    /**
+     * Lays the diagram out with the import's strategy: each node in the
+     * lane of its actor (the End node in the lane of the node before it),
+     * see LayoutEngine.
+     */
+    private ImportPlan.DiagramLayout layoutDiagram(DiagramJob job) {
+        if (job.deferred) return ImportPlan.DiagramLayout.deferred(job.owner, job.name);
+
+        int[] lanes = job.lanes;
+        List<Integer> chain = job.chain;
+        Map<String,Integer> laneIndex = new HashMap<>();
+        for (int i = 0; i < lanes.length; i++)
+            laneIndex.putIfAbsent(partitions.get(lanes[i]).actor(), i);
+
+        LayoutGraph graph = new LayoutGraph(lanes.length);
+        for (int id : chain) {
+            ImportPlan.Node node = nodes.get(id);
+            int lane;
+            if (node.kind() == ImportPlan.NodeKind.FINAL) lane = LayoutGraph.PREVIOUS_LANE;
+            else if (node.row() >= 0)
+                lane = laneIndex.getOrDefault(actorName(tree.table().actor(node.row())), 0);
+            else lane = 0;
+
+            if (node.isAction())
+                graph.addAction(layoutOptions.actionWidth, layoutOptions.actionHeight, lane,
+                                node.inputs().size(), node.outputs().size());
+            else
+                graph.addControl(layoutOptions.controlSize, lane);
+        }
+        Map<Integer,Integer> shapeOfNode = new HashMap<>();
+        for (int i = 0; i < chain.size(); i++) shapeOfNode.put(chain.get(i), i);
+        if (layoutStrategy == LayoutStrategy.LAYERED && job.objectFlows.length > 0)
+            addDataEdges(graph, job, shapeOfNode);
+        else
+            for (int i = 1; i < chain.size(); i++) graph.addEdge(i - 1, i);
+
+        LayoutResult layout = LayoutEngine.layout(graph, layoutOptions, layoutStrategy);
+
+        int count = chain.size();
+        int[] shapeNodes = new int[count];
+        int[] shapeLanes = new int[count];
+        ImportPlan.Bounds[] shapeBounds = new ImportPlan.Bounds[count];
+        ImportPlan.Bounds[][] inputPins = new ImportPlan.Bounds[count][];
+        ImportPlan.Bounds[][] outputPins = new ImportPlan.Bounds[count][];
+        for (int i = 0; i < count; i++) {
+            ImportPlan.Node node = nodes.get(chain.get(i));
+            shapeNodes[i] = chain.get(i);
+            shapeBounds[i] = bounds(layout.nodeBounds(i));
+
+            inputPins[i] = new ImportPlan.Bounds[layout.inputCount(i)];
+            for (int p = 0; p < inputPins[i].length; p++)
+                inputPins[i][p] = bounds(layout.inputPinBounds(i, p));
+            outputPins[i] = new ImportPlan.Bounds[layout.outputCount(i)];
+            for (int p = 0; p < outputPins[i].length; p++)
+                outputPins[i][p] = bounds(layout.outputPinBounds(i, p));
+
+            /* a shape goes into a lane only if the lane's partition holds the node */
+            shapeLanes[i] = -1;
+            for (int l = 0; l < lanes.length; l++)
+                if (lanes[l] == node.partition()) { shapeLanes[i] = l; break; }
+        }
+
+        ImportPlan.Bounds[] laneBounds = new ImportPlan.Bounds[lanes.length];
+        for (int l = 0; l < lanes.length; l++) laneBounds[l] = bounds(layout.laneBounds(l));
+
+        /* paths: flows from bottom to top of the chain's shapes, object flows from pin to pin,
+           leaving and entering by the side of the node each pin is on */
+        OrthogonalRouter router = new OrthogonalRouter(obstacles(layout));
+        ImportPlan.Route[] flowRoutes = new ImportPlan.Route[job.chainFlows.length];
+        for (int i = 0; i < flowRoutes.length; i++)
+            flowRoutes[i] = route(router.route(layout.nodeBounds(i), OrthogonalRouter.Side.BOTTOM,
+                                               layout.nodeBounds(i + 1), OrthogonalRouter.Side.TOP));
+
+        ImportPlan.Route[] objectFlowRoutes = new ImportPlan.Route[job.objectFlows.length];
+        for (int i = 0; i < objectFlowRoutes.length; i++) {
+            ImportPlan.ObjectFlow of = objectFlows.get(job.objectFlows[i]);
+            int source = shapeOfNode.get(of.source()), target = shapeOfNode.get(of.target());
+            Rectangle output = layout.outputPinBounds(source, of.output());
+            Rectangle input = layout.inputPinBounds(target, of.input());
+            objectFlowRoutes[i] = route(router.route(
+                    output, OrthogonalRouter.sideOf(output, layout.nodeBounds(source)),
+                    input, OrthogonalRouter.sideOf(input, layout.nodeBounds(target))));
+        }
+
+        return new ImportPlan.DiagramLayout(job.owner, job.name, job.opened, lanes, laneBounds,
+                                            bounds(layout.swimlaneBounds()),
+                                            shapeNodes, shapeLanes, shapeBounds,
+                                            inputPins, outputPins, job.chainFlows, flowRoutes,
+                                            job.objectFlows, objectFlowRoutes);
+    }
+
+    /*
+     * the layered strategy places the diagram by its data flow: an edge per
+     * pair of nodes joined by object flows, from Start to the nodes that take
+     * no data and from those that give none to End. The control flows still
+     * chain the nodes in sheet order; they are routed as placed
+     */
+    private void addDataEdges(LayoutGraph graph, DiagramJob job, Map<Integer,Integer> shapeOfNode) {
+        int count = job.chain.size();
+        boolean[] fed = new boolean[count], feeds = new boolean[count];
+        Set<Long> joined = new HashSet<>();
+        for (int f : job.objectFlows) {
+            ImportPlan.ObjectFlow of = objectFlows.get(f);
+            int source = shapeOfNode.get(of.source()), target = shapeOfNode.get(of.target());
+            if (!joined.add((long) source * count + target)) continue;
+            graph.addEdge(source, target);
+            feeds[source] = true;
+            fed[target] = true;
+        }
+        for (int i = 1; i < count - 1; i++) {
+            if (!fed[i]) graph.addEdge(0, i);
+            if (!feeds[i]) graph.addEdge(i, count - 1);
+        }
+    }
+
+    /* every node and pin of the layout */
+    private static Rectangle[] obstacles(LayoutResult layout) {
+        List<Rectangle> obstacles = new ArrayList<>();
+        for (int i = 0; i < layout.nodeCount(); i++) {
+            obstacles.add(layout.nodeBounds(i));
+            for (int p = 0; p < layout.inputCount(i); p++) obstacles.add(layout.inputPinBounds(i, p));
+            for (int p = 0; p < layout.outputCount(i); p++) obstacles.add(layout.outputPinBounds(i, p));
+        }
+        return obstacles.toArray(new Rectangle[0]);
+    }
+
+    private static ImportPlan.Route route(List<Point> points) {
+        return points == null ? null : new ImportPlan.Route(points);
+    }
+
+    private static ImportPlan.Bounds bounds(Rectangle r) {
+        return new ImportPlan.Bounds(r.x, r.y, r.width, r.height);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.csvactivityplugin;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Receives progress reports from the stages of an import.
+ *
+ * Reports may come from a worker thread (reading the file) or from the
+ * event dispatch thread (building the model); implementations must accept
+ * both. Work running on a worker thread is cancelled by interrupting it,
+ * see {@link #checkCancelled()}.
+ */
+interface ImportProgress {
+
+    /** Ignores all reports. */
+    ImportProgress NONE = (message, done, total) -> {};
+
+    /**
+     * Reports the current stage.
+     *
+     * @param message What is being done, e.g. "Reading rows"
+     * @param done Units of work finished so far
+     * @param total Units of work in the stage, or 0 if not known
+     */
+    void update(String message, int done, int total);
+
+    /**
+     * Stops the current stage if the import was cancelled, i.e. the calling
+     * thread has been interrupted. Called regularly by long-running stages.
+     *
+     * @throws CancellationException If the import was cancelled
+     */
+    static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Import cancelled");
+        }
+    }
+}
\ No newline at end of file
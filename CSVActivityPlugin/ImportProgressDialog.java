@@ -0,0 +1,111 @@
+package com.example.csvactivityplugin;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+/**
+ * Small non-modal window with a progress bar and a Cancel button, shown
+ * while an import runs.
+ *
+ * Reports from worker threads are passed to the event dispatch thread.
+ * Reports made on the event dispatch thread itself (while the model is
+ * being built and the thread is busy) are painted right away, since no
+ * repaint events are processed until the import returns.
+ */
+@SuppressWarnings("serial")
+class ImportProgressDialog extends JDialog implements ImportProgress {
+
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JButton cancelButton = new JButton("Cancel");
+
+    private Runnable cancelAction = () -> {};
+
+    // Set by dispose; late reports from a cancelled worker are dropped
+    private boolean closed;
+
+    /**
+     * Creates the dialog; it is shown by the first progress report.
+     *
+     * @param parent The parent frame for this dialog
+     * @param title Dialog title
+     */
+    ImportProgressDialog(Frame parent, String title) {
+        super(parent, title, false);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+
+        JPanel content = new JPanel(new BorderLayout(0, 8));
+        content.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        progressBar.setPreferredSize(new Dimension(360, progressBar.getPreferredSize().height));
+        content.add(statusLabel, BorderLayout.NORTH);
+        content.add(progressBar, BorderLayout.CENTER);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        cancelButton.addActionListener(e -> cancel());
+        buttons.add(cancelButton);
+        content.add(buttons, BorderLayout.SOUTH);
+
+        setContentPane(content);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (cancelButton.isEnabled()) cancel();
+            }
+        });
+        pack();
+        setLocationRelativeTo(parent);
+    }
+
+    /**
+     * @param action Run on the event dispatch thread when the user presses
+     *               Cancel (or closes the window)
+     */
+    void setCancelAction(Runnable action) {
+        this.cancelAction = action;
+    }
+
+    /**
+     * Enables or disables Cancel. Stages running on the event dispatch
+     * thread cannot react to it, so it is disabled while they run.
+     */
+    void setCancellable(boolean cancellable) {
+        cancelButton.setEnabled(cancellable);
+    }
+
+    @Override
+    public void update(String message, int done, int total) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> update(message, done, total));
+            return;
+        }
+        if (closed) return;
+
+        progressBar.setIndeterminate(total <= 0);
+        if (total > 0) {
+            progressBar.setMaximum(total);
+            progressBar.setValue(done);
+        }
+        statusLabel.setText(total > 0 || done <= 0
+                            ? message
+                            : message + " (" + String.format("%,d", done) + ")");
+
+        if (!isVisible()) setVisible(true);
+        // The caller may be holding the event dispatch thread; paint now
+        JComponent content = (JComponent) getContentPane();
+        content.paintImmediately(content.getBounds());
+    }
+
+    @Override
+    public void dispose() {
+        closed = true;
+        super.dispose();
+    }
+
+    private void cancel() {
+        cancelButton.setEnabled(false);
+        statusLabel.setText("Cancelling...");
+        cancelAction.run();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.example.csvactivityplugin;
+
+/**
+ * Counts the presentation element calls of one import (see
+ * PresentationIndex).
+ *
+ * A shape is created once and then reshaped at most once, to its final
+ * bounds; the counts show whether an import kept to that. Lookups and the
+ * diagram walks they took are counted separately.
+ */
+final class ImportStatistics {
+
+    private int shapesCreated;
+    private int reshapes;
+    private int routes;
+    private int lookups;
+    private int diagramWalks;
+
+    void countShape() {
+        shapesCreated++;
+    }
+
+    void countReshape() {
+        reshapes++;
+    }
+
+    void countRoute() {
+        routes++;
+    }
+
+    void countLookup() {
+        lookups++;
+    }
+
+    void countDiagramWalk() {
+        diagramWalks++;
+    }
+
+    /** @return Number of shapes created so far */
+    int shapesCreated() {
+        return shapesCreated;
+    }
+
+    /** @return Number of reshapeShapeElement calls so far */
+    int reshapes() {
+        return reshapes;
+    }
+
+    /** @return Number of changePathBreakPoints calls so far */
+    int routes() {
+        return routes;
+    }
+
+    /** @return Number of presentation element lookups so far */
+    int lookups() {
+        return lookups;
+    }
+
+    /** @return Number of diagram walks the lookups took so far */
+    int diagramWalks() {
+        return diagramWalks;
+    }
+
+    @Override
+    public String toString() {
+        return shapesCreated + " shapes created, " + reshapes + " reshapes, " + routes + " paths routed, "
+             + lookups + " lookups, " + diagramWalks + " diagram walks";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.example.csvactivityplugin;
+
+/**
+ * Layout for updating a diagram that is already laid out: it keeps the
+ * shapes where they are and only moves what must move, so manual changes
+ * to the rest of the diagram survive an update.
+ *
+ * Nodes are taken in node order (the order of the flow), against the
+ * bounds setPrevious recorded for them:
+ *  - a node with no previous bounds is new: it goes below the node before
+ *    it, yStep apart, centred in its lane as in the column layout;
+ *  - a node that did not change keeps its previous bounds, size included,
+ *    unless it is now too small for its pins (see PinPlacement.size);
+ *  - a changed node keeps its place but takes its new size, around the
+ *    same centre. (A node that changed lanes has a new shape: it is new.)
+ * Every node after a new or grown one moves down, all by the same amount,
+ * which is the least that keeps the first of them yStep below it; nodes
+ * before the first insertion do not move at all. Removed nodes leave their
+ * gap. A node that ends where it was does not need reshaping (see
+ * PresentationIndex.reshape), so an update touches only the shapes below
+ * the changes.
+ */
+final class IncrementalLayout implements LayoutStrategy {
+
+    @Override
+    public void place(LayoutGraph graph, LayoutOptions options, LayoutResult result) {
+        int shift = 0;                      // how far the kept nodes move down
+        int floor = Integer.MIN_VALUE;      // top the next kept node must stay below
+        int bottom = options.startY - options.yStep;
+        for (int n = 0; n < graph.nodeCount(); n++) {
+            if (!graph.hasPrevious(n)) {
+                int width = result.width(n);
+                int lane = result.lane(n);
+                int x = lane < 0
+                      ? (options.diagramWidth - width) / 2
+                      : result.laneX(lane) + (result.laneWidth(lane) - width) / 2;
+                result.setLocation(n, x, bottom + options.yStep);
+                bottom += options.yStep + result.height(n);
+                floor = bottom + options.yStep;
+                continue;
+            }
+
+            if (!graph.isChanged(n)) {
+                result.setSize(n, Math.max(graph.previousWidth(n), result.width(n)),
+                               Math.max(graph.previousHeight(n), result.height(n)));
+            }
+            if (floor != Integer.MIN_VALUE) shift = Math.max(shift, floor - graph.previousY(n));
+            int y = graph.previousY(n) + shift;
+            result.setLocation(n, graph.previousX(n) + (graph.previousWidth(n) - result.width(n)) / 2, y);
+            bottom = y + result.height(n);
+            floor = result.height(n) > graph.previousHeight(n) ? bottom + options.yStep : Integer.MIN_VALUE;
+        }
+    }
+}
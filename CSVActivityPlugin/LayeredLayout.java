@@ -0,0 +1,235 @@
+package com.example.csvactivityplugin;
+
+import java.util.Arrays;
+
+/**
+ * Layered (Sugiyama-style) layout: nodes that follow each other go into
+ * successive layers, nodes of the same layer side by side. For a single
+ * chain of flows this is the column layout; it differs once flows branch
+ * and join.
+ *
+ * The usual four steps, each linear or n log n in the size of the graph:
+ *  - cycle removal: edges that close a cycle (back edges of a depth-first
+ *    search in node order) are followed backwards;
+ *  - layer assignment: every node goes one layer below its lowest
+ *    predecessor (longest path from the sources);
+ *  - crossing minimization: a few barycenter sweeps down and up, each node
+ *    moving towards the average position of its neighbours in the layers
+ *    before (after) it. Edges that span several layers count at their far
+ *    end instead of going through dummy nodes;
+ *  - coordinates: lanes stay where they are. In every layer the nodes of a
+ *    lane are centred in it side by side, xStep apart, wrapping onto more
+ *    rows when the lane is too narrow; each layer is as tall as its
+ *    tallest lane and layers are yStep apart.
+ */
+final class LayeredLayout implements LayoutStrategy {
+
+    private static final int SWEEPS = 4;
+
+    @Override
+    public void place(LayoutGraph graph, LayoutOptions options, LayoutResult result) {
+        int n = graph.nodeCount();
+        if (n == 0) return;
+
+        Adjacency dag = acyclic(graph);
+        int[] layer = assignLayers(dag, n);
+        int[][] layers = orderLayers(dag, layer, result);
+        placeLayers(layers, options, result);
+    }
+
+    /* =============================================================
+                         CYCLE REMOVAL, LAYERING
+       ============================================================= */
+
+    /* successors and predecessors of every node, in compressed row form */
+    private static final class Adjacency {
+        final int[] outStart, out, outEdge;
+        final int[] inStart, in;
+
+        Adjacency(int n, int[] source, int[] target, int m) {
+            outStart = new int[n + 1];
+            inStart = new int[n + 1];
+            for (int e = 0; e < m; e++) { outStart[source[e] + 1]++; inStart[target[e] + 1]++; }
+            for (int v = 0; v < n; v++) { outStart[v + 1] += outStart[v]; inStart[v + 1] += inStart[v]; }
+            out = new int[m];
+            outEdge = new int[m];
+            in = new int[m];
+            int[] o = Arrays.copyOf(outStart, n), i = Arrays.copyOf(inStart, n);
+            for (int e = 0; e < m; e++) {
+                outEdge[o[source[e]]] = e;
+                out[o[source[e]]++] = target[e];
+                in[i[target[e]]++] = source[e];
+            }
+        }
+    }
+
+    /* the graph without self loops, back edges of a DFS in node order reversed */
+    private static Adjacency acyclic(LayoutGraph graph) {
+        int n = graph.nodeCount();
+        int m = 0;
+        int[] source = new int[graph.edgeCount()], target = new int[graph.edgeCount()];
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (graph.edgeSource(e) == graph.edgeTarget(e)) continue;
+            source[m] = graph.edgeSource(e);
+            target[m] = graph.edgeTarget(e);
+            m++;
+        }
+        Adjacency all = new Adjacency(n, source, target, m);
+
+        /* iterative DFS: 1 = on the stack, 2 = done; back edges are turned around */
+        byte[] state = new byte[n];
+        int[] stack = new int[n], next = new int[n];
+        boolean turned = false;
+        for (int root = 0; root < n; root++) {
+            if (state[root] != 0) continue;
+            int top = 0;
+            stack[0] = root; next[root] = all.outStart[root]; state[root] = 1;
+            while (top >= 0) {
+                int v = stack[top];
+                if (next[v] == all.outStart[v + 1]) { state[v] = 2; top--; continue; }
+                int k = next[v]++;
+                int w = all.out[k];
+                if (state[w] == 1) {
+                    int e = all.outEdge[k];
+                    source[e] = w; target[e] = v;
+                    turned = true;
+                } else if (state[w] == 0) {
+                    stack[++top] = w; next[w] = all.outStart[w]; state[w] = 1;
+                }
+            }
+        }
+        return turned ? new Adjacency(n, source, target, m) : all;
+    }
+
+    /* longest path from the sources, in topological order */
+    private static int[] assignLayers(Adjacency dag, int n) {
+        int[] layer = new int[n];
+        int[] indegree = new int[n];
+        for (int v = 0; v < n; v++) indegree[v] = dag.inStart[v + 1] - dag.inStart[v];
+
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        for (int v = 0; v < n; v++) if (indegree[v] == 0) queue[tail++] = v;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int k = dag.outStart[v]; k < dag.outStart[v + 1]; k++) {
+                int w = dag.out[k];
+                layer[w] = Math.max(layer[w], layer[v] + 1);
+                if (--indegree[w] == 0) queue[tail++] = w;
+            }
+        }
+        return layer;
+    }
+
+    /* =============================================================
+                          CROSSING MINIMIZATION
+       ============================================================= */
+
+    /* the nodes of every layer, left to right: by lane, then by barycenter */
+    private static int[][] orderLayers(Adjacency dag, int[] layer, LayoutResult result) {
+        int n = layer.length;
+        int layerCount = 0;
+        for (int v = 0; v < n; v++) layerCount = Math.max(layerCount, layer[v] + 1);
+
+        int[] size = new int[layerCount];
+        for (int v = 0; v < n; v++) size[layer[v]]++;
+        int[][] layers = new int[layerCount][];
+        for (int l = 0; l < layerCount; l++) layers[l] = new int[size[l]];
+        Arrays.fill(size, 0);
+        for (int v = 0; v < n; v++) layers[layer[v]][size[layer[v]]++] = v;
+
+        // position of every node in its layer, scaled to 0 .. 1; lanes first, then node order
+        double[] position = new double[n];
+        double[] key = new double[n];
+        for (int[] nodes : layers) {
+            for (int v : nodes) position[v] = key[v] = v;
+            sort(nodes, position, key, result);
+        }
+
+        for (int sweep = 0; sweep < SWEEPS; sweep++) {
+            for (int l = 1; l < layerCount; l++)
+                reorder(layers[l], dag.inStart, dag.in, position, key, result);
+            for (int l = layerCount - 2; l >= 0; l--)
+                reorder(layers[l], dag.outStart, dag.out, position, key, result);
+        }
+        return layers;
+    }
+
+    /* sorts a layer by lane, then by the mean position of the given neighbours */
+    private static void reorder(int[] nodes, int[] start, int[] neighbours,
+                                double[] position, double[] key, LayoutResult result) {
+        if (nodes.length < 2) return;
+        for (int v : nodes) {
+            int count = start[v + 1] - start[v];
+            if (count == 0) { key[v] = position[v]; continue; }   // stays where it is
+            double sum = 0;
+            for (int k = start[v]; k < start[v + 1]; k++) sum += position[neighbours[k]];
+            key[v] = sum / count;
+        }
+        sort(nodes, position, key, result);
+    }
+
+    /* by lane, then key, then current position */
+    private static void sort(int[] nodes, double[] position, double[] key, LayoutResult result) {
+        Integer[] boxed = new Integer[nodes.length];
+        for (int i = 0; i < nodes.length; i++) boxed[i] = nodes[i];
+        Arrays.sort(boxed, (a, b) -> {
+            int byLane = Integer.compare(result.lane(a), result.lane(b));
+            if (byLane != 0) return byLane;
+            int byKey = Double.compare(key[a], key[b]);
+            return byKey != 0 ? byKey : Double.compare(position[a], position[b]);
+        });
+        for (int i = 0; i < nodes.length; i++) nodes[i] = boxed[i];
+        rank(nodes, position);
+    }
+
+    private static void rank(int[] nodes, double[] position) {
+        for (int i = 0; i < nodes.length; i++)
+            position[nodes[i]] = nodes.length == 1 ? 0.5 : (double) i / (nodes.length - 1);
+    }
+
+    /* =============================================================
+                              COORDINATES
+       ============================================================= */
+
+    private static void placeLayers(int[][] layers, LayoutOptions options, LayoutResult result) {
+        int y = options.startY;
+        for (int[] nodes : layers) {
+            int layerHeight = 0;
+
+            /* each lane's run of nodes, wrapped to the lane's width */
+            for (int from = 0; from < nodes.length; ) {
+                int lane = result.lane(nodes[from]);
+                int to = from;
+                while (to < nodes.length && result.lane(nodes[to]) == lane) to++;
+
+                int left = lane < 0 ? 0 : result.laneX(lane);
+                int width = lane < 0 ? options.diagramWidth : result.laneWidth(lane);
+                int rowY = y;
+                for (int rowStart = from; rowStart < to; ) {
+                    int rowEnd = rowStart, rowWidth = 0, rowHeight = 0;
+                    while (rowEnd < to) {
+                        int w = result.width(nodes[rowEnd]);
+                        int grown = rowEnd == rowStart ? w : rowWidth + options.xStep + w;
+                        if (rowEnd > rowStart && grown > width) break;
+                        rowWidth = grown;
+                        rowHeight = Math.max(rowHeight, result.height(nodes[rowEnd]));
+                        rowEnd++;
+                    }
+
+                    int x = left + (width - rowWidth) / 2;
+                    for (int i = rowStart; i < rowEnd; i++) {
+                        int v = nodes[i];
+                        result.setLocation(v, x, rowY + (rowHeight - result.height(v)) / 2);
+                        x += result.width(v) + options.xStep;
+                    }
+                    rowY += rowHeight + options.yStep;
+                    rowStart = rowEnd;
+                }
+                layerHeight = Math.max(layerHeight, rowY - options.yStep - y);
+                from = to;
+            }
+            y += layerHeight + options.yStep;
+        }
+    }
+}
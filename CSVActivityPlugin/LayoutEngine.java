@@ -0,0 +1,91 @@
+package com.example.csvactivityplugin;
+
+import java.awt.Rectangle;
+
+/**
+ * Computes the bounds of every node, pin and lane of a LayoutGraph. Plain
+ * Java, so layouts can be worked out (and timed) without Cameo; the grid
+ * layouters and ImportPlanner turn the result into shapes.
+ *
+ * The engine does the parts every layout shares and leaves the placement
+ * of the nodes to a LayoutStrategy:
+ *  - lanes side by side, centred on the diagram, unless the graph pins them;
+ *  - node sizes and pin locations, from the options' PinPlacement: before
+ *    the strategy runs, and from each placed node's bounds afterwards;
+ *  - lanes starting laneTop above startY and ending laneTop below the
+ *    lowest node, all as tall as the swimlane: their height follows from
+ *    where the strategy put the nodes, not from how many there are.
+ */
+final class LayoutEngine {
+
+    private LayoutEngine() {}
+
+    /**
+     * @param graph The nodes to lay out
+     * @param options Measurements
+     * @param strategy Places the nodes
+     * @return Bounds of every node, pin and lane
+     */
+    static LayoutResult layout(LayoutGraph graph, LayoutOptions options, LayoutStrategy strategy) {
+        LayoutResult result = new LayoutResult(graph, options.pinSize);
+        placeLanes(graph, options, result);
+        sizeNodes(graph, options, result);
+        strategy.place(graph, options, result);
+        placePins(graph, options, result);
+        sizeLanes(graph, options, result);
+        return result;
+    }
+
+    /* horizontal span of every lane; heights come last */
+    private static void placeLanes(LayoutGraph graph, LayoutOptions options, LayoutResult result) {
+        int lanes = graph.laneCount();
+        int startX = (options.diagramWidth - options.laneWidth * lanes) / 2;
+        for (int l = 0; l < lanes; l++) {
+            if (graph.hasLaneSpan(l))
+                result.setLaneBounds(l, graph.laneX(l), 0, graph.laneWidth(l), 0);
+            else
+                result.setLaneBounds(l, startX + l * options.laneWidth, 0, options.laneWidth, 0);
+        }
+    }
+
+    private static void sizeNodes(LayoutGraph graph, LayoutOptions options, LayoutResult result) {
+        int lanes = graph.laneCount();
+        int previous = 0;
+        for (int n = 0; n < graph.nodeCount(); n++) {
+            int lane = -1;
+            if (lanes > 0) {
+                lane = graph.lane(n) == LayoutGraph.PREVIOUS_LANE ? previous : graph.lane(n);
+                if (lane < 0 || lane >= lanes) lane = 0;
+                previous = lane;
+            }
+            result.setLane(n, lane);
+            options.pinPlacement.size(graph, n, options, result);
+        }
+    }
+
+    private static void placePins(LayoutGraph graph, LayoutOptions options, LayoutResult result) {
+        for (int n = 0; n < graph.nodeCount(); n++)
+            if (graph.inputs(n) > 0 || graph.outputs(n) > 0)
+                options.pinPlacement.place(graph, n, options, result);
+    }
+
+    private static void sizeLanes(LayoutGraph graph, LayoutOptions options, LayoutResult result) {
+        int lanes = graph.laneCount();
+        if (lanes == 0) return;
+
+        int bottom = options.startY;
+        for (int n = 0; n < graph.nodeCount(); n++)
+            bottom = Math.max(bottom, result.y(n) + result.height(n));
+
+        int y = options.startY - options.laneTop;
+        int height = bottom + options.laneTop - y;
+        int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+        for (int l = 0; l < lanes; l++) {
+            int x = result.laneX(l), width = result.laneWidth(l);
+            result.setLaneBounds(l, x, y, width, height);
+            left = Math.min(left, x);
+            right = Math.max(right, x + width);
+        }
+        result.setSwimlaneBounds(new Rectangle(left, y, right - left, height));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.example.csvactivityplugin;
+
+import java.util.Arrays;
+
+/**
+ * The input of the layout engine: nodes with their size, lane and number of
+ * pins, the edges between them, and the lanes. No model elements; callers
+ * keep their own mapping from node ids to whatever the nodes stand for.
+ *
+ * Nodes are identified by int ids (0 .. nodeCount()-1, in the order they
+ * were added), which is also the order the column layout stacks them in.
+ */
+final class LayoutGraph {
+
+    /** Lane of a node that goes into the lane of the node before it (lane 0 for the first). */
+    static final int PREVIOUS_LANE = -1;
+
+    private final int laneCount;
+    private final int[] laneX;
+    private final int[] laneWidth;
+
+    private int nodeCount;
+    private int[] width = new int[16];
+    private int[] height = new int[16];
+    private int[] lane = new int[16];
+    private int[] inputs = new int[16];
+    private int[] outputs = new int[16];
+    private boolean[] action = new boolean[16];
+
+    // where a node's shape is now, for the incremental layout; previousWidth -1 if it has none
+    private int[] previousX = new int[16];
+    private int[] previousY = new int[16];
+    private int[] previousWidth = new int[16];
+    private int[] previousHeight = new int[16];
+    private boolean[] changed = new boolean[16];
+
+    private int edgeCount;
+    private int[] edgeSource = new int[16];
+    private int[] edgeTarget = new int[16];
+
+    /**
+     * @param laneCount Number of lanes, left to right; 0 to centre every
+     *                  node on the diagram
+     */
+    LayoutGraph(int laneCount) {
+        this.laneCount = laneCount;
+        this.laneX = new int[laneCount];
+        this.laneWidth = new int[laneCount];
+        Arrays.fill(laneWidth, -1);
+    }
+
+    /**
+     * Adds an action. Actions get taller when they have many pins.
+     *
+     * @param lane Lane index, or PREVIOUS_LANE
+     * @return The node id
+     */
+    int addAction(int width, int height, int lane, int inputs, int outputs) {
+        int id = addNode(width, height, lane);
+        this.inputs[id] = inputs;
+        this.outputs[id] = outputs;
+        this.action[id] = true;
+        return id;
+    }
+
+    /**
+     * Adds a start or end node.
+     *
+     * @param lane Lane index, or PREVIOUS_LANE
+     * @return The node id
+     */
+    int addControl(int size, int lane) {
+        return addNode(size, size, lane);
+    }
+
+    /** Adds an edge from one node to another. */
+    void addEdge(int source, int target) {
+        if (edgeCount == edgeSource.length) {
+            edgeSource = Arrays.copyOf(edgeSource, edgeCount * 2);
+            edgeTarget = Arrays.copyOf(edgeTarget, edgeCount * 2);
+        }
+        edgeSource[edgeCount] = source;
+        edgeTarget[edgeCount] = target;
+        edgeCount++;
+    }
+
+    /**
+     * Records where a node's shape is on the diagram now. Only the
+     * incremental layout uses it: it keeps the node there, at that size,
+     * unless the node changed.
+     *
+     * @param changed true if the node's row changed since the shape was
+     *                laid out: it takes its new size
+     */
+    void setPrevious(int node, int x, int y, int width, int height, boolean changed) {
+        previousX[node] = x;
+        previousY[node] = y;
+        previousWidth[node] = width;
+        previousHeight[node] = height;
+        this.changed[node] = changed;
+    }
+
+    /**
+     * Pins a lane to where it already is on a diagram; other lanes are
+     * placed side by side, centred on the diagram.
+     */
+    void setLaneSpan(int lane, int x, int width) {
+        laneX[lane] = x;
+        laneWidth[lane] = width;
+    }
+
+    private int addNode(int width, int height, int lane) {
+        if (nodeCount == this.width.length) {
+            int capacity = nodeCount * 2;
+            this.width = Arrays.copyOf(this.width, capacity);
+            this.height = Arrays.copyOf(this.height, capacity);
+            this.lane = Arrays.copyOf(this.lane, capacity);
+            inputs = Arrays.copyOf(inputs, capacity);
+            outputs = Arrays.copyOf(outputs, capacity);
+            action = Arrays.copyOf(action, capacity);
+            previousX = Arrays.copyOf(previousX, capacity);
+            previousY = Arrays.copyOf(previousY, capacity);
+            previousWidth = Arrays.copyOf(previousWidth, capacity);
+            previousHeight = Arrays.copyOf(previousHeight, capacity);
+            changed = Arrays.copyOf(changed, capacity);
+        }
+        this.width[nodeCount] = width;
+        this.height[nodeCount] = height;
+        this.lane[nodeCount] = lane;
+        previousWidth[nodeCount] = -1;
+        return nodeCount++;
+    }
+
+    int laneCount()             { return laneCount; }
+
+    /** @return true if setLaneSpan fixed the lane */
+    boolean hasLaneSpan(int l)  { return laneWidth[l] >= 0; }
+    int laneX(int l)            { return laneX[l]; }
+    int laneWidth(int l)        { return laneWidth[l]; }
+
+    int nodeCount()             { return nodeCount; }
+    int width(int node)         { return width[node]; }
+    int height(int node)        { return height[node]; }
+
+    /** @return Lane index of the node, or PREVIOUS_LANE */
+    int lane(int node)          { return lane[node]; }
+    int inputs(int node)        { return inputs[node]; }
+    int outputs(int node)       { return outputs[node]; }
+    boolean isAction(int node)  { return action[node]; }
+
+    /** @return true if setPrevious recorded where the node's shape is */
+    boolean hasPrevious(int node)   { return previousWidth[node] >= 0; }
+    int previousX(int node)         { return previousX[node]; }
+    int previousY(int node)         { return previousY[node]; }
+    int previousWidth(int node)     { return previousWidth[node]; }
+    int previousHeight(int node)    { return previousHeight[node]; }
+
+    /** @return true if the node's row changed since its shape was laid out */
+    boolean isChanged(int node)     { return changed[node]; }
+
+    int edgeCount()             { return edgeCount; }
+    int edgeSource(int edge)    { return edgeSource[edge]; }
+    int edgeTarget(int edge)    { return edgeTarget[edge]; }
+}
\ No newline at end of file
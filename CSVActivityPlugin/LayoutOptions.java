@@ -0,0 +1,53 @@
+package com.example.csvactivityplugin;
+
+/**
+ * Measurements used by the layout engine, in diagram pixels.
+ *
+ * DEFAULT holds the values the importer has always used; the with...
+ * methods return a copy with one value changed.
+ */
+final class LayoutOptions {
+
+    static final LayoutOptions DEFAULT = new LayoutOptions(100, 60, PinPlacement.TWO_SIDED);
+
+    /* ------------- diagram and lanes ------------ */
+    final int diagramWidth  = 1200;   // lanes (or, without lanes, the column) are centred on this width
+    final int laneWidth     = 480;
+    final int laneTop       = 50;     // lanes start this far above the first node and end this far below the last
+
+    /* ------------- nodes ------------ */
+    final int startY;                 // top of the first node
+    final int yStep;                  // vertical gap between two nodes
+    final int xStep         = 40;     // horizontal gap between two nodes side by side
+    final int actionWidth   = 180;
+    final int actionHeight  = 80;
+    final int controlSize   = 20;     // start and end nodes
+
+    /* ------------- pins ------------ */
+    final int pinSize       = 20;
+    final int pinGap        = 5;
+    final int pinsPerSide   = 3;      // more pins than this on a side make the node taller
+    final int pinRowHeight  = 25;
+    final PinPlacement pinPlacement;
+
+    private LayoutOptions(int startY, int yStep, PinPlacement pinPlacement) {
+        this.startY = startY;
+        this.yStep = yStep;
+        this.pinPlacement = pinPlacement;
+    }
+
+    /** @return A copy with the first node at startY */
+    LayoutOptions withStartY(int startY) {
+        return new LayoutOptions(startY, yStep, pinPlacement);
+    }
+
+    /** @return A copy with yStep between nodes */
+    LayoutOptions withYStep(int yStep) {
+        return new LayoutOptions(startY, yStep, pinPlacement);
+    }
+
+    /** @return A copy that sizes nodes and places pins with pinPlacement */
+    LayoutOptions withPinPlacement(PinPlacement pinPlacement) {
+        return new LayoutOptions(startY, yStep, pinPlacement);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+package com.example.csvactivityplugin;
+
+import java.awt.Rectangle;
+
+/**
+ * The output of the layout engine: bounds of every node, pin and lane of a
+ * LayoutGraph, in diagram coordinates.
+ *
+ * The engine fills in node sizes, node lanes and lane spans first, a
+ * LayoutStrategy then places the nodes with setLocation, and the engine
+ * finishes with the pins and the lane heights. Pins are stored flat: the
+ * input pins of node n are pins inStart[n] .. inStart[n+1]) (outputs alike).
+ */
+final class LayoutResult {
+
+    private final int[] x;
+    private final int[] y;
+    private final int[] width;
+    private final int[] height;
+    private final int[] lane;
+
+    private final int[] laneX;
+    private final int[] laneY;
+    private final int[] laneWidth;
+    private final int[] laneHeight;
+    private Rectangle swimlane = new Rectangle();
+
+    private final int[] inStart;
+    private final int[] outStart;
+    private final int[] pinX;
+    private final int[] pinY;
+    private final int pinSize;
+
+    LayoutResult(LayoutGraph graph, int pinSize) {
+        int n = graph.nodeCount();
+        x = new int[n];
+        y = new int[n];
+        width = new int[n];
+        height = new int[n];
+        lane = new int[n];
+
+        int lanes = graph.laneCount();
+        laneX = new int[lanes];
+        laneY = new int[lanes];
+        laneWidth = new int[lanes];
+        laneHeight = new int[lanes];
+
+        inStart = new int[n + 1];
+        outStart = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            inStart[i + 1] = inStart[i] + graph.inputs(i);
+            outStart[i + 1] = outStart[i] + graph.outputs(i);
+        }
+        int pins = inStart[n] + outStart[n];
+        pinX = new int[pins];
+        pinY = new int[pins];
+        this.pinSize = pinSize;
+    }
+
+    /* ------------- filled in by the engine and strategies ------------ */
+
+    void setSize(int node, int width, int height) {
+        this.width[node] = width;
+        this.height[node] = height;
+    }
+
+    void setLane(int node, int lane)        { this.lane[node] = lane; }
+
+    /** Places a node: its top-left corner. */
+    void setLocation(int node, int x, int y) {
+        this.x[node] = x;
+        this.y[node] = y;
+    }
+
+    void setLaneBounds(int l, int x, int y, int width, int height) {
+        laneX[l] = x;
+        laneY[l] = y;
+        laneWidth[l] = width;
+        laneHeight[l] = height;
+    }
+
+    void setSwimlaneBounds(Rectangle bounds) { swimlane = bounds; }
+
+    void setInputPin(int node, int p, int x, int y)  { setPin(inStart[node] + p, x, y); }
+    void setOutputPin(int node, int p, int x, int y) { setPin(inStart[inStart.length - 1] + outStart[node] + p, x, y); }
+
+    private void setPin(int pin, int x, int y) {
+        pinX[pin] = x;
+        pinY[pin] = y;
+    }
+
+    /* ------------- read by callers ------------ */
+
+    int nodeCount()              { return x.length; }
+    int x(int node)              { return x[node]; }
+    int y(int node)              { return y[node]; }
+    int width(int node)          { return width[node]; }
+    int height(int node)         { return height[node]; }
+
+    /** @return Lane the node was put in, or -1 without lanes */
+    int lane(int node)           { return lane[node]; }
+
+    Rectangle nodeBounds(int node) {
+        return new Rectangle(x[node], y[node], width[node], height[node]);
+    }
+
+    int laneCount()              { return laneX.length; }
+    int laneX(int l)             { return laneX[l]; }
+    int laneWidth(int l)         { return laneWidth[l]; }
+
+    Rectangle laneBounds(int l) {
+        return new Rectangle(laneX[l], laneY[l], laneWidth[l], laneHeight[l]);
+    }
+
+    /** @return Bounds of the swimlane holding all lanes */
+    Rectangle swimlaneBounds()   { return new Rectangle(swimlane); }
+
+    int inputCount(int node)     { return inStart[node + 1] - inStart[node]; }
+    int outputCount(int node)    { return outStart[node + 1] - outStart[node]; }
+
+    Rectangle inputPinBounds(int node, int p) {
+        int pin = inStart[node] + p;
+        return new Rectangle(pinX[pin], pinY[pin], pinSize, pinSize);
+    }
+
+    Rectangle outputPinBounds(int node, int p) {
+        int pin = inStart[inStart.length - 1] + outStart[node] + p;
+        return new Rectangle(pinX[pin], pinY[pin], pinSize, pinSize);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.csvactivityplugin;
+
+/**
+ * Decides where the nodes of a LayoutGraph go.
+ *
+ * When place is called, the result already holds every node's final size
+ * and lane and the horizontal span of every lane; the strategy sets each
+ * node's location, and may widen lanes with setLaneBounds. A strategy that
+ * keeps nodes where they already are may give them back their previous
+ * size with setSize. Pins and lane heights are worked out by the
+ * LayoutEngine afterwards, from those locations.
+ */
+interface LayoutStrategy {
+
+    /** One column in node order, each node centred in its lane (see ColumnLayout). */
+    LayoutStrategy COLUMN = new ColumnLayout();
+
+    /**
+     * Successive nodes in successive layers, side by side where flows branch
+     * (see LayeredLayout).
+     */
+    LayoutStrategy LAYERED = new LayeredLayout();
+
+    /** The column folded into side-by-side bands, about as wide as tall (see WrappedLayout). */
+    LayoutStrategy WRAPPED = new WrappedLayout();
+
+    /**
+     * The shapes left where they are, later ones moved down to make room
+     * (see IncrementalLayout).
+     */
+    LayoutStrategy INCREMENTAL = new IncrementalLayout();
+
+    void place(LayoutGraph graph, LayoutOptions options, LayoutResult result);
+}
\ No newline at end of file
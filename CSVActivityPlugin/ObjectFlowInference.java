@@ -0,0 +1,124 @@
+package com.example.csvactivityplugin;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds the object flows the Input/Output columns describe: an output pin
+ * of one action feeds the input pins of the same name on later actions of
+ * the same level (the top-level rows, or the children of one row).
+ *
+ * Names are compared after trimming, collapsing runs of whitespace and
+ * ignoring case. Each level is one pass over its rows: the outputs seen so
+ * far wait in a hash index by name, and every input takes the waiting
+ * outputs of its name. The work is linear in the number of pins plus the
+ * number of flows found, never pin against pin.
+ */
+final class ObjectFlowInference {
+
+    /** Which later inputs an output feeds. */
+    enum Rule {
+        /** Only the inputs of the first later action that takes the name. */
+        NEAREST_CONSUMER,
+        /** The inputs of every later action that takes the name. */
+        ALL_CONSUMERS
+    }
+
+    /** Receives the flows found, as table rows and pin positions. */
+    interface Sink {
+        void objectFlow(int sourceRow, int output, int targetRow, int input);
+    }
+
+    private final ActivityTree tree;
+
+    // pin code -> code of its normalized name, -1 for blank names
+    private final int[] keyOfPin;
+
+    // name code -> newest waiting output, -1 for none; reset after every level
+    private final int[] head;
+
+    // waiting outputs of the current level, linked newest first per name
+    private int[] waitingRow = new int[16];
+    private int[] waitingOutput = new int[16];
+    private int[] waitingNext = new int[16];
+    private int waiting;
+
+    ObjectFlowInference(ActivityTree tree) {
+        this.tree = tree;
+        ActivityTable.SymbolTable pins = tree.table().pins();
+        Map<String,Integer> keys = new HashMap<>();
+        keyOfPin = new int[pins.size()];
+        for (int code = 0; code < pins.size(); code++) {
+            String name = normalize(pins.get(code));
+            keyOfPin[code] = name.isEmpty() ? -1 : keys.computeIfAbsent(name, k -> keys.size());
+        }
+        head = new int[keys.size()];
+        Arrays.fill(head, -1);
+    }
+
+    /** "  Order  Data " and "order data" are the same pin name. */
+    static String normalize(String pinName) {
+        return pinName == null ? "" : pinName.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Finds the flows of one level, in row order of their targets.
+     *
+     * @param parent Row whose children to connect, -1 for the top-level rows
+     * @param rule Which later inputs an output feeds
+     * @param sink Receives every flow
+     */
+    void infer(int parent, Rule rule, Sink sink) {
+        ActivityTable table = tree.table();
+        int count = parent < 0 ? tree.rootCount() : tree.childCount(parent);
+
+        for (int i = 0; i < count; i++) {
+            int row = parent < 0 ? tree.root(i) : tree.child(parent, i);
+
+            /* inputs first: an action never feeds itself */
+            for (int in = 0; in < table.inputCount(row); in++) {
+                int key = keyOfPin[table.inputCode(row, in)];
+                if (key < 0) continue;
+                for (int w = head[key]; w >= 0; w = waitingNext[w])
+                    sink.objectFlow(waitingRow[w], waitingOutput[w], row, in);
+                if (rule == Rule.NEAREST_CONSUMER) head[key] = -1;
+            }
+            for (int out = 0; out < table.outputCount(row); out++) {
+                int key = keyOfPin[table.outputCode(row, out)];
+                if (key >= 0) addWaiting(key, row, out);
+            }
+        }
+
+        /* forget this level's outputs */
+        for (int w = 0; w < waiting; w++)
+            head[keyOfPin[table.outputCode(waitingRow[w], waitingOutput[w])]] = -1;
+        waiting = 0;
+    }
+
+    /**
+     * @return Number of flows the nearest-consumer rule finds in the whole
+     *         tree, 0 if the sheet describes none
+     */
+    int countNearest() {
+        int[] count = new int[1];
+        Sink counter = (s, o, t, i) -> count[0]++;
+        infer(-1, Rule.NEAREST_CONSUMER, counter);
+        for (int r = 0; r < tree.table().size(); r++)
+            if (tree.hasChildren(r)) infer(r, Rule.NEAREST_CONSUMER, counter);
+        return count[0];
+    }
+
+    private void addWaiting(int key, int row, int output) {
+        if (waiting == waitingRow.length) {
+            waitingRow = Arrays.copyOf(waitingRow, waiting * 2);
+            waitingOutput = Arrays.copyOf(waitingOutput, waiting * 2);
+            waitingNext = Arrays.copyOf(waitingNext, waiting * 2);
+        }
+        waitingRow[waiting] = row;
+        waitingOutput[waiting] = output;
+        waitingNext[waiting] = head[key];
+        head[key] = waiting++;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.csvactivityplugin;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes paths between shapes as horizontal and vertical segments that go
+ * around the other shapes of the diagram.
+ *
+ * A path leaves its source from the middle of one side and enters its
+ * target in the middle of another, each with a short straight stub. The
+ * stubs are joined by the simplest shape that is clear of every obstacle,
+ * tried in order:
+ *  - a straight line, when the two ends line up;
+ *  - an L with one bend;
+ *  - a Z or U through a horizontal or a vertical channel, starting half
+ *    way between the stubs. A blocked try moves the channel just past the
+ *    obstacle in the way, above or below it (left or right), and tries
+ *    again, at most MAX_TRIES times per path;
+ *  - for a path from the bottom of its source up to the top of a target
+ *    above it, such as the flow from the end of one band to the start of
+ *    the next (see WrappedLayout): below every shape, up the first free
+ *    vertical channel right of the source, and over every shape.
+ * A path that finds no clear route gets none, and Cameo draws it straight.
+ *
+ * Obstacles are looked up in a SpatialGrid, so testing a segment costs the
+ * cells it crosses, not the number of shapes; routing a diagram is about
+ * linear in its number of paths. Not thread safe.
+ */
+final class OrthogonalRouter {
+
+    /** Side of a shape a path leaves or enters by. */
+    enum Side { TOP, BOTTOM, LEFT, RIGHT }
+
+    // length of the stubs, and gap kept from the obstacles a channel goes around
+    private static final int CLEARANCE = 15;
+    private static final int MAX_TRIES = 24;
+
+    private final SpatialGrid grid;
+
+    // top and bottom of all obstacles; the channels beyond them are always free
+    private final int top, bottom;
+
+    // the shapes a path connects, which only its end segments may touch
+    private Rectangle source, target;
+
+    /**
+     * @param obstacles Bounds of the shapes paths must not cross: nodes and
+     *                  their pins
+     */
+    OrthogonalRouter(Rectangle[] obstacles) {
+        grid = new SpatialGrid(obstacles);
+        int top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE;
+        for (Rectangle r : obstacles) {
+            top = Math.min(top, r.y);
+            bottom = Math.max(bottom, r.y + r.height);
+        }
+        this.top = top;
+        this.bottom = bottom;
+    }
+
+    /**
+     * @param source Bounds of the source shape
+     * @param exit Side the path leaves the source by
+     * @param target Bounds of the target shape
+     * @param entry Side the path enters the target by
+     * @return The path's points from the source end to the target end, or
+     *         null if every route tried crosses a shape
+     */
+    List<Point> route(Rectangle source, Side exit, Rectangle target, Side entry) {
+        this.source = source;
+        this.target = target;
+
+        Point p0 = port(source, exit), p1 = stub(p0, exit);
+        Point q0 = port(target, entry), q1 = stub(q0, entry);
+
+        /* lined up: one segment */
+        if ((p0.x == q0.x && exit == Side.BOTTOM && entry == Side.TOP && q0.y > p0.y)
+                || (p0.y == q0.y && exit == Side.RIGHT && entry == Side.LEFT && q0.x > p0.x)) {
+            if (blocker(p0, q0, true) < 0) return List.of(p0, q0);
+        }
+        if (blocker(p0, p1, true) >= 0 || blocker(q1, q0, true) >= 0) return null;
+
+        /* one bend */
+        for (Point corner : new Point[] { new Point(p1.x, q1.y), new Point(q1.x, p1.y) })
+            if (clear(p1, corner) && clear(corner, q1)) return points(p0, p1, corner, q1, q0);
+
+        /* a horizontal channel at y, or a vertical one at x; blocked tries suggest new ones */
+        int[] ys = new int[MAX_TRIES], xs = new int[MAX_TRIES];
+        int yCount = 0, xCount = 0, yNext = 0, xNext = 0;
+        ys[yCount++] = (p1.y + q1.y) / 2;
+        xs[xCount++] = (p1.x + q1.x) / 2;
+        for (int tries = 0; tries < MAX_TRIES && (yNext < yCount || xNext < xCount); tries++) {
+            boolean horizontal = yNext < yCount && (xNext >= xCount || tries % 2 == 0);
+            Point a, b;
+            if (horizontal) {
+                int y = ys[yNext++];
+                a = new Point(p1.x, y);
+                b = new Point(q1.x, y);
+            } else {
+                int x = xs[xNext++];
+                a = new Point(x, p1.y);
+                b = new Point(x, q1.y);
+            }
+
+            int blocker = blocker(p1, a, false);
+            if (blocker < 0) blocker = blocker(a, b, false);
+            if (blocker < 0) blocker = blocker(b, q1, false);
+            if (blocker < 0) return points(p0, p1, a, b, q1, q0);
+
+            /* go around the obstacle in the way */
+            Rectangle r = grid.item(blocker);
+            if (horizontal) {
+                yCount = offer(ys, yCount, r.y - CLEARANCE);
+                yCount = offer(ys, yCount, r.y + r.height + CLEARANCE);
+            } else {
+                xCount = offer(xs, xCount, r.x - CLEARANCE);
+                xCount = offer(xs, xCount, r.x + r.width + CLEARANCE);
+            }
+        }
+
+        if (exit == Side.BOTTOM && entry == Side.TOP && q0.y < p0.y) return over(p0, q0);
+        return null;
+    }
+
+    /* down from p0 to below every shape, up a free channel, and over every shape down to q0 */
+    private List<Point> over(Point p0, Point q0) {
+        Point p1 = new Point(p0.x, bottom + CLEARANCE), q1 = new Point(q0.x, top - CLEARANCE);
+        if (blocker(p0, p1, true) >= 0 || blocker(q1, q0, true) >= 0) return null;
+
+        int x = source.x + source.width + CLEARANCE;
+        for (int tries = 0; tries < MAX_TRIES; tries++) {
+            Point a = new Point(x, p1.y), b = new Point(x, q1.y);
+            int blocker = blocker(a, b, false);
+            if (blocker < 0) return points(p0, p1, a, b, q1, q0);
+            Rectangle r = grid.item(blocker);
+            x = r.x + r.width + CLEARANCE;
+        }
+        return null;
+    }
+
+    /**
+     * @param pin Bounds of a pin
+     * @param node Bounds of the node the pin is on
+     * @return The side of the node the pin sits on: the edge nearest its centre
+     */
+    static Side sideOf(Rectangle pin, Rectangle node) {
+        int cx = pin.x + pin.width / 2, cy = pin.y + pin.height / 2;
+        int left = Math.abs(cx - node.x), right = Math.abs(node.x + node.width - cx);
+        int top = Math.abs(cy - node.y), bottom = Math.abs(node.y + node.height - cy);
+        int nearest = Math.min(Math.min(left, right), Math.min(top, bottom));
+        if (nearest == left) return Side.LEFT;
+        if (nearest == right) return Side.RIGHT;
+        return nearest == top ? Side.TOP : Side.BOTTOM;
+    }
+
+    /* adds a channel to try, unless it is already listed or the list is full */
+    private static int offer(int[] channels, int count, int value) {
+        if (count == channels.length) return count;
+        for (int i = 0; i < count; i++) if (channels[i] == value) return count;
+        channels[count] = value;
+        return count + 1;
+    }
+
+    private static Point port(Rectangle r, Side side) {
+        switch (side) {
+            case TOP:    return new Point(r.x + r.width / 2, r.y);
+            case BOTTOM: return new Point(r.x + r.width / 2, r.y + r.height);
+            case LEFT:   return new Point(r.x, r.y + r.height / 2);
+            default:     return new Point(r.x + r.width, r.y + r.height / 2);
+        }
+    }
+
+    private static Point stub(Point port, Side side) {
+        switch (side) {
+            case TOP:    return new Point(port.x, port.y - CLEARANCE);
+            case BOTTOM: return new Point(port.x, port.y + CLEARANCE);
+            case LEFT:   return new Point(port.x - CLEARANCE, port.y);
+            default:     return new Point(port.x + CLEARANCE, port.y);
+        }
+    }
+
+    private boolean clear(Point a, Point b) {
+        return blocker(a, b, false) < 0;
+    }
+
+    /* an obstacle the segment crosses, or -1; the path's own ends count only if not atEnds */
+    private int blocker(Point a, Point b, boolean atEnds) {
+        return grid.find(Math.min(a.x, b.x), Math.min(a.y, b.y),
+                         Math.abs(a.x - b.x) + 1, Math.abs(a.y - b.y) + 1,
+                         i -> !atEnds || (!grid.item(i).equals(source) && !grid.item(i).equals(target)));
+    }
+
+    /* the points, without repeats and without points in the middle of a straight run */
+    private static List<Point> points(Point... route) {
+        List<Point> out = new ArrayList<>(route.length);
+        for (Point p : route) {
+            if (!out.isEmpty() && out.get(out.size() - 1).equals(p)) continue;
+            int n = out.size();
+            if (n >= 2) {
+                Point a = out.get(n - 2), b = out.get(n - 1);
+                if ((a.x == b.x && b.x == p.x) || (a.y == b.y && b.y == p.y)) out.remove(n - 1);
+            }
+            out.add(p);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.csvactivityplugin;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The outline number of every row of a table, and the last row carrying
+ * each number.
+ *
+ * Numbers are stored flat: the groups of row r are parts[start[r] ..
+ * start[r+1]), none for rows without a number. Lookups go through an
+ * open-addressing hash table of row ids over those groups, so neither
+ * adding a row nor finding one allocates a key (see OutlineNumber.parse
+ * for the reusable buffer numbers are read into). Not thread-safe while
+ * rows are added; read-only once the table is built.
+ */
+final class OutlineIndex {
+
+    private int rows;
+    private int[] start = new int[65];
+    private int[] parts = new int[64];
+
+    // row + 1 of the last row with a number hashing to the slot (after probing), 0 for empty
+    private int[] slots = new int[64];
+    private int used;
+
+    /**
+     * Appends the next row.
+     *
+     * @param number Groups of the row's outline number
+     * @param depth Number of groups to use, 0 if the row has no number
+     */
+    void add(int[] number, int depth) {
+        if (rows + 1 == start.length) start = Arrays.copyOf(start, start.length * 2);
+        int from = start[rows];
+        if (from + depth > parts.length) parts = Arrays.copyOf(parts, Math.max(parts.length * 2, from + depth));
+        System.arraycopy(number, 0, parts, from, depth);
+        start[rows + 1] = from + depth;
+        int row = rows++;
+        if (depth == 0) return;
+
+        if (2 * (used + 1) > slots.length) rehash(slots.length * 2);
+        int slot = probe(number, depth);
+        if (slots[slot] == 0) used++;
+        slots[slot] = row + 1;   // the last row with the number wins
+    }
+
+    /**
+     * @param number Groups of an outline number
+     * @param depth Number of groups to use
+     * @return The last row added with that number, or -1 if there is none
+     */
+    int find(int[] number, int depth) {
+        if (depth == 0) return -1;
+        return slots[probe(number, depth)] - 1;
+    }
+
+    /** @return Number of rows added */
+    int size() {
+        return rows;
+    }
+
+    /** @return Number of groups in the row's outline number, 0 if it has none */
+    int depth(int row) {
+        return start[row + 1] - start[row];
+    }
+
+    /* the slot holding the number, or the empty slot where it would go */
+    private int probe(int[] number, int depth) {
+        int mask = slots.length - 1;
+        int slot = hash(number, 0, depth) & mask;
+        while (slots[slot] != 0 && !matches(slots[slot] - 1, number, depth)) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private boolean matches(int row, int[] number, int depth) {
+        if (depth(row) != depth) return false;
+        int from = start[row];
+        for (int i = 0; i < depth; i++) if (parts[from + i] != number[i]) return false;
+        return true;
+    }
+
+    private static int hash(int[] number, int from, int depth) {
+        int h = depth;
+        for (int i = 0; i < depth; i++) h = 31 * h + number[from + i];
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry : old) {
+            if (entry == 0) continue;
+            int row = entry - 1;
+            int slot = hash(parts, start[row], depth(row)) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = entry;
+        }
+    }
+
+    /* ------------- snapshots (see ActivityTable.writeTo) ------------ */
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(rows);
+        for (int r = 0; r < rows; r++) {
+            out.writeInt(depth(r));
+            for (int i = start[r]; i < start[r + 1]; i++) out.writeInt(parts[i]);
+        }
+    }
+
+    /**
+     * @param rows Number of rows the table has
+     * @throws IOException If the data is truncated or does not cover the rows
+     */
+    static OutlineIndex readFrom(DataInputStream in, int rows) throws IOException {
+        if (in.readInt() != rows) throw new IOException("Bad outline count");
+        OutlineIndex index = new OutlineIndex();
+        int[] number = new int[8];
+        for (int r = 0; r < rows; r++) {
+            int depth = in.readInt();
+            if (depth < 0) throw new IOException("Bad outline depth " + depth);
+            if (depth > number.length) number = new int[depth];
+            for (int i = 0; i < depth; i++) number[i] = in.readInt();
+            index.add(number, depth);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.csvactivityplugin;
+
+import java.util.Arrays;
+
+/**
+ * Outline number at the start of a row name, e.g. 1.2.3 in "1.2.3 Load Config".
+ *
+ * The number is a run of digit groups separated by single dots. A dot that
+ * is not followed by a digit ends the number, so "2. Review" is just 2.
+ * The depth of a row is the number of groups: 1 for "1", 2 for "1.2", ...
+ */
+final class OutlineNumber {
+
+    /**
+     * Reusable result of {@link #parse(String, Buffer)}, so that reading the
+     * numbers of many rows does not allocate. Not thread-safe.
+     */
+    static final class Buffer {
+        /** The number groups; only the first depth entries are valid */
+        int[] parts = new int[8];
+        /** Number of groups, 0 if the name did not start with a digit */
+        int depth;
+        /** Position in the name after the last digit */
+        int end;
+    }
+
+    private OutlineNumber() {
+    }
+
+    /**
+     * Parses the outline number at the start of a name into a buffer.
+     * Leading zeros are dropped, so "01.2" and "1.2" give the same groups.
+     *
+     * @param name Row name
+     * @param into Receives the groups, their count and where the number ends
+     * @return The number of groups, 0 if the name does not start with a digit
+     */
+    static int parse(String name, Buffer into) {
+        int length = name.length();
+        into.depth = 0;
+        into.end = 0;
+        if (length == 0 || !isDigit(name.charAt(0))) return 0;
+
+        int pos = 0;
+        while (true) {
+            int value = 0;
+            while (pos < length && isDigit(name.charAt(pos))) {
+                int digit = name.charAt(pos++) - '0';
+                // saturate instead of overflowing on absurdly long numbers
+                value = value > (Integer.MAX_VALUE - digit) / 10 ? Integer.MAX_VALUE : value * 10 + digit;
+            }
+            if (into.depth == into.parts.length) into.parts = Arrays.copyOf(into.parts, into.depth * 2);
+            into.parts[into.depth++] = value;
+
+            if (pos + 1 < length && name.charAt(pos) == '.' && isDigit(name.charAt(pos + 1))) {
+                pos++;
+            } else {
+                into.end = pos;
+                return into.depth;
+            }
+        }
+    }
+
+    /**
+     * Parses the outline number at the start of a name.
+     *
+     * @param name Row name
+     * @return The number groups, e.g. {1, 2, 3}, or null if the name does not start with a digit
+     */
+    static int[] parse(String name) {
+        Buffer buffer = new Buffer();
+        return parse(name, buffer) == 0 ? null : Arrays.copyOf(buffer.parts, buffer.depth);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,233 @@
+package com.example.csvactivityplugin;
+
+import com.nomagic.magicdraw.core.ApplicationEnvironment;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches parse results so re-importing an unchanged file skips parsing.
+ *
+ * Recent results are kept in a small in-memory LRU, keyed by the file's
+ * path, size and modification time, so a hit costs no more than a stat of
+ * the file. In addition every result is written as a compact binary
+ * snapshot to the Cameo configuration directory, so the cache also
+ * survives restarts. Snapshots are named by a SHA-256 hash of the file's
+ * content, which is only computed when the memory cache misses. Snapshots
+ * that cannot be read are ignored and the file is parsed again.
+ */
+final class ParseCache {
+
+    /** Parses a file when it is not in the cache. */
+    interface Parser {
+        ActivityTable parse(File file) throws IOException;
+    }
+
+    private static final int MAX_MEMORY_ENTRIES = 8;
+    private static final int MAX_DISK_ENTRIES   = 32;
+
+    // Snapshot header: "ADPC" + format version
+    private static final int SNAPSHOT_MAGIC   = 0x41445043;
+    private static final int SNAPSHOT_VERSION = 7;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private static final ParseCache INSTANCE = new ParseCache(defaultCacheDir());
+
+    // LRU in access order: the eldest entry is dropped once the map is full
+    private final Map<Key, ActivityTable> memory =
+            new LinkedHashMap<Key, ActivityTable>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, ActivityTable> eldest) {
+                    return size() > MAX_MEMORY_ENTRIES;
+                }
+            };
+
+    // Directory for snapshots, null disables the disk cache
+    private File diskDir;
+
+    ParseCache(File diskDir) {
+        this.diskDir = diskDir;
+    }
+
+    static ParseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Enables or disables the on-disk snapshots. The in-memory cache is always used.
+     *
+     * @param dir Directory for snapshots, or null to disable them
+     */
+    synchronized void setDiskCacheDir(File dir) {
+        this.diskDir = dir;
+    }
+
+    /**
+     * Returns the parse result for the file, parsing it only if neither the
+     * memory nor the disk cache has a result for its current content. A
+     * result is not cached if the file changed while it was hashed or
+     * parsed, since it may then not match the hash.
+     *
+     * @param file The file to parse
+     * @param parser Parser used on a cache miss
+     * @return The parsed rows (tables are immutable, so they are shared)
+     * @throws IOException If there's an error reading or parsing the file
+     */
+    synchronized ActivityTable get(File file, Parser parser) throws IOException {
+        Key key = Key.of(file);
+
+        ActivityTable rows = memory.get(key);
+        if (rows != null) return rows;
+
+        String snapshot = snapshotName(file);
+        rows = readSnapshot(snapshot);
+        if (rows == null) {
+            rows = parser.parse(file);
+            if (!key.equals(Key.of(file))) return rows;   // saved in between
+            writeSnapshot(snapshot, rows);
+        }
+        memory.put(key, rows);
+        return rows;
+    }
+
+    /** Drops all in-memory results. */
+    synchronized void clear() {
+        memory.clear();
+    }
+
+    /* =============================================================
+                               CACHE KEY
+       ============================================================= */
+
+    /* what the file looks like from outside; does not read the file */
+    private static final class Key {
+        final String path;
+        final long size;
+        final long modified;
+
+        private Key(String path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        static Key of(File file) throws IOException {
+            return new Key(file.getCanonicalPath(), file.length(), file.lastModified());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key k)) return false;
+            return size == k.size && modified == k.modified
+                && path.equals(k.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, modified);
+        }
+    }
+
+    /* SHA-256 of the file's content, in hex */
+    private static String snapshotName(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /* =============================================================
+                             DISK SNAPSHOTS
+       ============================================================= */
+
+    private static File defaultCacheDir() {
+        String configDir = ApplicationEnvironment.getConfigDir();
+        return configDir != null ? new File(configDir, "csvactivityplugin-cache") : null;
+    }
+
+    /**
+     * Reads the named snapshot. The name already stands for the content.
+     *
+     * @return The cached rows, or null if there is no usable snapshot
+     */
+    private ActivityTable readSnapshot(String name) {
+        if (diskDir == null) return null;
+        File snapshot = new File(diskDir, name + SNAPSHOT_SUFFIX);
+        if (!snapshot.isFile()) return null;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(snapshot)))) {
+
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) return null;
+
+            // The table's own columns: dictionaries first, rows refer to them by code
+            return ActivityTable.readFrom(in);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Warning: Ignoring unreadable parse snapshot " + snapshot + ": " + e.getMessage());
+            snapshot.delete();
+            return null;
+        }
+    }
+
+    /** Writes the named snapshot; failures only disable the disk cache for this file. */
+    private void writeSnapshot(String name, ActivityTable rows) {
+        if (diskDir == null) return;
+        if (!diskDir.isDirectory() && !diskDir.mkdirs()) return;
+
+        File snapshot = new File(diskDir, name + SNAPSHOT_SUFFIX);
+        File temp = new File(diskDir, name + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+
+            rows.writeTo(out);
+        } catch (IOException e) {
+            // e.g. a cell longer than writeUTF allows; the memory cache still works
+            System.err.println("Warning: Could not write parse snapshot: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+
+        snapshot.delete();
+        if (!temp.renameTo(snapshot)) {
+            temp.delete();
+            return;
+        }
+        pruneSnapshots();
+    }
+
+    /* keeps only the most recently written snapshots */
+    private void pruneSnapshots() {
+        File[] snapshots = diskDir.listFiles((dir, name) -> name.endsWith(SNAPSHOT_SUFFIX));
+        if (snapshots == null || snapshots.length <= MAX_DISK_ENTRIES) return;
+
+        Arrays.sort(snapshots, Comparator.comparingLong(File::lastModified).reversed());
+        for (int i = MAX_DISK_ENTRIES; i < snapshots.length; i++) {
+            snapshots[i].delete();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.csvactivityplugin;
+
+/**
+ * Decides how big a node is for its pins, and where the pins go on it.
+ *
+ * The LayoutEngine calls size for every node before the LayoutStrategy
+ * places them, and place once they are placed; place works out all pins of
+ * a node from the node's bounds alone, in one pass.
+ */
+interface PinPlacement {
+
+    /**
+     * Inputs down the left side, outputs down the right; the node grows a row
+     * per extra pin (see TwoSidedPins).
+     */
+    PinPlacement TWO_SIDED = new TwoSidedPins();
+
+    /**
+     * Inputs on the left and top, outputs on the right and bottom; the node
+     * grows once its sides are full, up to a square as wide as its lane
+     * allows (see FourSidedPins).
+     */
+    PinPlacement FOUR_SIDED = new FourSidedPins();
+
+    /** Sets the size of the node in the result, from its size in the graph and its pins. */
+    void size(LayoutGraph graph, int node, LayoutOptions options, LayoutResult result);
+
+    /** Sets the location of every pin of the placed node in the result. */
+    void place(LayoutGraph graph, int node, LayoutOptions options, LayoutResult result);
+}
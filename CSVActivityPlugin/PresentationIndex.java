@@ -0,0 +1,217 @@
+package com.example.csvactivityplugin;
+
+import com.nomagic.magicdraw.openapi.uml.PresentationElementsManager;
+import com.nomagic.magicdraw.openapi.uml.ReadOnlyElementException;
+import com.nomagic.magicdraw.uml.symbols.DiagramPresentationElement;
+import com.nomagic.magicdraw.uml.symbols.PresentationElement;
+import com.nomagic.magicdraw.uml.symbols.paths.PathElement;
+import com.nomagic.magicdraw.uml.symbols.shapes.ShapeElement;
+import com.nomagic.uml2.ext.magicdraw.activities.mdintermediateactivities.ActivityPartition;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates, reshapes, routes, deletes and finds the presentation elements of
+ * one import.
+ *
+ * Every shape creation and reshape fires Cameo change events and adds an
+ * undo record, so the import goes through these methods instead of calling
+ * PresentationElementsManager directly. A shape is created once and then
+ * reshaped at most once, to its final bounds; the calls are counted in an
+ * ImportStatistics, which shows whether an import kept to that.
+ *
+ * The import also finds shapes here instead of with findPresentationElement,
+ * which walks the diagram on every call. The first lookup on a diagram maps
+ * each element to its presentation element in one walk; shapes, paths and
+ * swimlanes created or deleted through this class keep the map current, so
+ * presentation elements must not be created or deleted around it. Removing
+ * an element from the model deletes how it is shown as well, so the import
+ * calls forget before it removes one.
+ */
+final class PresentationIndex {
+
+    private final PresentationElementsManager pem = PresentationElementsManager.getInstance();
+
+    // element -> presentation element, per diagram looked up so far
+    private final Map<DiagramPresentationElement,Map<Element,PresentationElement>> shown =
+            new IdentityHashMap<>();
+
+    // shapes created, and shapes moved or resized, by this import
+    private final Set<ShapeElement> created = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<ShapeElement> reshaped = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final ImportStatistics statistics;
+
+    /** @param statistics Counts the calls made through this index */
+    PresentationIndex(ImportStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /** @return The counts of the calls made so far */
+    ImportStatistics statistics() {
+        return statistics;
+    }
+
+    /**
+     * Creates a shape with Cameo's default bounds.
+     *
+     * @param element The element to show
+     * @param parent Diagram or shape (lane, action) that holds the new shape
+     * @return The new shape
+     */
+    ShapeElement createShape(Element element, PresentationElement parent)
+            throws ReadOnlyElementException {
+        statistics.countShape();
+        ShapeElement shape = pem.createShapeElement(element, parent);
+        created.add(shape);
+        register(shape);   // with the pins Cameo added to it
+        return shape;
+    }
+
+    /**
+     * Draws a path between two shapes.
+     *
+     * @param element The edge to show
+     * @param source Shape of its source
+     * @param target Shape of its target
+     * @param route Points of the path from its source end to its target
+     *              end, null to leave the path as Cameo draws it
+     */
+    PathElement createPath(Element element, PresentationElement source, PresentationElement target,
+                           List<Point> route)
+            throws ReadOnlyElementException {
+        PathElement path = pem.createPathElement(element, source, target);
+        register(path);
+        if (route != null) route(path, route);
+        return path;
+    }
+
+    /**
+     * Gives a path new points.
+     *
+     * @param route Points of the path from its source end to its target end
+     */
+    void route(PathElement path, List<Point> route) throws ReadOnlyElementException {
+        statistics.countRoute();
+        pem.changePathBreakPoints(path, route);
+    }
+
+    /**
+     * Creates a swimlane with one vertical lane per partition.
+     *
+     * @param vertical Partitions, left to right
+     * @param dpe The diagram
+     * @return The swimlane holding the lane shapes
+     */
+    ShapeElement createSwimlane(List<ActivityPartition> vertical, DiagramPresentationElement dpe)
+            throws ReadOnlyElementException {
+        ShapeElement swimlane = (ShapeElement)
+                pem.createSwimlane(Collections.emptyList(), vertical, dpe);
+        register(swimlane);
+        return swimlane;
+    }
+
+    /** Deletes a presentation element and everything it holds. */
+    void delete(PresentationElement pe) throws ReadOnlyElementException {
+        Map<Element,PresentationElement> map = shown.get(diagramOf(pe));
+        if (map != null) unregister(map, pe);
+        pem.deletePresentationElement(pe);
+    }
+
+    /**
+     * Drops the presentation elements of an element, and of every element it
+     * owns, from the maps. Call it before removing the element from the
+     * model, which deletes them without going through delete; a removed
+     * diagram's map is dropped as a whole.
+     */
+    void forget(Element element) {
+        Set<Element> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+        owned(gone, element);
+        shown.keySet().removeIf(dpe -> gone.contains(dpe.getDiagram()));
+        for (Map<Element,PresentationElement> map : shown.values())
+            for (Element e : gone) map.remove(e);
+    }
+
+    private static void owned(Set<Element> into, Element element) {
+        into.add(element);
+        for (Element child : element.getOwnedElement()) owned(into, child);
+    }
+
+    /**
+     * Finds how an element is shown on a diagram, like
+     * DiagramPresentationElement.findPresentationElement.
+     *
+     * @param dpe The diagram
+     * @param element The element
+     * @param type Expected kind of presentation element
+     * @return The first presentation element of the element in the diagram,
+     *         or null if there is none or it is not of the given type
+     */
+    <T extends PresentationElement> T find(DiagramPresentationElement dpe, Element element,
+                                           Class<T> type) {
+        statistics.countLookup();
+        Map<Element,PresentationElement> map = shown.get(dpe);
+        if (map == null) {
+            statistics.countDiagramWalk();
+            map = new IdentityHashMap<>();
+            collect(map, dpe);
+            shown.put(dpe, map);
+        }
+        PresentationElement pe = map.get(element);
+        return type.isInstance(pe) ? type.cast(pe) : null;
+    }
+
+    /* adds a new presentation element and its children to its diagram's map */
+    private void register(PresentationElement pe) {
+        if (pe == null) return;
+        Map<Element,PresentationElement> map = shown.get(diagramOf(pe));
+        if (map != null) collect(map, pe);   // otherwise the first lookup finds it
+    }
+
+    /* depth first, so the first one found wins as in findPresentationElement */
+    private static void collect(Map<Element,PresentationElement> map, PresentationElement pe) {
+        Element element = pe.getElement();
+        if (element != null) map.putIfAbsent(element, pe);
+        for (PresentationElement child : pe.getPresentationElements()) collect(map, child);
+    }
+
+    private static void unregister(Map<Element,PresentationElement> map, PresentationElement pe) {
+        Element element = pe.getElement();
+        if (element != null) map.remove(element, pe);
+        for (PresentationElement child : pe.getPresentationElements()) unregister(map, child);
+    }
+
+    private static DiagramPresentationElement diagramOf(PresentationElement pe) {
+        return pe instanceof DiagramPresentationElement dpe ? dpe : pe.getDiagramPresentationElement();
+    }
+
+    /**
+     * Moves and resizes a shape, unless it already has the bounds.
+     *
+     * @param shape The shape
+     * @param bounds Its final bounds
+     */
+    void reshape(ShapeElement shape, Rectangle bounds) throws ReadOnlyElementException {
+        if (bounds.equals(shape.getBounds())) return;
+        statistics.countReshape();
+        reshaped.add(shape);
+        pem.reshapeShapeElement(shape, bounds);
+    }
+
+    /** @return true if the shape was created by this import (with createShape) */
+    boolean wasCreated(PresentationElement shape) {
+        return shape instanceof ShapeElement se && created.contains(se);
+    }
+
+    /** @return true if the shape was moved or resized by this import */
+    boolean wasReshaped(PresentationElement shape) {
+        return shape instanceof ShapeElement se && reshaped.contains(se);
+    }
+}
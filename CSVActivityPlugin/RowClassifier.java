@@ -0,0 +1,65 @@
+package com.example.csvactivityplugin;
+
+/**
+ * Decides whether a row name is a main action, a sub-action or neither,
+ * in one pass over the name and without allocating.
+ *
+ * The rules are the ones ActivityRowCollector has always used:
+ * - a name starting with digits, a dot and more digits ("1.2 ...") is a sub-action
+ * - otherwise a name starting with "Action" (any case) is a main action
+ * - otherwise a name starting with a whole number ("3 ...", "3.", but not "3a")
+ *   is a main action
+ *
+ * While scanning, the outline number at the start of the name is kept in a
+ * reusable buffer (see {@link #outline()} and OutlineNumber.parse), so
+ * callers get it for free.
+ * An instance is not thread-safe; use one per parser.
+ */
+final class RowClassifier {
+
+    static final int NONE = 0;
+    static final int MAIN = 1;
+    static final int SUB  = 2;
+
+    // Prefix that identifies action rows
+    private static final String ACTION_PREFIX = "Action";
+
+    private final OutlineNumber.Buffer outline = new OutlineNumber.Buffer();
+
+    /**
+     * Classifies a row name.
+     *
+     * @param name Trimmed row name
+     * @return NONE, MAIN or SUB
+     */
+    int classify(String name) {
+        int length = name.length();
+        if (OutlineNumber.parse(name, outline) == 0) {
+            return name.regionMatches(true, 0, ACTION_PREFIX, 0, ACTION_PREFIX.length()) ? MAIN : NONE;
+        }
+        if (outline.depth > 1) return SUB;
+        int pos = outline.end;
+
+        // "Action" cannot follow a digit, so only the whole-number rule is left:
+        // the number must end at a word boundary
+        if (pos == length || !isWordChar(name.charAt(pos))) return MAIN;
+        return NONE;
+    }
+
+    /** @return Number of groups in the outline number of the last name, 0 if it had none */
+    int depth() {
+        return outline.depth;
+    }
+
+    /**
+     * @return The outline number of the last name; only the first depth()
+     *         entries are valid. The array is reused by the next call.
+     */
+    int[] outline() {
+        return outline.parts;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.example.csvactivityplugin;
+
+/**
+ * Receives the cells of a spreadsheet one row at a time.
+ *
+ * Every reader (full workbook, streaming .xlsx, ...) pushes its rows through
+ * this callback so that header detection and row classification only live
+ * in one place, no matter how the file was decoded.
+ */
+interface SheetRowHandler {
+
+    /**
+     * Called before the first cell of a row.
+     *
+     * @param rowIndex Zero-based index of the row in the sheet
+     */
+    void startRow(int rowIndex);
+
+    /**
+     * Tells the reader whether a column is needed at all. Readers skip the
+     * cells of unwanted columns before decoding them, so wide sheets do not
+     * pay for columns the import never looks at.
+     *
+     * @param columnIndex Zero-based column index
+     * @return true if {@link #cell} should be called for this column
+     */
+    boolean wantsColumn(int columnIndex);
+
+    /**
+     * Called once for every non-empty cell of the current row whose column
+     * is wanted.
+     *
+     * @param columnIndex Zero-based column index of the cell
+     * @param value The cell value already converted to a string
+     */
+    void cell(int columnIndex, String value);
+
+    /**
+     * Called after the last cell of a row.
+     */
+    void endRow();
+}
\ No newline at end of file
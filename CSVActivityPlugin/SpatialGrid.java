@@ -0,0 +1,123 @@
+package com.example.csvactivityplugin;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Rectangles bucketed into a uniform grid of square cells, to find the ones
+ * a query rectangle intersects without testing all of them.
+ *
+ * Every rectangle is listed in each cell it covers; a query only looks at
+ * the cells the query covers. With cells about twice the size of a typical
+ * rectangle, each rectangle sits in a handful of cells and a small query
+ * costs a handful of tests, whatever the number of rectangles. The cells
+ * are stored flat (cellStart, cellItems) and the grid is built once.
+ * Queries are not thread safe: each thread needs its own grid.
+ */
+final class SpatialGrid {
+
+    private final Rectangle[] items;
+    private final int cellSize;
+    private final int originX, originY;
+    private final int columns, rows;
+
+    // items of cell c are cellItems[cellStart[c] .. cellStart[c+1])
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    // items visited by the current query carry its stamp, so each is tested once
+    private final int[] visited;
+    private int stamp;
+
+    /**
+     * @param items The rectangles; their indices identify them in queries.
+     *              The array is kept, not copied.
+     */
+    SpatialGrid(Rectangle[] items) {
+        this.items = items;
+        this.visited = new int[items.length];
+
+        int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+        long extent = 0;
+        for (Rectangle r : items) {
+            left = Math.min(left, r.x);
+            top = Math.min(top, r.y);
+            right = Math.max(right, r.x + r.width);
+            bottom = Math.max(bottom, r.y + r.height);
+            extent += Math.max(r.width, r.height);
+        }
+        if (items.length == 0) left = top = right = bottom = 0;
+
+        /* twice the mean size, coarser if the area would need more than a few cells per item */
+        int size = (int) Math.max(16, 2 * extent / Math.max(1, items.length));
+        long width = right - left + 1L, height = bottom - top + 1L;
+        while ((width / size + 1) * (height / size + 1) > 4L * items.length + 16) size *= 2;
+
+        cellSize = size;
+        originX = left;
+        originY = top;
+        columns = (int) (width / size + 1);
+        rows = (int) (height / size + 1);
+
+        /* count, then fill */
+        cellStart = new int[columns * rows + 1];
+        for (Rectangle r : items)
+            for (int cy = row(r.y); cy <= row(r.y + r.height - 1); cy++)
+                for (int cx = column(r.x); cx <= column(r.x + r.width - 1); cx++)
+                    cellStart[cy * columns + cx + 1]++;
+        for (int c = 0; c < columns * rows; c++) cellStart[c + 1] += cellStart[c];
+
+        cellItems = new int[cellStart[columns * rows]];
+        int[] next = new int[columns * rows];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        for (int i = 0; i < items.length; i++) {
+            Rectangle r = items[i];
+            for (int cy = row(r.y); cy <= row(r.y + r.height - 1); cy++)
+                for (int cx = column(r.x); cx <= column(r.x + r.width - 1); cx++)
+                    cellItems[next[cy * columns + cx]++] = i;
+        }
+    }
+
+    int size()                  { return items.length; }
+    Rectangle item(int i)       { return items[i]; }
+
+    /**
+     * @param accept Decides whether an intersecting item counts
+     * @return Index of the first accepted item that intersects the rectangle
+     *         (x, y, width, height), -1 if there is none
+     */
+    int find(int x, int y, int width, int height, IntPredicate accept) {
+        if (items.length == 0 || width <= 0 || height <= 0) return -1;
+        if (x >= originX + columns * cellSize || y >= originY + rows * cellSize
+                || x + width <= originX || y + height <= originY) return -1;
+
+        if (++stamp == 0) { Arrays.fill(visited, 0); stamp = 1; }
+        int c0 = column(x), c1 = column(x + width - 1);
+        int r0 = row(y), r1 = row(y + height - 1);
+        for (int cy = r0; cy <= r1; cy++) {
+            for (int cx = c0; cx <= c1; cx++) {
+                int c = cy * columns + cx;
+                for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                    int i = cellItems[k];
+                    if (visited[i] == stamp) continue;
+                    visited[i] = stamp;
+                    Rectangle r = items[i];
+                    if (r.x < x + width && x < r.x + r.width && r.y < y + height && y < r.y + r.height
+                            && accept.test(i))
+                        return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int column(int x) {
+        return Math.max(0, Math.min(columns - 1, (x - originX) / cellSize));
+    }
+
+    private int row(int y) {
+        return Math.max(0, Math.min(rows - 1, (y - originY) / cellSize));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.csvactivityplugin;
+
+import com.nomagic.magicdraw.core.Application;
+import com.nomagic.magicdraw.core.Project;
+import com.nomagic.magicdraw.core.project.ProjectEventListener;
+import com.nomagic.magicdraw.core.project.ProjectEventListenerAdapter;
+import com.nomagic.magicdraw.openapi.uml.ModelElementsManager;
+import com.nomagic.magicdraw.openapi.uml.ReadOnlyElementException;
+import com.nomagic.magicdraw.openapi.uml.SessionManager;
+import com.nomagic.magicdraw.uml.symbols.DiagramPresentationElement;
+import com.nomagic.uml2.ext.magicdraw.activities.mdfundamentalactivities.Activity;
+import com.nomagic.uml2.ext.magicdraw.activities.mdstructuredactivities.StructuredActivityNode;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Comment;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Diagram;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
+
+import javax.swing.SwingUtilities;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Fills in deferred sub-diagrams the first time they are opened.
+ *
+ * A deferred import creates every StructuredActivityNode's diagram empty
+ * and marks it with a comment owned by the diagram (see mark). The layout
+ * of such a diagram follows from the model alone (the node's actions,
+ * their partitions, control and object flows) and the layout strategy and
+ * pin placement the import chose, so the mark, which names both, is all
+ * that is stored:
+ * when a marked diagram is opened, ActivityDiagramCreator builds its
+ * lanes, shapes and paths in a session of its own, and the mark is removed
+ * in the same session. Diagrams without the mark are never changed, so
+ * other models are safe. This keeps working after the project has been
+ * saved and opened again.
+ */
+final class SubdiagramMaterializer implements PropertyChangeListener {
+
+    // Body of the comment that marks a diagram the import left empty, followed by a
+    // LAYOUT_ line and a PINS_ line (marks without a LAYOUT_ line are filled in as a column)
+    private static final String MARK = "Created empty by the CSV import; filled in when first opened.";
+    private static final String LAYOUT_COLUMN = "Layout: single column";
+    private static final String LAYOUT_LAYERS = "Layout: layers";
+    private static final String LAYOUT_BANDS = "Layout: bands";
+    private static final String PINS_ALL_SIDES = "Pins: all sides";
+    private static final String PINS_LEFT_RIGHT = "Pins: left and right";
+
+    // one listener per open project
+    private static final Map<Project, SubdiagramMaterializer> WATCHED = new WeakHashMap<>();
+
+    // watches every project opened from now on
+    private static final ProjectEventListener PROJECT_LISTENER = new ProjectEventListenerAdapter() {
+        @Override
+        public void projectOpened(Project project) {
+            watch(project);
+        }
+
+        @Override
+        public void projectClosed(Project project) {
+            SubdiagramMaterializer listener = WATCHED.remove(project);
+            if (listener != null) project.removePropertyChangeListener(listener);
+        }
+    };
+
+    private final Project project;
+
+    private SubdiagramMaterializer(Project project) {
+        this.project = project;
+    }
+
+    /** Registers the plugin's project listener with Cameo. */
+    static void install() {
+        Application.getInstance().addProjectEventListener(PROJECT_LISTENER);
+    }
+
+    /** Starts filling in the project's deferred diagrams when they are opened. */
+    static void watch(Project project) {
+        if (WATCHED.containsKey(project)) return;
+        SubdiagramMaterializer listener = new SubdiagramMaterializer(project);
+        WATCHED.put(project, listener);
+        project.addPropertyChangeListener(listener);
+    }
+
+    /**
+     * Marks a diagram the import left empty, so that it is filled in when
+     * first opened. Must run inside a session.
+     *
+     * @param diagram A diagram owned by a StructuredActivityNode
+     * @param layoutStrategy How the import placed nodes; the diagram is filled in the same way
+     * @param pinPlacement How the import placed pins; the diagram is filled in the same way
+     */
+    static void mark(Project project, Diagram diagram, LayoutStrategy layoutStrategy,
+                     PinPlacement pinPlacement)
+            throws ReadOnlyElementException {
+        Comment mark = project.getElementsFactory().createCommentInstance();
+        mark.setBody(MARK + "\n"
+                     + (layoutStrategy == LayoutStrategy.LAYERED ? LAYOUT_LAYERS
+                        : layoutStrategy == LayoutStrategy.WRAPPED ? LAYOUT_BANDS : LAYOUT_COLUMN) + "\n"
+                     + (pinPlacement == PinPlacement.FOUR_SIDED ? PINS_ALL_SIDES : PINS_LEFT_RIGHT));
+        ModelElementsManager.getInstance().addElement(mark, diagram);
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (!Project.DIAGRAM_OPENED.equals(evt.getPropertyName())) return;
+        if (!(evt.getNewValue() instanceof DiagramPresentationElement dpe)) return;
+
+        // let the diagram finish opening before the model is changed
+        if (isDeferred(dpe)) SwingUtilities.invokeLater(() -> materialize(dpe));
+    }
+
+    /* a marked diagram of a node */
+    private static boolean isDeferred(DiagramPresentationElement dpe) {
+        Diagram diagram = dpe.getDiagram();
+        return diagram != null && isDeferred(diagram);
+    }
+
+    /**
+     * @return true if the diagram is a node's diagram the import left empty,
+     *         which is filled in from the model when it is first opened
+     */
+    static boolean isDeferred(Diagram diagram) {
+        return diagram.getOwner() instanceof StructuredActivityNode && markOf(diagram) != null;
+    }
+
+    /* the comment marking the diagram, or null */
+    private static Comment markOf(Diagram diagram) {
+        for (Comment c : diagram.getOwnedComment())
+            if (c.getBody() != null && c.getBody().startsWith(MARK)) return c;
+        return null;
+    }
+
+    private void materialize(DiagramPresentationElement dpe) {
+        if (!isDeferred(dpe)) return;   // filled in meanwhile
+        dpe.ensureLoaded();
+        Comment mark = markOf(dpe.getDiagram());
+        List<String> lines = Arrays.asList(mark.getBody().split("\\R"));
+        LayoutStrategy layoutStrategy = lines.contains(LAYOUT_LAYERS) ? LayoutStrategy.LAYERED
+                                      : lines.contains(LAYOUT_BANDS)  ? LayoutStrategy.WRAPPED
+                                                                      : LayoutStrategy.COLUMN;
+        PinPlacement pinPlacement = lines.contains(PINS_ALL_SIDES) ? PinPlacement.FOUR_SIDED
+                                                                   : PinPlacement.TWO_SIDED;
+        StructuredActivityNode san = (StructuredActivityNode) dpe.getDiagram().getOwner();
+
+        Element cur = san.getOwner();
+        while (cur != null && !(cur instanceof Activity)) cur = cur.getOwner();
+        if (!(cur instanceof Activity activity)) return;
+
+        SessionManager sm = SessionManager.getInstance();
+        if (sm.isSessionCreated(project)) {
+            System.err.println("Warning: Could not create sub-diagram " + san.getName()
+                               + " while another change is in progress");
+            return;
+        }
+        sm.createSession(project, "Create sub-diagram " + san.getName());
+        try {
+            new ActivityDiagramCreator().materializeSubactionDiagram(project, activity, san, dpe,
+                                                                     layoutStrategy, pinPlacement);
+            ModelElementsManager.getInstance().removeElement(mark);
+            sm.closeSession(project);
+        } catch (Exception e) {
+            sm.cancelSession(project);
+            System.err.println("Warning: Could not create sub-diagram " + san.getName() + ": " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.example.csvactivityplugin;
+
+/**
+ * The importer's original pin placement: input pins on the node's left
+ * edge and output pins on its right edge, each column centred vertically.
+ * The node is one pin row taller per pin beyond pinsPerSide on a side, so
+ * it grows without limit with its pins.
+ */
+final class TwoSidedPins implements PinPlacement {
+
+    @Override
+    public void size(LayoutGraph graph, int node, LayoutOptions options, LayoutResult result) {
+        int height = graph.height(node);
+        int pinRows = Math.max(graph.inputs(node), graph.outputs(node));
+        if (pinRows > options.pinsPerSide)
+            height += (pinRows - options.pinsPerSide) * options.pinRowHeight;
+        result.setSize(node, graph.width(node), height);
+    }
+
+    @Override
+    public void place(LayoutGraph graph, int node, LayoutOptions options, LayoutResult result) {
+        int half = options.pinSize / 2;
+        int x = result.x(node);
+        int ins = graph.inputs(node);
+        int outs = graph.outputs(node);
+
+        int y = pinColumnTop(ins, result.y(node), result.height(node), options);
+        for (int p = 0; p < ins; p++)
+            result.setInputPin(node, p, x - half, y + p * (options.pinSize + options.pinGap));
+
+        y = pinColumnTop(outs, result.y(node), result.height(node), options);
+        for (int p = 0; p < outs; p++)
+            result.setOutputPin(node, p, x + result.width(node) - half,
+                                y + p * (options.pinSize + options.pinGap));
+    }
+
+    /* top of a column of pins centred on the node's height */
+    private static int pinColumnTop(int count, int nodeY, int nodeHeight, LayoutOptions options) {
+        int total = count * options.pinSize + Math.max(0, count - 1) * options.pinGap;
+        return nodeY + (nodeHeight - total) / 2;
+    }
+}
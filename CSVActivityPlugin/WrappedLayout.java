@@ -0,0 +1,88 @@
+package com.example.csvactivityplugin;
+
+/**
+ * The column layout folded into bands, like a newspaper: nodes go down the
+ * first band in node order, continue at the top of the second, and so on.
+ * Each band is one slot wide in every lane, so the lanes widen to hold all
+ * bands side by side; nodes stay centred in their slot of their lane.
+ *
+ * The number of bands is chosen so the diagram comes out about as wide as
+ * it is tall: a column of height H over lanes of total slot width W needs
+ * sqrt(H / W) bands, so both sides grow with the square root of the node
+ * count instead of the height growing linearly. Short diagrams get one
+ * band and come out as the column layout. The flow from the last node of
+ * a band to the first of the next is the only edge that crosses a band;
+ * it runs up the gap between the two bands and along the free channel
+ * above the rows, or below and over every shape when that is blocked (see
+ * OrthogonalRouter).
+ *
+ * Every band holds the same number of nodes, and the i-th nodes of all
+ * bands share a row as tall as the tallest of them, centred in it. The
+ * gaps between rows, and between the slots, then run across the whole
+ * diagram, which leaves the router free channels (see OrthogonalRouter).
+ */
+final class WrappedLayout implements LayoutStrategy {
+
+    @Override
+    public void place(LayoutGraph graph, LayoutOptions options, LayoutResult result) {
+        int n = graph.nodeCount();
+        if (n == 0) return;
+
+        /* one slot: the widest node, its pins and a gap */
+        int slot = 0, column = 0;
+        for (int v = 0; v < n; v++) {
+            slot = Math.max(slot, result.width(v));
+            column += result.height(v) + options.yStep;
+        }
+        slot += options.pinSize + options.xStep;
+
+        int lanes = result.laneCount();
+        int bands = (int) Math.max(1, Math.round(Math.sqrt((double) column / (slot * Math.max(1, lanes)))));
+
+        /* the same number of nodes in every band (but the last), in rows as tall
+           as their tallest node */
+        int perBand = (n + bands - 1) / bands;
+        bands = (n + perBand - 1) / perBand;
+        int[] rowTop = new int[perBand + 1];
+        for (int v = 0; v < n; v++)
+            rowTop[v % perBand + 1] = Math.max(rowTop[v % perBand + 1], result.height(v) + options.yStep);
+        rowTop[0] = options.startY;
+        for (int r = 0; r < perBand; r++) rowTop[r + 1] += rowTop[r];
+
+        if (lanes > 0) widenLanes(result, bands * slot);
+
+        for (int v = 0; v < n; v++) {
+            int band = v / perBand, row = v % perBand;
+            int lane = result.lane(v);
+            int left, width;
+            if (lane < 0) {
+                width = bands * slot;
+                left = Math.max(0, (options.diagramWidth - width) / 2);
+            } else {
+                left = result.laneX(lane);
+                width = result.laneWidth(lane);
+            }
+            int bandLeft = left + (width - bands * slot) / 2 + band * slot;
+            int rowHeight = rowTop[row + 1] - rowTop[row] - options.yStep;
+            result.setLocation(v, bandLeft + (slot - result.width(v)) / 2,
+                               rowTop[row] + (rowHeight - result.height(v)) / 2);
+        }
+    }
+
+    /* lanes at least the given width, side by side from the leftmost one;
+       as they are if wide enough */
+    private static void widenLanes(LayoutResult result, int width) {
+        int x = Integer.MAX_VALUE;
+        boolean narrow = false;
+        for (int l = 0; l < result.laneCount(); l++) {
+            x = Math.min(x, result.laneX(l));
+            narrow |= result.laneWidth(l) < width;
+        }
+        if (!narrow) return;
+        for (int l = 0; l < result.laneCount(); l++) {
+            int w = Math.max(width, result.laneWidth(l));
+            result.setLaneBounds(l, x, 0, w, 0);
+            x += w;
+        }
+    }
+}
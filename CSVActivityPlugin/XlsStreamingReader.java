@@ -0,0 +1,178 @@
+package com.example.csvactivityplugin;
+
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.MissingRecordAwareHSSFListener;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Reads the first sheet of a legacy .xls file with POI's HSSF event API.
+ *
+ * The BIFF records are processed one at a time as HSSFEventFactory walks the
+ * workbook stream, so no HSSFWorkbook (and no Row/Cell objects) is built.
+ * MissingRecordAwareHSSFListener marks the end of every row, which is when
+ * the row is handed to the SheetRowHandler. Only the shared string table is
+ * kept in memory.
+ *
+ * Cells in columns the handler does not want are dropped before their value
+ * is looked up or formatted.
+ */
+final class XlsStreamingReader {
+
+    /**
+     * Streams the first sheet of the workbook into the given handler.
+     *
+     * @param excelFile The .xls file to read
+     * @param handler Receives the rows of the first sheet
+     * @throws IOException If the file is not a readable .xls workbook
+     */
+    void read(File excelFile, SheetRowHandler handler) throws IOException {
+        try (POIFSFileSystem fs = new POIFSFileSystem(excelFile, true)) {
+            RecordHandler records = new RecordHandler(handler);
+
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(records.formats);
+            new HSSFEventFactory().processWorkbookEvents(request, fs);
+
+            if (records.sheetIndex < 0) {
+                throw new IOException("Excel file has no sheets");
+            }
+        } catch (CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Corrupt or unusual BIFF streams surface as runtime exceptions from POI
+            throw new IOException("Could not stream Excel file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Record listener that converts the cell records of the first sheet to
+     * the same strings the full workbook path would produce.
+     */
+    private static final class RecordHandler implements HSSFListener {
+
+        private final SheetRowHandler handler;
+
+        // Wraps this listener; also used to look up number formats
+        final FormatTrackingHSSFListener formats;
+
+        private SSTRecord sst;
+
+        // -1 while in the workbook globals, 0 for the first sheet, ...
+        int sheetIndex = -1;
+        private boolean inFirstSheet;
+
+        private boolean rowOpen;
+        private int currentRow;
+
+        // Formula waiting for its cached string result in the next StringRecord
+        private FormulaRecord pendingFormula;
+
+        RecordHandler(SheetRowHandler handler) {
+            this.handler = handler;
+            this.formats = new FormatTrackingHSSFListener(new MissingRecordAwareHSSFListener(this));
+        }
+
+        @Override
+        public void processRecord(Record record) {
+            if (record instanceof BOFRecord bof) {
+                if (bof.getType() == BOFRecord.TYPE_WORKSHEET) {
+                    sheetIndex++;
+                    inFirstSheet = sheetIndex == 0;
+                }
+                return;
+            }
+            if (record instanceof SSTRecord sstRecord) {
+                sst = sstRecord;
+                return;
+            }
+            if (!inFirstSheet) return;
+
+            if (record instanceof EOFRecord) {
+                closeRow();
+                inFirstSheet = false;
+            } else if (record instanceof LastCellOfRowDummyRecord) {
+                closeRow();
+            } else if (record instanceof LabelSSTRecord label) {
+                if (accept(label) && sst != null) {
+                    cell(label, sst.getString(label.getSSTIndex()).getString().trim());
+                }
+            } else if (record instanceof LabelRecord label) {
+                if (accept(label)) cell(label, label.getValue().trim());
+            } else if (record instanceof NumberRecord number) {
+                if (accept(number)) cell(number, numericValue(number));
+            } else if (record instanceof BoolErrRecord boolErr) {
+                // Error cells read as empty, like the full workbook path
+                if (accept(boolErr) && boolErr.isBoolean()) {
+                    cell(boolErr, String.valueOf(boolErr.getBooleanValue()));
+                }
+            } else if (record instanceof FormulaRecord formula) {
+                if (!accept(formula)) return;
+                if (formula.hasCachedResultString()) {
+                    pendingFormula = formula;
+                } else if (formula.getCachedResultType() == CellType.NUMERIC.getCode()) {
+                    // Formula results are reported unformatted by the full workbook path too
+                    cell(formula, String.valueOf(formula.getValue()));
+                }
+            } else if (record instanceof StringRecord string && pendingFormula != null) {
+                cell(pendingFormula, string.getString().trim());
+                pendingFormula = null;
+            }
+        }
+
+        /* opens the record's row if needed; true if its column is wanted */
+        private boolean accept(CellValueRecordInterface record) {
+            if (rowOpen && record.getRow() != currentRow) {
+                closeRow();
+            }
+            if (!rowOpen) {
+                currentRow = record.getRow();
+                handler.startRow(currentRow);
+                rowOpen = true;
+            }
+            return handler.wantsColumn(record.getColumn());
+        }
+
+        private void cell(CellValueRecordInterface record, String value) {
+            if (!value.isEmpty()) {
+                handler.cell(record.getColumn(), value);
+            }
+        }
+
+        private void closeRow() {
+            if (rowOpen) {
+                handler.endRow();
+                rowOpen = false;
+            }
+        }
+
+        private String numericValue(NumberRecord number) {
+            double value = number.getValue();
+            if (DateUtil.isADateFormat(formats.getFormatIndex(number), formats.getFormatString(number))
+                    && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getJavaDate(value).toString();
+            }
+            return ExcelParser.formatNumber(value);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.csvactivityplugin;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Reads the first sheet of an .xlsx file with POI's event API.
+ *
+ * Instead of building an XSSFWorkbook (which keeps every row and cell of the
+ * sheet in memory), the sheet XML is fed through a SAX handler and each row
+ * is handed to a SheetRowHandler as soon as it has been read. Only the
+ * shared string table and the styles are kept in memory.
+ *
+ * Cells in columns the handler does not want are skipped as soon as their
+ * {@code <c>} element is seen: their text is never buffered and shared
+ * strings or number formats are never resolved for them.
+ */
+final class XlsxStreamingReader {
+
+    /**
+     * Streams the first sheet of the workbook into the given handler.
+     *
+     * @param excelFile The .xlsx file to read
+     * @param handler Receives the rows of the first sheet
+     * @throws IOException If the file is not a readable .xlsx package
+     */
+    void read(File excelFile, SheetRowHandler handler) throws IOException {
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(excelFile, PackageAccess.READ);
+
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IOException("Excel file has no sheets");
+            }
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = newXMLReader();
+                parser.setContentHandler(new SheetHandler(strings, styles, handler));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Could not stream Excel file: " + e.getMessage(), e);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Strict OOXML and non-OOXML files surface as runtime exceptions from POI
+            throw new IOException("Could not stream Excel file: " + e.getMessage(), e);
+        } finally {
+            if (pkg != null) {
+                // Opened read-only, so revert instead of close to avoid writing back
+                pkg.revert();
+            }
+        }
+    }
+
+    private static XMLReader newXMLReader() throws SAXException, ParserConfigurationException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        return factory.newSAXParser().getXMLReader();
+    }
+
+    /**
+     * SAX handler for the sheet XML ({@code <row>}, {@code <c>}, {@code <v>},
+     * {@code <is><t>}). Converts every cell to the same string the full
+     * workbook path would produce.
+     */
+    private static final class SheetHandler extends DefaultHandler {
+
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable styles;
+        private final SheetRowHandler handler;
+
+        // Reused buffer for the text of the current <v> or <t> element
+        private final StringBuilder text = new StringBuilder();
+        private boolean collectText;
+
+        private int rowIndex = -1;
+        private int columnIndex;
+        private String cellType;
+        private String cellStyle;
+        private boolean cellHasFormula;
+        private boolean cellHasValue;
+        private boolean skipCell;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, StylesTable styles, SheetRowHandler handler) {
+            this.strings = strings;
+            this.styles = styles;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row": {
+                    String r = attributes.getValue("r");
+                    rowIndex = (r != null) ? Integer.parseInt(r) - 1 : rowIndex + 1;
+                    columnIndex = -1;
+                    handler.startRow(rowIndex);
+                    break;
+                }
+                case "c": {
+                    String r = attributes.getValue("r");
+                    columnIndex = (r != null) ? columnOf(r) : columnIndex + 1;
+                    cellType = attributes.getValue("t");
+                    cellStyle = attributes.getValue("s");
+                    cellHasFormula = false;
+                    cellHasValue = false;
+                    skipCell = !handler.wantsColumn(columnIndex);
+                    text.setLength(0);
+                    break;
+                }
+                case "f":
+                    cellHasFormula = true;
+                    break;
+                case "v":
+                case "t":
+                    // <t> only matters in an inline string; shared ones are looked up by index
+                    if (!skipCell) {
+                        collectText = true;
+                        cellHasValue = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collectText) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    collectText = false;
+                    break;
+                case "c":
+                    if (cellHasValue) {
+                        String value;
+                        try {
+                            value = cellValue();
+                        } catch (NumberFormatException e) {
+                            // A malformed cell is dropped, not the whole sheet
+                            value = "";
+                        }
+                        if (!value.isEmpty()) {
+                            handler.cell(columnIndex, value);
+                        }
+                    }
+                    break;
+                case "row":
+                    handler.endRow();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /* converts the raw cell text according to the cell type */
+        private String cellValue() {
+            String raw = text.toString();
+            if (cellType == null || cellType.equals("n")) {
+                return numericValue(raw);
+            }
+            switch (cellType) {
+                case "s":
+                    return strings.getItemAt(Integer.parseInt(raw.trim())).getString().trim();
+                case "inlineStr":
+                case "str":
+                    return raw.trim();
+                case "b":
+                    return String.valueOf("1".equals(raw.trim()));
+                default:
+                    // "e" (error) cells read as empty, like the full workbook path
+                    return "";
+            }
+        }
+
+        private String numericValue(String raw) {
+            if (raw.isEmpty()) return "";
+            double value = Double.parseDouble(raw);
+
+            // Formula results are reported unformatted by the full workbook path too
+            if (cellHasFormula) {
+                return String.valueOf(value);
+            }
+
+            if (cellStyle != null && styles != null) {
+                XSSFCellStyle style = styles.getStyleAt(Integer.parseInt(cellStyle));
+                if (style != null
+                        && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString())
+                        && DateUtil.isValidExcelDate(value)) {
+                    return DateUtil.getJavaDate(value).toString();
+                }
+            }
+            return ExcelParser.formatNumber(value);
+        }
+
+        /* "AB12" -> 27 */
+        private static int columnOf(String cellReference) {
+            int column = 0;
+            for (int i = 0; i < cellReference.length(); i++) {
+                char c = cellReference.charAt(i);
+                if (c < 'A' || c > 'Z') break;
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+}
\ No newline at end of file
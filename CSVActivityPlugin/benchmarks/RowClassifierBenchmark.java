@@ -0,0 +1,147 @@
+package com.example.csvactivityplugin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares RowClassifier with the regexes ActivityRowCollector used before
+ * it, over the same fixed mix of row names.
+ *
+ * The names look like an exported process sheet: numbered main actions
+ * ("12 Approve order"), two to four level sub-actions ("12.3.1 Check
+ * stock"), some "Action ..." rows, and notes, "TBD" and "3a" rows that
+ * match no rule. They come from a fixed seed, so every run sees the same
+ * names. Setup checks that both paths classify every name alike.
+ *
+ * The benchmark is not part of the plugin jar. It only needs RowClassifier
+ * and OutlineNumber, so it runs without Cameo or POI. From the plugin
+ * directory, with the JMH 1.37 jars (jmh-core, jmh-generator-annprocess,
+ * jopt-simple, commons-math3) in jmh/:
+ *
+ *   javac -encoding UTF-8 -cp "jmh/*" -d bench \
+ *         RowClassifier.java OutlineNumber.java benchmarks/RowClassifierBenchmark.java
+ *   java -cp "bench:jmh/*" org.openjdk.jmh.Main RowClassifierBenchmark
+ *
+ * javac runs the JMH annotation processor from jmh-generator-annprocess.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RowClassifierBenchmark {
+
+    // The old rules, as ActivityRowCollector had them
+    private static final String ACTION_PREFIX = "Action";
+    private static final Pattern WHOLE_INT_PATTERN = Pattern.compile("^\\d+\\b");
+    private static final Pattern DECIMAL_INT_PATTERN = Pattern.compile("^\\d+\\.\\d+");
+
+    private static final int NAMES = 4096;
+    private static final String[] WORDS = {
+        "Receive", "order", "Check", "stock", "Approve", "request", "Update", "record",
+        "Notify", "customer", "Ship", "goods", "Review", "design", "Assemble", "unit"
+    };
+
+    private String[] names;
+    private final RowClassifier classifier = new RowClassifier();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        names = names(new Random(42));
+        for (String name : names) {
+            if (classifier.classify(name) != classifyWithRegex(name))
+                throw new IllegalStateException("Classifiers disagree on \"" + name + "\"");
+        }
+    }
+
+    /** One pass of RowClassifier over every name, with its outline number. */
+    @Benchmark
+    public void rowClassifier(Blackhole bh) {
+        for (String name : names) {
+            int kind = classifier.classify(name);
+            bh.consume(kind);
+            if (kind != RowClassifier.NONE) bh.consume(classifier.depth());
+        }
+    }
+
+    /** The regexes and lower-casing used before, then OutlineNumber.parse. */
+    @Benchmark
+    public void regex(Blackhole bh) {
+        for (String name : names) {
+            int kind = classifyWithRegex(name);
+            bh.consume(kind);
+            if (kind != RowClassifier.NONE) bh.consume(OutlineNumber.parse(name));
+        }
+    }
+
+    // "sub first, main second", as parseRow decided before RowClassifier
+    private static int classifyWithRegex(String name) {
+        boolean isSub  = DECIMAL_INT_PATTERN.matcher(name).find();
+        boolean isMain = !isSub
+                         && (name.toLowerCase().startsWith(ACTION_PREFIX.toLowerCase())
+                             || WHOLE_INT_PATTERN.matcher(name).find());
+        return isSub ? RowClassifier.SUB : isMain ? RowClassifier.MAIN : RowClassifier.NONE;
+    }
+
+    /*
+     * about 25% numbered main actions, two thirds sub-actions (a quarter of
+     * them three or four levels deep), 3% "Action ..." rows and 5% rows that
+     * match no rule
+     */
+    private static String[] names(Random random) {
+        List<String> out = new ArrayList<>(NAMES);
+        int main = 0;
+        while (out.size() < NAMES) {
+            main++;
+            out.add(main + " " + words(random));
+            int subs = random.nextInt(5);
+            for (int s = 1; s <= subs && out.size() < NAMES; s++) {
+                out.add(main + "." + s + " " + words(random));
+                if (random.nextInt(3) == 0)
+                    out.add(main + "." + s + "." + (1 + random.nextInt(9))
+                            + (random.nextBoolean() ? "." + (1 + random.nextInt(9)) : "")
+                            + " " + words(random));
+            }
+            int other = random.nextInt(20);
+            if (other < 2) out.add((other == 0 ? "Action " : "ACTION: ") + words(random));
+            else if (other < 6) out.add(noise(random, main));
+        }
+        return out.subList(0, NAMES).toArray(new String[0]);
+    }
+
+    private static String noise(Random random, int main) {
+        switch (random.nextInt(4)) {
+            case 0:  return "Notes: " + words(random);
+            case 1:  return main + "a " + words(random);
+            case 2:  return "TBD";
+            default: return "Step " + main;
+        }
+    }
+
+    private static String words(Random random) {
+        int count = 2 + random.nextInt(4);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}